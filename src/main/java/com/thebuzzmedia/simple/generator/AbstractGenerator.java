@@ -1,23 +1,43 @@
 package com.thebuzzmedia.simple.generator;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.URLEncoder;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.thebuzzmedia.common.io.CharArrayInput;
 import com.thebuzzmedia.common.io.IInput;
 import com.thebuzzmedia.common.util.ArrayUtils;
 import com.thebuzzmedia.common.util.Base64;
+import com.thebuzzmedia.simple.generator.BudgetExceededException.Budget;
+import com.thebuzzmedia.simple.generator.ClassMetadata.Kind;
 import com.thebuzzmedia.simple.generator.IIndenter.Position;
 import com.thebuzzmedia.simple.generator.IIndenter.Type;
 import com.thebuzzmedia.simple.generator.annotation.Encode;
 import com.thebuzzmedia.simple.generator.annotation.Recursable;
+import com.thebuzzmedia.simple.generator.digest.IContentDigest;
+import com.thebuzzmedia.simple.generator.sink.ChannelSink;
+import com.thebuzzmedia.simple.generator.sink.CountingSink;
+import com.thebuzzmedia.simple.generator.sink.ISink;
+import com.thebuzzmedia.simple.generator.writer.ITypeWriter;
+import com.thebuzzmedia.simple.generator.writer.IValueOutput;
 
 /**
  * Class used to provide the base implementation of a reflection-based
@@ -32,22 +52,137 @@ import com.thebuzzmedia.simple.generator.annotation.Recursable;
  * @since 1.1
  */
 public abstract class AbstractGenerator implements IGenerator {
+	/**
+	 * The ways a generator can react to a generation exceeding one of its
+	 * budgets.
+	 */
+	public static enum BudgetPolicy {
+		/**
+		 * Stop the generation by throwing a {@link BudgetExceededException}.
+		 */
+		FAIL,
+		/**
+		 * Stop writing whatever exceeded the budget, write the truncation
+		 * marker in its place where it can be and close every open object and
+		 * list so the output stays well-formed.
+		 */
+		TRUNCATE;
+	}
+
+	/**
+	 * Default marker written in place of truncated content.
+	 * <p/>
+	 * Default value is: ...
+	 */
+	public static final String DEFAULT_TRUNCATION_MARKER = "...";
+
+	/**
+	 * Number of traversal steps (fields or list elements written) between
+	 * checks of a generation's {@link CancellationToken}.
+	 * <p/>
+	 * Value is: 256
+	 */
+	public static final int CANCELLATION_CHECK_INTERVAL = 256;
+
+	/**
+	 * Name the <code>null</code> elements of a list are written with.
+	 */
+	private static final String NULL_ELEMENT_NAME = "null";
+
 	private static final int DEFAULT_BUFFER_SIZE = 256;
+	private static final int DEFAULT_SINK_BUFFER_SIZE = 8192;
 	private static final float BUFFER_GROWTH_FACTOR = 1.5f;
+	private static final int DEFAULT_FRAME_DEPTH = 16;
+
+	/**
+	 * Maximum number of render plans a generator caches. Projections compile
+	 * a new set of fields (and so a new plan) for every distinct field list,
+	 * which typically come from request parameters, so the cache is simply
+	 * emptied when it grows past this, the same way
+	 * {@link Projection#MAX_CACHED} bounds the compiled projections.
+	 */
+	private static final int MAX_CACHED_RENDER_PLANS = 256;
+
+	/**
+	 * Number of values of a columnar list's simple value column written per
+	 * traversal step. Columns are written a bounded chunk at a time so the
+	 * budget, cancellation and backpressure checks made between steps still
+	 * run while a long column is written.
+	 */
+	private static final int COLUMN_CHUNK_SIZE = 64;
+
+	/**
+	 * Number of generated characters that are allowed to build up in the
+	 * buffer before they are fed into the content digest, so the digest reads
+	 * them while they are still in the cache.
+	 */
+	private static final int DIGEST_CHUNK_SIZE = 8192;
 
 	private static final char[] BOOLEAN_TRUE = new char[] { 't', 'r', 'u', 'e' };
 	private static final char[] BOOLEAN_FALSE = new char[] { 'f', 'a', 'l',
 			's', 'e' };
+	private static final char[] LONG_MIN_VALUE = Long.toString(
+			Long.MIN_VALUE).toCharArray();
+
+	/**
+	 * BigIntegers are formatted in chunks of this many digits (the most that
+	 * always fit in a long).
+	 */
+	private static final int BIG_INTEGER_CHUNK_DIGITS = 18;
+	private static final BigInteger BIG_INTEGER_CHUNK = BigInteger.TEN
+			.pow(BIG_INTEGER_CHUNK_DIGITS);
+
+	/**
+	 * Past this size, BigInteger.toString (which divides recursively on newer
+	 * JREs) beats dividing off one chunk at a time.
+	 */
+	private static final int BIG_INTEGER_CHUNK_MAX_BITS = 4096;
+
+	/**
+	 * LongAdder and LongAccumulator were added in Java 8, so they are looked
+	 * up reflectively; on older runtimes they can't show up.
+	 */
+	private static final Class<?> LONG_ADDER_CLASS = findClass("java.util.concurrent.atomic.LongAdder");
+	private static final Class<?> LONG_ACCUMULATOR_CLASS = findClass("java.util.concurrent.atomic.LongAccumulator");
 
 	private int level;
 	private IIndenter indenter;
+	private ILineIndenter lineIndenter;
+	private boolean compact;
 
 	private int length;
 	private char[] buffer;
 	private int initialBufferSize;
 
+	private ISink sink;
+	private char[] sinkBuffer;
+	private long sinkWritten;
+
+	private int depth;
+	private Frame[] frames;
+
 	private boolean fieldCachePersisted;
-	private Map<Class<?>, Field[]> fieldCache;
+	private ClassMetadataCache metadataCache;
+	private Map<String, char[][]> nameTokenCache;
+	private Map<FieldMetadata[], RenderPlan> renderPlanCache;
+
+	private boolean sizePredictionEnabled;
+	private OutputSizePredictor sizePredictor;
+
+	private IValueOutput valueOutput;
+
+	private long maxLength;
+	private int maxLevel;
+	private int maxListSize;
+	private BudgetPolicy budgetPolicy;
+	private String truncationMarker;
+	private boolean truncated;
+
+	private CancellationToken cancellation;
+	private int cancellationCountdown;
+
+	private IContentDigest contentDigest;
+	private int digested;
 
 	public AbstractGenerator() {
 		this(CompactIndenter.INSTANCE);
@@ -68,26 +203,88 @@ public abstract class AbstractGenerator implements IGenerator {
 
 		this.initialBufferSize = initialBufferSize;
 
-		fieldCache = new HashMap<Class<?>, Field[]>(256);
+		metadataCache = new ClassMetadataCache();
+		nameTokenCache = new HashMap<String, char[][]>(256);
+		renderPlanCache = new IdentityHashMap<FieldMetadata[], RenderPlan>(64);
 		fieldCachePersisted = true;
+
+		sizePredictor = new OutputSizePredictor();
+		sizePredictionEnabled = true;
+
+		frames = new Frame[DEFAULT_FRAME_DEPTH];
+		valueOutput = new ValueOutput();
+
+		maxLength = Long.MAX_VALUE;
+		maxLevel = Integer.MAX_VALUE;
+		maxListSize = Integer.MAX_VALUE;
+		budgetPolicy = BudgetPolicy.FAIL;
+		truncationMarker = DEFAULT_TRUNCATION_MARKER;
 	}
 
 	public void reset() {
+		reset(initialBufferSize);
+	}
+
+	private void reset(int bufferSize) {
+		resetState();
+		truncated = false;
+
+		if (contentDigest != null)
+			contentDigest.reset();
+
+		// Create a new char[] buffer to hold our generated content.
+		buffer = new char[bufferSize];
+	}
+
+	private void reset(ISink sink) {
+		resetState();
+		truncated = false;
+
+		if (contentDigest != null)
+			contentDigest.reset();
+
+		/*
+		 * The sink buffer never leaves this generator, so unlike the buffer
+		 * returned from generate(Object), it can be re-used between calls.
+		 */
+		if (sinkBuffer == null)
+			sinkBuffer = new char[DEFAULT_SINK_BUFFER_SIZE];
+
+		buffer = sinkBuffer;
+		this.sink = sink;
+	}
+
+	private void resetState() {
 		level = 0;
 		length = 0;
+		digested = 0;
 
-		// Clear the field cache if we don't want it persisted.
-		if (!fieldCachePersisted)
-			fieldCache.clear();
+		sink = null;
+		sinkWritten = 0;
+		cancellation = null;
 
-		// Create a new char[] buffer to hold our generated content.
-		buffer = new char[initialBufferSize];
+		// Abandon any generation that was left in progress.
+		while (depth > 0) {
+			Frame frame = frames[--depth];
+
+			if (frame.closeable != null)
+				LazySources.close(frame.closeable);
+
+			frame.clear();
+		}
+
+		// Clear the metadata cache if we don't want it persisted.
+		if (!fieldCachePersisted) {
+			metadataCache.clear();
+			nameTokenCache.clear();
+			renderPlanCache.clear();
+		}
 	}
 
 	/**
-	 * Used to determine if the internal {@link Field}[] cache is kept between
-	 * calls to {@link #generate(Object)} or if it is cleared each time a
-	 * generation is done.
+	 * Used to determine if the {@link ClassMetadataCache} is kept between calls
+	 * to {@link #generate(Object)} or if it is cleared each time a generation
+	 * is done.
 	 * <p/>
 	 * If you are generating representations of many of the same kinds of
 	 * objects, keeping the cache will offer the bigger performance advantage.
@@ -95,15 +292,14 @@ public abstract class AbstractGenerator implements IGenerator {
 	 * clearing the cache between calls to {@link #generate(Object)} is fine.
 	 * <p/>
 	 * To improve performance during generation, this class caches the
-	 * {@link Field}[] retrieved from a generated object for re-use each time an
-	 * object of the same type is processed; this avoids the cost of the
-	 * reflection call into the object to get its fields for the same class
-	 * type.
+	 * {@link ClassMetadata} (how the class is written and its filtered fields)
+	 * of every class it writes for re-use each time an object of the same type
+	 * is processed; this avoids the cost of the reflection calls needed to
+	 * work that out again for the same class type.
 	 * <p/>
-	 * Given the structured/repetitive nature of generation, keeping a cached
-	 * copy of the {@link Field}[] during generation, but especially between
-	 * subsequent calls to {@link #generate(Object)} can be offer a big win in
-	 * performance.
+	 * Given the structured/repetitive nature of generation, keeping the cached
+	 * metadata during generation, but especially between subsequent calls to
+	 * {@link #generate(Object)} can be offer a big win in performance.
 	 * 
 	 * @return <code>true</code> if the field cache is kept between generate
 	 *         calls or <code>false</code> if it is cleared each time.
@@ -113,24 +309,22 @@ public abstract class AbstractGenerator implements IGenerator {
 	}
 
 	/**
-	 * Used to set if the internal {@link Field}[] cache should be kept after
-	 * calls to {@link #generate(Object)} or cleared each time a generation is
-	 * done.
+	 * Used to set if the {@link ClassMetadataCache} should be kept after calls
+	 * to {@link #generate(Object)} or cleared each time a generation is done.
 	 * <p/>
 	 * To improve performance during generation, this class caches the
-	 * {@link Field}[] retrieved from a generated object for re-use each time an
-	 * object of the same type is processed; this avoids the cost of the
-	 * reflection call into the object to get its fields for the same class
-	 * type.
+	 * {@link ClassMetadata} (how the class is written and its filtered fields)
+	 * of every class it writes for re-use each time an object of the same type
+	 * is processed; this avoids the cost of the reflection calls needed to
+	 * work that out again for the same class type.
 	 * <p/>
-	 * Given the structured/repetitive nature of generation, keeping a cached
-	 * copy of the {@link Field}[] during generation, but especially between
-	 * subsequent calls to {@link #generate(Object)} can be offer a big win in
-	 * performance.
+	 * Given the structured/repetitive nature of generation, keeping the cached
+	 * metadata during generation, but especially between subsequent calls to
+	 * {@link #generate(Object)} can be offer a big win in performance.
 	 * 
 	 * @param fieldCachePersisted
-	 *            <code>true</code> if the internal {@link Field}[] cache should
-	 *            be kept after each call to {@link #generate(Object)} or
+	 *            <code>true</code> if the {@link ClassMetadataCache} should be
+	 *            kept after each call to {@link #generate(Object)} or
 	 *            <code>false</code> if the cache should be manually cleared
 	 *            each time.
 	 */
@@ -138,180 +332,1220 @@ public abstract class AbstractGenerator implements IGenerator {
 		this.fieldCachePersisted = fieldCachePersisted;
 	}
 
-	public IIndenter getIndenter() {
-		return indenter;
+	/**
+	 * Used to get the cache holding the {@link ClassMetadata} of the classes
+	 * this generator has written.
+	 * 
+	 * @return the cache holding the metadata of the classes this generator has
+	 *         written.
+	 */
+	public ClassMetadataCache getMetadataCache() {
+		return metadataCache;
 	}
 
-	public void setIndenter(IIndenter indenter) throws IllegalArgumentException {
-		if (indenter == null)
-			throw new IllegalArgumentException("indenter cannot be null");
+	/**
+	 * Used to set the cache this generator looks up and stores the
+	 * {@link ClassMetadata} of the classes it writes in.
+	 * <p/>
+	 * {@link ClassMetadataCache} is thread-safe, so one cache can be shared by
+	 * every generator in an application (even ones used on different
+	 * threads) to work out the metadata of each class only once. When sharing
+	 * a cache, leave {@link #isFieldCachePersisted()} set to <code>true</code>
+	 * so one generator doesn't clear the cache out from under the others.
+	 * 
+	 * @param metadataCache
+	 *            The cache to use.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>metadataCache</code> is <code>null</code>.
+	 */
+	public void setMetadataCache(ClassMetadataCache metadataCache)
+			throws IllegalArgumentException {
+		if (metadataCache == null)
+			throw new IllegalArgumentException("metadataCache cannot be null");
 
-		this.indenter = indenter;
+		this.metadataCache = metadataCache;
+		nameTokenCache.clear();
+		renderPlanCache.clear();
 	}
 
-	public IInput<char[], char[]> generate(Object object) {
-		// Reset the generator's state
-		reset();
+	/**
+	 * Used to determine if this generator sizes its output buffer using the
+	 * output lengths it has seen for the same root class in the past.
+	 * 
+	 * @return <code>true</code> if output size prediction is enabled or
+	 *         <code>false</code> if every generation starts with a buffer of
+	 *         <code>initialBufferSize</code>.
+	 * 
+	 * @see #getSizePredictor()
+	 */
+	public boolean isSizePredictionEnabled() {
+		return sizePredictionEnabled;
+	}
 
-		// Ensure there is work to be done.
-		if (object != null) {
-			Class<?> type = object.getClass();
-			writeDispatcher(typeToName(type), type, null, object, false);
-		}
+	/**
+	 * Used to set if this generator should size its output buffer using the
+	 * output lengths it has seen for the same root class in the past.
+	 * <p/>
+	 * The <code>initialBufferSize</code> given at construction time is used as
+	 * a lower bound on the predicted size. With prediction enabled, most
+	 * documents are generated with zero or one buffer growths instead of the
+	 * many reallocations (each copying everything written so far) a small
+	 * fixed initial buffer would cause for large documents.
+	 * 
+	 * @param sizePredictionEnabled
+	 *            <code>true</code> to enable output size prediction or
+	 *            <code>false</code> to always start with a buffer of
+	 *            <code>initialBufferSize</code>.
+	 */
+	public void setSizePredictionEnabled(boolean sizePredictionEnabled) {
+		this.sizePredictionEnabled = sizePredictionEnabled;
+	}
 
-		return new CharArrayInput(buffer, 0, length);
+	/**
+	 * Used to get the predictor holding the per-root-class output size
+	 * estimates learned by this generator. The returned instance can be used
+	 * to inspect or seed those estimates.
+	 * 
+	 * @return the predictor used by this generator.
+	 */
+	public OutputSizePredictor getSizePredictor() {
+		return sizePredictor;
 	}
 
-	protected AbstractGenerator append(char c) {
-		buffer = ArrayUtils.ensureCapacity(buffer, length + 1,
-				BUFFER_GROWTH_FACTOR);
-		buffer[length++] = c;
+	/**
+	 * Used to set the predictor holding the per-root-class output size
+	 * estimates used by this generator; e.g. to re-use estimates that were
+	 * seeded or learned elsewhere. A predictor can be shared by generators
+	 * running on different threads.
+	 * 
+	 * @param sizePredictor
+	 *            The predictor to use.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>sizePredictor</code> is <code>null</code>.
+	 */
+	public void setSizePredictor(OutputSizePredictor sizePredictor)
+			throws IllegalArgumentException {
+		if (sizePredictor == null)
+			throw new IllegalArgumentException("sizePredictor cannot be null");
 
-		return this;
+		this.sizePredictor = sizePredictor;
 	}
 
-	protected AbstractGenerator append(char[] text) {
-		if (text != null && text.length > 0) {
-			buffer = ArrayUtils.ensureCapacity(buffer, length + text.length,
-					BUFFER_GROWTH_FACTOR);
-			System.arraycopy(text, 0, buffer, length, text.length);
-			length += text.length;
-		}
+	public long getMaxLength() {
+		return maxLength;
+	}
 
-		return this;
+	/**
+	 * Used to set the maximum number of characters a single generation can
+	 * write. Once a generation has written more than this, it is stopped as
+	 * described by the {@link BudgetPolicy}.
+	 * <p/>
+	 * The budget is checked between fields and list elements, so a generation
+	 * can go over it by the size of the value that crossed it (plus the
+	 * closing of any open objects and lists when truncating); but the buffer
+	 * is never grown much past it.
+	 * <p/>
+	 * Default value is: {@link Long#MAX_VALUE} (unlimited)
+	 * 
+	 * @param maxLength
+	 *            The maximum number of characters to write.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>maxLength</code> is &lt; 0.
+	 */
+	public void setMaxLength(long maxLength) throws IllegalArgumentException {
+		if (maxLength < 0)
+			throw new IllegalArgumentException("maxLength [" + maxLength
+					+ "] must be >= 0");
+
+		this.maxLength = maxLength;
 	}
 
-	protected AbstractGenerator append(String text) {
-		if (text != null) {
-			int l = text.length();
+	public int getMaxLevel() {
+		return maxLevel;
+	}
 
-			if (l > 0) {
-				buffer = ArrayUtils.ensureCapacity(buffer, length + l,
-						BUFFER_GROWTH_FACTOR);
-				text.getChars(0, l, buffer, length);
-				length += l;
-			}
-		}
+	/**
+	 * Used to set the maximum nesting level of objects and lists. The root
+	 * object or list is at level 1, so a value of 1 only allows values to be
+	 * nested in the root.
+	 * <p/>
+	 * When truncating, an object or list that would be nested too deeply is
+	 * written as the truncation marker instead.
+	 * <p/>
+	 * Default value is: {@link Integer#MAX_VALUE} (unlimited)
+	 * 
+	 * @param maxLevel
+	 *            The maximum nesting level.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>maxLevel</code> is &lt; 1.
+	 */
+	public void setMaxLevel(int maxLevel) throws IllegalArgumentException {
+		if (maxLevel < 1)
+			throw new IllegalArgumentException("maxLevel [" + maxLevel
+					+ "] must be >= 1");
 
-		return this;
+		this.maxLevel = maxLevel;
 	}
 
-	protected AbstractGenerator append(Boolean value) {
-		if (value != null) {
-			if (value.booleanValue())
-				append(BOOLEAN_TRUE);
-			else
-				append(BOOLEAN_FALSE);
-		}
+	public int getMaxListSize() {
+		return maxListSize;
+	}
 
-		return this;
+	/**
+	 * Used to set the maximum number of elements written for any single list
+	 * (array, {@link List}, {@link Collection} or lazy source).
+	 * <p/>
+	 * When truncating, the elements past the limit are skipped (and never
+	 * pulled from lazy sources) and the truncation marker is written as the
+	 * list's last element.
+	 * <p/>
+	 * Default value is: {@link Integer#MAX_VALUE} (unlimited)
+	 * 
+	 * @param maxListSize
+	 *            The maximum number of elements to write per list.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>maxListSize</code> is &lt; 0.
+	 */
+	public void setMaxListSize(int maxListSize)
+			throws IllegalArgumentException {
+		if (maxListSize < 0)
+			throw new IllegalArgumentException("maxListSize [" + maxListSize
+					+ "] must be >= 0");
+
+		this.maxListSize = maxListSize;
 	}
 
-	protected AbstractGenerator append(Number value) {
-		if (value != null) {
-			String text = null;
+	public BudgetPolicy getBudgetPolicy() {
+		return budgetPolicy;
+	}
 
-			/*
-			 * This is done instead of Number.toString() to avoid the 4 or 5
-			 * levels of redirection that Number.toString() invokes, bouncing
-			 * between abstract class toString methods to String.valueOf back to
-			 * the concrete wrapper classes toString(val) methods.
-			 * 
-			 * We short circuit all that bouncing and go directly to the end
-			 * method call below.
-			 */
-			if (value instanceof Integer)
-				text = Integer.toString(((Integer) value).intValue());
-			else if (value instanceof Double)
-				text = Double.toString(((Double) value).doubleValue());
-			else if (value instanceof Long)
-				text = Long.toString(((Long) value).longValue());
-			else if (value instanceof Float)
-				text = Float.toString(((Float) value).floatValue());
-			else if (value instanceof Byte)
-				text = Byte.toString(((Byte) value).byteValue());
-			else if (value instanceof Short)
-				text = Short.toString(((Short) value).shortValue());
+	/**
+	 * Used to set how this generator reacts to a generation exceeding any of
+	 * its budgets.
+	 * <p/>
+	 * Default value is: {@link BudgetPolicy#FAIL}
+	 * 
+	 * @param budgetPolicy
+	 *            The policy to apply.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>budgetPolicy</code> is <code>null</code>.
+	 */
+	public void setBudgetPolicy(BudgetPolicy budgetPolicy)
+			throws IllegalArgumentException {
+		if (budgetPolicy == null)
+			throw new IllegalArgumentException("budgetPolicy cannot be null");
 
-			append(text);
-		}
+		this.budgetPolicy = budgetPolicy;
+	}
 
-		return this;
+	public String getTruncationMarker() {
+		return truncationMarker;
 	}
 
-	protected abstract void writeObjectOpen(String fieldName, int level,
-			boolean inList);
+	/**
+	 * Used to set the string value written in place of content dropped by
+	 * {@link BudgetPolicy#TRUNCATE}.
+	 * <p/>
+	 * Default value is: {@link #DEFAULT_TRUNCATION_MARKER}
+	 * 
+	 * @param truncationMarker
+	 *            The marker to write.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>truncationMarker</code> is <code>null</code>.
+	 */
+	public void setTruncationMarker(String truncationMarker)
+			throws IllegalArgumentException {
+		if (truncationMarker == null)
+			throw new IllegalArgumentException(
+					"truncationMarker cannot be null");
 
-	protected abstract void writeObjectClose(String fieldName, int level,
-			boolean inList);
+		this.truncationMarker = truncationMarker;
+	}
 
-	protected abstract void writeListOpen(String fieldName, int level,
-			boolean inList);
+	/**
+	 * Used to determine if the last (or current) generation was truncated
+	 * because it exceeded one of this generator's budgets.
+	 * 
+	 * @return <code>true</code> if content was dropped from the output.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
 
-	protected abstract void writeListClose(String fieldName, int level,
-			boolean inList);
+	public IContentDigest getContentDigest() {
+		return contentDigest;
+	}
 
-	protected abstract void writeListSeparator();
+	/**
+	 * Used to set the digest that every chunk of generated content is fed into
+	 * as it is written, e.g. to compute the <code>ETag</code> of a response
+	 * without a second pass over the finished document.
+	 * <p/>
+	 * The digest is reset at the start of every generation; once
+	 * {@link #generate(Object)} returns (or the sink has been flushed when
+	 * generating into an {@link ISink}) it holds the digest of the complete
+	 * output. The digest of a generation that failed or was cancelled only
+	 * covers part of the output and must not be used.
+	 * <p/>
+	 * Default value is: <code>null</code> (no digest is computed)
+	 * 
+	 * @param contentDigest
+	 *            The digest to feed the generated content into or
+	 *            <code>null</code> to stop computing one.
+	 */
+	public void setContentDigest(IContentDigest contentDigest) {
+		this.contentDigest = contentDigest;
+	}
 
-	protected abstract void writeBoolean(String fieldName, Boolean value,
-			int level, boolean inList);
+	public IIndenter getIndenter() {
+		return indenter;
+	}
 
-	protected abstract void writeNumber(String fieldName, Number value,
-			int level, boolean inList);
+	public void setIndenter(IIndenter indenter) throws IllegalArgumentException {
+		if (indenter == null)
+			throw new IllegalArgumentException("indenter cannot be null");
 
-	protected abstract void writeString(String fieldName, String value,
-			int level, boolean inList);
+		this.indenter = indenter;
 
-	private void indent(Type type, Position position) {
-		// Get the indent for the current type and position.
-		char[] indent = indenter.getIndent(type, position, level);
+		// Resolve the indent path once instead of on every indent call.
+		compact = (indenter instanceof CompactIndenter);
+		lineIndenter = (indenter instanceof ILineIndenter ? (ILineIndenter) indenter
+				: null);
+	}
 
-		// Only append if the indenter gave us anything non-empty.
-		if (indent != null && indent.length > 0)
-			append(indent);
+	public IInput<char[], char[]> generate(Object object) {
+		return generate(object, (Projection) null);
 	}
 
-	private String typeToName(Class<?> type) {
-		String name = null;
+	public IInput<char[], char[]> generate(Object object, Projection projection) {
+		return generate(object, projection, (CancellationToken) null);
+	}
 
-		if (type != null) {
-			name = type.getName();
+	public IInput<char[], char[]> generate(Object object,
+			CancellationToken token) throws IllegalArgumentException,
+			CancellationException {
+		if (token == null)
+			throw new IllegalArgumentException("token cannot be null");
 
-			// Check if this is a sub-class
-			int i = name.lastIndexOf('$');
+		return generate(object, (Projection) null, token);
+	}
+
+	private IInput<char[], char[]> generate(Object object,
+			Projection projection, CancellationToken token) {
+		// Don't start work that has already been abandoned.
+		if (token != null)
+			token.check();
+
+		Class<?> type = (object == null ? null : object.getClass());
+		int bufferSize = initialBufferSize;
+
+		// Size the buffer for what we expect this type to generate.
+		if (sizePredictionEnabled && type != null) {
+			int predictedSize = sizePredictor.predict(type);
 
-			// If not, then get the last package index.
-			if (i == -1)
-				i = name.lastIndexOf('.');
+			if (predictedSize > bufferSize)
+				bufferSize = predictedSize;
+		}
 
-			char[] chars = new char[name.length() - (i + 1)];
-			name.getChars(i + 1, name.length(), chars, 0);
+		// Reset the generator's state
+		reset(bufferSize);
+		setCancellation(token);
 
-			char c = chars[0];
+		// Ensure there is work to be done.
+		if (type != null) {
+			ClassMetadata metadata = metadataCache.get(type);
 
-			// Lowercase the first char if necessary
-			if (c > 64 && c < 91)
-				chars[0] = (char) (c + 32);
+			try {
+				writeDispatcher(metadata.elementName, type, metadata.kind,
+						metadata.writer, null, object, false, projection);
+
+				// Run the traversal started by the root object to completion.
+				while (depth > 0)
+					step();
+
+				checkLength();
+			} catch (RuntimeException e) {
+				// Release the abandoned traversal (and close lazy sources).
+				resetState();
+				throw e;
+			}
 
-			// Create new name String
-			name = new String(chars);
+			/*
+			 * Learn from how much output this type actually generated. Sparse
+			 * fieldsets would skew the estimate for the full document.
+			 */
+			if (sizePredictionEnabled && projection == null && !truncated)
+				sizePredictor.record(type, length);
 		}
 
-		return name;
-	}
+		// Digest whatever is left since the last chunk.
+		if (contentDigest != null)
+			updateDigest();
 
-	private void openObject(String fieldName, boolean inList) {
-		indent(Type.OBJECT_OPEN, Position.BEFORE);
-		writeObjectOpen(fieldName, level, inList);
-		level++;
-		indent(Type.OBJECT_OPEN, Position.AFTER);
+		return new CharArrayInput(buffer, 0, length);
 	}
 
-	private void closeObject(String fieldName, boolean inList) {
-		level--;
-		indent(Type.OBJECT_CLOSE, Position.BEFORE);
-		writeObjectClose(fieldName, level, inList);
-		indent(Type.OBJECT_CLOSE, Position.AFTER);
+	public void generate(Object object, ISink sink)
+			throws IllegalArgumentException, IOException {
+		begin(object, sink);
+		resume(Integer.MAX_VALUE);
+	}
+
+	public void generate(Object object, ISink sink, CancellationToken token)
+			throws IllegalArgumentException, IOException,
+			CancellationException {
+		if (token == null)
+			throw new IllegalArgumentException("token cannot be null");
+
+		begin(object, sink, token);
+		resume(Integer.MAX_VALUE);
+	}
+
+	public Reader generateReader(Object object) {
+		return new GeneratorReader(this, object);
+	}
+
+	/**
+	 * Used to start a resumable generation of the given object into the given
+	 * sink.
+	 * <p/>
+	 * Unlike {@link #generate(Object, ISink)}, which runs the generation to
+	 * completion, this only writes the opening of the root object. The rest
+	 * of the document is generated in increments by calling
+	 * {@link #resume(int)} until it returns <code>false</code>; this allows a
+	 * caller to suspend generation whenever its consumer cannot accept more
+	 * content (e.g. a slow network client) without the whole document ever
+	 * being buffered in memory.
+	 * <p/>
+	 * Calling {@link #reset()} or starting any other generation on this
+	 * generator abandons a resumable generation that is still in progress.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * @param sink
+	 *            The sink the generated content is written to.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>sink</code> is <code>null</code>.
+	 * @throws IOException
+	 *             if the sink throws an exception while being written to.
+	 */
+	public void begin(Object object, ISink sink)
+			throws IllegalArgumentException, IOException {
+		begin(object, sink, null);
+	}
+
+	/**
+	 * Used to start a resumable generation of the given object into the given
+	 * sink that stops (throwing a {@link CancellationException} from
+	 * {@link #resume(int)}) once the given token is cancelled.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * @param sink
+	 *            The sink the generated content is written to.
+	 * @param token
+	 *            The token used to cancel the generation or <code>null</code>
+	 *            if it can't be cancelled.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>sink</code> is <code>null</code>.
+	 * @throws IOException
+	 *             if the sink throws an exception while being written to.
+	 * @throws CancellationException
+	 *             if <code>token</code> is already cancelled.
+	 * 
+	 * @see #begin(Object, ISink)
+	 */
+	public void begin(Object object, ISink sink, CancellationToken token)
+			throws IllegalArgumentException, IOException,
+			CancellationException {
+		if (sink == null)
+			throw new IllegalArgumentException("sink cannot be null");
+
+		if (token != null)
+			token.check();
+
+		// Reset the generator's state
+		reset(sink);
+		setCancellation(token);
+
+		try {
+			// Ensure there is work to be done.
+			if (object != null) {
+				ClassMetadata metadata = metadataCache.get(object.getClass());
+				writeDispatcher(metadata.elementName, metadata.type,
+						metadata.kind, metadata.writer, null, object, false,
+						null);
+			}
+		} catch (SinkException e) {
+			end();
+			throw e.getCause();
+		} catch (RuntimeException e) {
+			end();
+			throw e;
+		}
+	}
+
+	/**
+	 * Used to continue the resumable generation started with
+	 * {@link #begin(Object, ISink)} until at least <code>minLength</code> more
+	 * characters have been written to the sink or the generation is complete,
+	 * whichever comes first.
+	 * <p/>
+	 * Everything generated by this call is written to the sink before it
+	 * returns. Once the generation is complete, the sink is flushed and this
+	 * method returns <code>false</code>.
+	 * 
+	 * @param minLength
+	 *            The minimum number of characters to generate before
+	 *            returning, unless the generation completes first.
+	 * 
+	 * @return <code>true</code> if there is more content to generate or
+	 *         <code>false</code> if the generation is complete.
+	 * 
+	 * @throws IllegalStateException
+	 *             if there is no resumable generation in progress.
+	 * @throws IOException
+	 *             if the sink throws an exception while being written to or
+	 *             flushed.
+	 */
+	public boolean resume(int minLength) throws IllegalStateException,
+			IOException {
+		if (sink == null)
+			throw new IllegalStateException(
+					"no generation in progress, begin(Object, ISink) must be called first");
+
+		long target = sinkWritten + minLength;
+
+		try {
+			while (depth > 0 && sinkWritten + length < target)
+				step();
+
+			checkLength();
+
+			// Push out whatever is left in the buffer.
+			if (length > 0) {
+				if (contentDigest != null)
+					updateDigest();
+
+				sink.write(buffer, 0, length);
+				sinkWritten += length;
+				length = 0;
+				digested = 0;
+			}
+
+			if (depth > 0)
+				return true;
+
+			sink.flush();
+		} catch (SinkException e) {
+			end();
+			throw e.getCause();
+		} catch (IOException e) {
+			end();
+			throw e;
+		} catch (RuntimeException e) {
+			end();
+			throw e;
+		}
+
+		end();
+		return false;
+	}
+
+	/**
+	 * Used to determine if a resumable generation started with
+	 * {@link #begin(Object, ISink)} is still in progress.
+	 * 
+	 * @return <code>true</code> if a resumable generation is in progress.
+	 */
+	public boolean isGenerating() {
+		return (sink != null);
+	}
+
+	/**
+	 * Used to determine if the resumable generation started with
+	 * {@link #begin(Object, ISink)} for the given sink is still in progress.
+	 * <p/>
+	 * Unlike {@link #isGenerating()}, this is <code>false</code> once that
+	 * generation has been abandoned for another one, so the owner of a stale
+	 * generation can tell it should leave the generator alone.
+	 * 
+	 * @param sink
+	 *            The sink the generation was started with.
+	 * 
+	 * @return <code>true</code> if the generation into the given sink is in
+	 *         progress.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>sink</code> is <code>null</code>.
+	 */
+	public boolean isGenerating(ISink sink) throws IllegalArgumentException {
+		if (sink == null)
+			throw new IllegalArgumentException("sink cannot be null");
+
+		return (this.sink == sink);
+	}
+
+	private void end() {
+		resetState();
+
+		buffer = null;
+	}
+
+	public long generateTo(Object object, File file)
+			throws IllegalArgumentException, IOException {
+		if (file == null)
+			throw new IllegalArgumentException("file cannot be null");
+
+		FileOutputStream out = new FileOutputStream(file);
+		ChannelSink sink = new ChannelSink(out.getChannel());
+
+		try {
+			generate(object, sink);
+
+			return sink.getByteCount();
+		} finally {
+			// Don't leak the pooled buffer if the generation failed.
+			sink.release();
+			out.close();
+		}
+	}
+
+	public OutputSize measure(Object object) {
+		CountingSink sink = new CountingSink();
+
+		try {
+			generate(object, sink);
+		} catch (IOException e) {
+			// Can't happen, counting never throws.
+			throw new IllegalStateException(e);
+		}
+
+		return new OutputSize(sink.getCharCount(), sink.getByteCount());
+	}
+
+	/**
+	 * Used to generate just the value of the given field into the given sink,
+	 * as a root value written the same way (with the same writer and
+	 * encoding) it is when its object is generated.
+	 * <p/>
+	 * This is what {@link JSONPatchGenerator} renders the values of changed
+	 * fields with.
+	 */
+	void generate(FieldMetadata field, Object value, ISink sink)
+			throws IOException {
+		reset(sink);
+
+		try {
+			writeDispatcher(field.name, field.type, field.kind, field.writer,
+					field.encoding, value, false, null);
+		} catch (SinkException e) {
+			end();
+			throw e.getCause();
+		} catch (RuntimeException e) {
+			end();
+			throw e;
+		}
+
+		resume(Integer.MAX_VALUE);
+	}
+
+	protected AbstractGenerator append(char c) {
+		ensureCapacity(1);
+		buffer[length++] = c;
+
+		return this;
+	}
+
+	protected AbstractGenerator append(char[] text) {
+		if (text != null && text.length > 0) {
+			ensureCapacity(text.length);
+			System.arraycopy(text, 0, buffer, length, text.length);
+			length += text.length;
+		}
+
+		return this;
+	}
+
+	protected AbstractGenerator append(char[] text, int index, int length) {
+		if (text != null && length > 0) {
+			ensureCapacity(length);
+			System.arraycopy(text, index, buffer, this.length, length);
+			this.length += length;
+		}
+
+		return this;
+	}
+
+	protected AbstractGenerator append(String text) {
+		if (text != null) {
+			int l = text.length();
+
+			if (l > 0) {
+				ensureCapacity(l);
+				text.getChars(0, l, buffer, length);
+				length += l;
+			}
+		}
+
+		return this;
+	}
+
+	protected AbstractGenerator append(String text, int index, int length) {
+		if (text != null && length > 0) {
+			ensureCapacity(length);
+			text.getChars(index, index + length, buffer, this.length);
+			this.length += length;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Used to append the content of a text value (a string or the
+	 * <code>toString()</code> of a value) as opposed to the markup around it,
+	 * so formats that need to can escape it; e.g. the quotes and backslashes
+	 * in a JSON string.
+	 * <p/>
+	 * The default implementation appends the text as-is.
+	 * 
+	 * @param text
+	 *            The text to append.
+	 * 
+	 * @return this generator.
+	 */
+	protected AbstractGenerator appendText(String text) {
+		return append(text);
+	}
+
+	/**
+	 * Used to append the decimal digits (and sign) of the given value directly
+	 * into the buffer, without creating a <code>String</code> for it.
+	 */
+	protected AbstractGenerator append(long value) {
+		if (value == Long.MIN_VALUE)
+			return append(LONG_MIN_VALUE);
+
+		// A long is at most 19 digits plus a sign.
+		ensureCapacity(20);
+
+		if (value < 0) {
+			buffer[length++] = '-';
+			value = -value;
+		}
+
+		int digits = 1;
+
+		for (long v = value; v >= 10; v /= 10)
+			digits++;
+
+		// Fill in the digits from the last one back.
+		for (int i = length + digits - 1; i >= length; i--) {
+			buffer[i] = (char) ('0' + (value % 10));
+			value /= 10;
+		}
+
+		length += digits;
+		return this;
+	}
+
+	protected AbstractGenerator append(Boolean value) {
+		if (value != null) {
+			if (value.booleanValue())
+				append(BOOLEAN_TRUE);
+			else
+				append(BOOLEAN_FALSE);
+		}
+
+		return this;
+	}
+
+	protected AbstractGenerator append(Number value) {
+		if (value != null) {
+			String text = null;
+
+			/*
+			 * This is done instead of Number.toString() to avoid the 4 or 5
+			 * levels of redirection that Number.toString() invokes, bouncing
+			 * between abstract class toString methods to String.valueOf back to
+			 * the concrete wrapper classes toString(val) methods.
+			 * 
+			 * We short circuit all that bouncing and go directly to the end
+			 * method call below; integral values are written directly into the
+			 * buffer without creating a String at all.
+			 */
+			if (value instanceof Integer)
+				return append(((Integer) value).longValue());
+			else if (value instanceof Double)
+				text = Double.toString(((Double) value).doubleValue());
+			else if (value instanceof Long)
+				return append(((Long) value).longValue());
+			else if (value instanceof Float)
+				text = Float.toString(((Float) value).floatValue());
+			else if (value instanceof Byte || value instanceof Short
+					|| value instanceof AtomicInteger
+					|| value instanceof AtomicLong)
+				return append(value.longValue());
+			else if (value instanceof BigDecimal)
+				return append((BigDecimal) value);
+			else if (value instanceof BigInteger)
+				return append((BigInteger) value);
+			else if (LONG_ADDER_CLASS != null
+					&& (LONG_ADDER_CLASS.isInstance(value) || LONG_ACCUMULATOR_CLASS
+							.isInstance(value)))
+				return append(value.longValue());
+			else
+				text = value.toString();
+
+			append(text);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Used to append the given value the same way
+	 * {@link BigDecimal#toString()} represents it.
+	 * <p/>
+	 * Values whose unscaled value fits in a <code>long</code> and that are
+	 * represented without an exponent (the vast majority of amounts and
+	 * prices) are written digit by digit directly into the buffer; everything
+	 * else falls back to {@link BigDecimal#toString()}.
+	 */
+	protected AbstractGenerator append(BigDecimal value) {
+		if (value != null) {
+			int scale = value.scale();
+			BigInteger unscaled = value.unscaledValue();
+
+			if (scale == 0)
+				return append(unscaled);
+
+			// toString() only uses plain notation in this range.
+			if (scale > 0 && unscaled.bitLength() < 64
+					&& value.precision() - 1 - scale >= -6)
+				appendDecimal(unscaled.longValue(), scale);
+			else
+				append(value.toString());
+		}
+
+		return this;
+	}
+
+	/**
+	 * Used to append the decimal digits (and sign) of the given value.
+	 * <p/>
+	 * Values that fit in a <code>long</code> are written directly into the
+	 * buffer. Larger values are divided into 18-digit chunks that each fit in
+	 * a <code>long</code> and are written the same way (zero-padded, except
+	 * for the leading chunk), instead of building a <code>String</code> of the
+	 * whole value.
+	 */
+	protected AbstractGenerator append(BigInteger value) {
+		if (value != null) {
+			int bits = value.bitLength();
+
+			if (bits < 64)
+				return append(value.longValue());
+			else if (bits > BIG_INTEGER_CHUNK_MAX_BITS)
+				return append(value.toString());
+
+			if (value.signum() < 0) {
+				append('-');
+				value = value.negate();
+			}
+
+			// Chunks are divided off least significant first.
+			long[] chunks = new long[(int) (bits * 0.30103)
+					/ BIG_INTEGER_CHUNK_DIGITS + 2];
+			int count = 0;
+
+			while (value.bitLength() >= 64) {
+				BigInteger[] qr = value.divideAndRemainder(BIG_INTEGER_CHUNK);
+
+				chunks[count++] = qr[1].longValue();
+				value = qr[0];
+			}
+
+			append(value.longValue());
+
+			while (count > 0)
+				appendPadded(chunks[--count], BIG_INTEGER_CHUNK_DIGITS);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Used to get the pre-encoded tokens this generator's format writes for
+	 * the given name (see {@link #encodeName(String)}), encoding them the first
+	 * time the name is seen.
+	 * <p/>
+	 * Names always come from {@link ClassMetadata} so there are only ever as
+	 * many of them as there are classes and fields being written; the tokens
+	 * are cached along with the metadata (see
+	 * {@link #isFieldCachePersisted()}) so a name is encoded once instead of
+	 * being appended piece by piece every time it is written.
+	 * 
+	 * @param name
+	 *            The name of an object, field or list.
+	 * 
+	 * @return the pre-encoded tokens for the given name.
+	 */
+	protected char[][] getNameTokens(String name) {
+		char[][] tokens = nameTokenCache.get(name);
+
+		if (tokens == null) {
+			tokens = encodeName(name);
+			nameTokenCache.put(name, tokens);
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * Used to encode the given name into the token(s) this generator's format
+	 * writes for it, e.g. <code>"name": </code> for JSON or the
+	 * <code>&lt;name&gt;</code> and <code>&lt;/name&gt;</code> tags for XML.
+	 * How many tokens there are and what each one is used for is up to the
+	 * format.
+	 * <p/>
+	 * This is called once per distinct name by {@link #getNameTokens(String)};
+	 * the default implementation returns the name itself as the only token.
+	 * 
+	 * @param name
+	 *            The name of an object, field or list.
+	 * 
+	 * @return the tokens written for the given name.
+	 */
+	protected char[][] encodeName(String name) {
+		return new char[][] { String.valueOf(name).toCharArray() };
+	}
+
+	/**
+	 * Used to encode the constant text this generator's format writes right
+	 * before and right after the simple value (boolean, number or string) of
+	 * the field with the given name, when nothing is indented; e.g.
+	 * <code>"name": "</code> and <code>"</code> for a JSON string.
+	 * <p/>
+	 * When generating with {@link CompactIndenter}, fields of simple values are
+	 * written by appending these literals (fused with the separator and the
+	 * neighbouring literals) around the raw value, instead of calling
+	 * {@link #writeBoolean(String, Boolean, int, boolean)},
+	 * {@link #writeNumber(String, Number, int, boolean)},
+	 * {@link #writeString(String, String, int, boolean)} or
+	 * {@link #writeTypedValue(String, ITypeWriter, Object, int, boolean)};
+	 * so the literals must match what those methods write.
+	 * <p/>
+	 * This is called once per field by the render plan; the default
+	 * implementation returns <code>null</code>, which always writes values
+	 * through the methods above.
+	 * 
+	 * @param name
+	 *            The name of the field.
+	 * @param text
+	 *            <code>true</code> if the value is text (a string or the
+	 *            output of an {@link ITypeWriter} that is text) and
+	 *            <code>false</code> if it is a boolean or number.
+	 * 
+	 * @return the literals written before (index 0) and after (index 1) the
+	 *         value or <code>null</code> if this field can't be written from
+	 *         literals.
+	 */
+	protected char[][] encodeValueLiterals(String name, boolean text) {
+		return null;
+	}
+
+	/**
+	 * Used to encode the text written by {@link #writeListSeparator()}, so it
+	 * can be fused with the literals around values (see
+	 * {@link #encodeValueLiterals(String, boolean)}).
+	 * 
+	 * @return the separator or <code>null</code> (the default) if this
+	 *         generator doesn't support fused literals.
+	 */
+	protected char[] encodeSeparator() {
+		return null;
+	}
+
+	/**
+	 * Used to get the output that {@link ITypeWriter}s append to, which writes
+	 * straight into this generator's buffer.
+	 * 
+	 * @return the output that {@link ITypeWriter}s append to.
+	 */
+	protected IValueOutput getValueOutput() {
+		return valueOutput;
+	}
+
+	/**
+	 * Used to get the output that {@link ITypeWriter}s producing text (see
+	 * {@link ITypeWriter#isText()}) append to, which must escape what is
+	 * appended the same way {@link #appendText(String)} does.
+	 * <p/>
+	 * The default implementation returns {@link #getValueOutput()}.
+	 * 
+	 * @return the output that text {@link ITypeWriter}s append to.
+	 */
+	protected IValueOutput getTextOutput() {
+		return valueOutput;
+	}
+
+	/**
+	 * Used to write a value that has an {@link ITypeWriter}.
+	 * <p/>
+	 * Formats should override this to write their own delimiters around the
+	 * value (depending on {@link ITypeWriter#isText()}) and have the writer
+	 * append the value itself to {@link #getValueOutput()}, straight into the
+	 * buffer. The default implementation exists for generators written before
+	 * writers were supported; it has the writer render the value into a
+	 * temporary <code>String</code> and passes that to
+	 * {@link #writeString(String, String, int, boolean)}.
+	 */
+	protected void writeTypedValue(String fieldName, ITypeWriter<Object> writer,
+			Object value, int level, boolean inList) {
+		StringBuilderOutput output = new StringBuilderOutput();
+		writer.write(value, output);
+		writeString(fieldName, output.builder.toString(), level, inList);
+	}
+
+	/**
+	 * Used to append the decimal <code>unscaled * 10^-scale</code> (where
+	 * <code>scale</code> is &gt; 0) in plain notation directly into the buffer.
+	 */
+	private void appendDecimal(long unscaled, int scale) {
+		if (unscaled == Long.MIN_VALUE) {
+			append(BigDecimal.valueOf(unscaled, scale).toString());
+			return;
+		}
+
+		if (unscaled < 0) {
+			append('-');
+			unscaled = -unscaled;
+		}
+
+		int digits = 1;
+
+		for (long v = unscaled; v >= 10; v /= 10)
+			digits++;
+
+		// Values below 1 are written as 0.000ddd.
+		int intDigits = (digits > scale ? digits - scale : 1);
+		int total = intDigits + 1 + scale;
+
+		ensureCapacity(total);
+
+		// Fill in the fraction then the integer part from the last digit back.
+		int i = length + total - 1;
+
+		for (int end = i - scale; i > end; i--) {
+			buffer[i] = (char) ('0' + (unscaled % 10));
+			unscaled /= 10;
+		}
+
+		buffer[i--] = '.';
+
+		for (; i >= length; i--) {
+			buffer[i] = (char) ('0' + (unscaled % 10));
+			unscaled /= 10;
+		}
+
+		length += total;
+	}
+
+	/**
+	 * Used to append the given non-negative value left-padded with zeros to
+	 * the given number of digits.
+	 */
+	private void appendPadded(long value, int digits) {
+		ensureCapacity(digits);
+
+		for (int i = length + digits - 1; i >= length; i--) {
+			buffer[i] = (char) ('0' + (value % 10));
+			value /= 10;
+		}
+
+		length += digits;
+	}
+
+	/**
+	 * Used to look at the fields that are about to be written for an object,
+	 * right before it is opened with
+	 * {@link #writeObjectOpen(String, int, boolean)}; e.g. so a tabular format
+	 * can write a header row from the fields of the first row's class.
+	 * <p/>
+	 * The default implementation does nothing.
+	 * 
+	 * @param fieldName
+	 *            The name of the object.
+	 * @param metadata
+	 *            The metadata of the object's class.
+	 * @param fields
+	 *            The fields that will be written for the object, in order;
+	 *            all of its class's fields or only those selected by the
+	 *            projection being generated. The same array is passed for
+	 *            every object of the same class (and projection).
+	 * @param level
+	 *            The level the object is opened at.
+	 * @param inList
+	 *            <code>true</code> if the object is an element of a list.
+	 */
+	protected void prepareObject(String fieldName, ClassMetadata metadata,
+			FieldMetadata[] fields, int level, boolean inList) {
+		// no-op
+	}
+
+	/**
+	 * Used to determine if lists and arrays holding objects of a single
+	 * {@link Recursable} class are written as an object of columns (one list
+	 * per field, holding that field's value for every element, in order)
+	 * instead of a list of objects.
+	 * <p/>
+	 * Primitive fields are read into their column without boxing; a
+	 * <code>null</code> field value is written with
+	 * {@link #writeNull(String, int, boolean)} so every column has one value
+	 * per element. Empty lists and lists holding <code>null</code> or mixed
+	 * classes are always written as lists.
+	 * <p/>
+	 * The values of primitive columns are appended directly, the way a format
+	 * writes a number or boolean that is a list element with no delimiters
+	 * around it; formats that don't write them that way must not enable this.
+	 * The default implementation returns <code>false</code>.
+	 * 
+	 * @return <code>true</code> to write lists of objects as columns.
+	 */
+	protected boolean isColumnar() {
+		return false;
+	}
+
+	/**
+	 * Used to write a <code>null</code> value; currently only written for the
+	 * <code>null</code> elements of a list.
+	 * <p/>
+	 * The default implementation writes the string <code>null</code> with
+	 * {@link #writeString(String, String, int, boolean)}.
+	 */
+	protected void writeNull(String fieldName, int level, boolean inList) {
+		writeString(fieldName, String.valueOf((Object) null), level, inList);
+	}
+
+	protected abstract void writeObjectOpen(String fieldName, int level,
+			boolean inList);
+
+	protected abstract void writeObjectClose(String fieldName, int level,
+			boolean inList);
+
+	protected abstract void writeListOpen(String fieldName, int level,
+			boolean inList);
+
+	protected abstract void writeListClose(String fieldName, int level,
+			boolean inList);
+
+	protected abstract void writeListSeparator();
+
+	protected abstract void writeBoolean(String fieldName, Boolean value,
+			int level, boolean inList);
+
+	protected abstract void writeNumber(String fieldName, Number value,
+			int level, boolean inList);
+
+	protected abstract void writeString(String fieldName, String value,
+			int level, boolean inList);
+
+	/**
+	 * Used to make room in the buffer for <code>count</code> more characters.
+	 * <p/>
+	 * When generating into an {@link ISink}, a full buffer is written out to
+	 * the sink and re-used instead of being grown; the buffer is only ever
+	 * grown if a single value is larger than the entire buffer.
+	 */
+	private void ensureCapacity(int count) {
+		if (length + count > buffer.length) {
+			// Fail before growing the buffer for content we would reject.
+			if (sinkWritten + length + count > maxLength
+					&& budgetPolicy == BudgetPolicy.FAIL)
+				throw new BudgetExceededException(Budget.LENGTH, maxLength);
+
+			if (sink != null && length > 0) {
+				if (contentDigest != null)
+					updateDigest();
+
+				try {
+					sink.write(buffer, 0, length);
+				} catch (IOException e) {
+					throw new SinkException(e);
+				}
+
+				sinkWritten += length;
+				length = 0;
+				digested = 0;
+			}
+
+			buffer = ArrayUtils.ensureCapacity(buffer, length + count,
+					BUFFER_GROWTH_FACTOR);
+		}
+	}
+
+	/**
+	 * Used to feed the content generated since the last call into the content
+	 * digest.
+	 */
+	private void updateDigest() {
+		contentDigest.update(buffer, digested, length - digested);
+		digested = length;
+	}
+
+	private void indent(Type type, Position position) {
+		// Compact output never has any indentation, skip the lookup entirely.
+		if (compact)
+			return;
+
+		if (lineIndenter != null) {
+			int width = lineIndenter.getIndentWidth(type, position, level);
+
+			// Write the newline and indent straight into the buffer.
+			if (width >= 0) {
+				ensureCapacity(width + 1);
+				buffer[length++] = '\n';
+
+				if (width > 0) {
+					Arrays.fill(buffer, length, length + width, lineIndenter
+							.getMode().getIndentCharacter());
+					length += width;
+				}
+			}
+
+			return;
+		}
+
+		// Get the indent for the current type and position.
+		char[] indent = indenter.getIndent(type, position, level);
+
+		// Only append if the indenter gave us anything non-empty.
+		if (indent != null && indent.length > 0)
+			append(indent);
+	}
+
+	private void openObject(String fieldName, boolean inList) {
+		indent(Type.OBJECT_OPEN, Position.BEFORE);
+		writeObjectOpen(fieldName, level, inList);
+		level++;
+		indent(Type.OBJECT_OPEN, Position.AFTER);
+	}
+
+	private void closeObject(String fieldName, boolean inList) {
+		level--;
+		indent(Type.OBJECT_CLOSE, Position.BEFORE);
+		writeObjectClose(fieldName, level, inList);
+		indent(Type.OBJECT_CLOSE, Position.AFTER);
 	}
 
 	private void openList(String fieldName, boolean inList) {
@@ -338,14 +1572,26 @@ public abstract class AbstractGenerator implements IGenerator {
 	 * from any array or object themselves.
 	 * <p/>
 	 * Given that "anything can contain anything else" structure,
-	 * writeDispatcher is the central method that all other "discovery" methods
-	 * call into with their array elements or reflected field values and this
-	 * method provides all the logic necessary to decide how that object should
-	 * be handled.
+	 * writeDispatcher is the central method that all array elements and
+	 * reflected field values are passed to and this method provides all the
+	 * logic necessary to decide how that object should be handled.
+	 * <p/>
+	 * Simple values are written immediately with a call to writeValue. Objects
+	 * and list structures (arrays, Lists, other Collections as well as lazy
+	 * sources like Iterators, Streams and Spliterators) are opened and
+	 * then pushed onto a stack of {@link Frame}s instead of being recursed
+	 * into; each call to {@link #step()} then writes the next member of the
+	 * frame on the top of the stack (which may push another frame) or closes
+	 * it once all its members have been written.
+	 * <p/>
+	 * Keeping the traversal state on an explicit stack instead of the call
+	 * stack is what allows a generation to be suspended between any two steps
+	 * and resumed later (see {@link #resume(int)}); it also means arbitrarily
+	 * deep object graphs cannot overflow the thread's stack.
 	 * <p/>
-	 * This method will dispatch to 3 primary methods: writeObject,
-	 * writeArray/List/Collection or writeValue if the value that comes in is an
-	 * object, some list structure or a simple name/value respectively.
+	 * How a value is handled is decided by the {@link Kind} of its type, which
+	 * is resolved once per class (or field) and cached in its
+	 * {@link ClassMetadata}, so no reflection is done here.
 	 * <p/>
 	 * Simple Gen only supports recursing on objects annotated with
 	 * {@link Recursable} so any other object (that isn't a list structure or
@@ -356,6 +1602,11 @@ public abstract class AbstractGenerator implements IGenerator {
 	 *            The name of the object, field or list.
 	 * @param type
 	 *            The type of the value.
+	 * @param kind
+	 *            The {@link Kind} of <code>type</code>.
+	 * @param writer
+	 *            The {@link ITypeWriter} for <code>type</code>, if there is
+	 *            one.
 	 * @param encoding
 	 *            The Encode annotation used on the field, if there was one.
 	 * @param value
@@ -364,53 +1615,214 @@ public abstract class AbstractGenerator implements IGenerator {
 	 *            Indicates if the item is directly contained with a list, some
 	 *            formats like JSON, will change how they are rendered if this
 	 *            is true.
+	 * @param projection
+	 *            The projection limiting which fields of the value (or of the
+	 *            elements of a list value) are written or <code>null</code> to
+	 *            write all of them.
 	 */
-	private void writeDispatcher(String name, Class<?> type, Encode encoding,
-			Object value, boolean listItem) {
-		if (type.isAnnotationPresent(Recursable.class))
-			writeObject(name, type, value, listItem);
-		else if (type.isArray())
-			writeArray(name, type, value, listItem);
-		else if (List.class.isAssignableFrom(type))
-			writeList(name, type, (List<?>) value, listItem);
-		else if (Collection.class.isAssignableFrom(type))
-			writeCollection(name, type, (Collection<?>) value, listItem);
-		else
-			writeValue(name, type, encoding, value, listItem);
+	private void writeDispatcher(String name, Class<?> type, Kind kind,
+			ITypeWriter<Object> writer, Encode encoding, Object value,
+			boolean listItem, Projection projection) {
+		// Everything but simple values opens a new level.
+		if (level >= maxLevel && kind.ordinal() <= Kind.LAZY.ordinal()) {
+			exceeded(Budget.LEVEL, maxLevel);
+
+			if (kind == Kind.LAZY && LazySources.isCloseable(value))
+				LazySources.close(value);
+
+			writeValue(name, Kind.VALUE, null, null, truncationMarker,
+					listItem);
+			return;
+		}
+
+		switch (kind) {
+		case OBJECT:
+			pushObject(name, metadataCache.get(type), value, listItem,
+					projection);
+			break;
+
+		case ARRAY:
+			if (!isColumnar() || !pushColumns(name, value, listItem, projection))
+				pushArray(name, value, listItem, projection);
+			break;
+
+		case LIST:
+			if (!isColumnar() || !pushColumns(name, value, listItem, projection))
+				pushList(name, (List<?>) value, listItem, projection);
+			break;
+
+		case COLLECTION:
+			pushIterator(name, ((Collection<?>) value).iterator(), null,
+					listItem, projection);
+			break;
+
+		case LAZY:
+			pushIterator(name, LazySources.iterator(value),
+					(LazySources.isCloseable(value) ? value : null), listItem,
+					projection);
+			break;
+
+		default:
+			writeValue(name, kind, writer, encoding, value, listItem);
+		}
+	}
+
+	private Frame push(int kind, String name, boolean listItem,
+			Projection projection) {
+		// Grow the stack if we need to.
+		if (depth == frames.length) {
+			Frame[] tmp = new Frame[frames.length * 2];
+			System.arraycopy(frames, 0, tmp, 0, frames.length);
+			frames = tmp;
+		}
+
+		Frame frame = frames[depth];
+
+		// Frames are re-used, only create them the first time we get this deep.
+		if (frame == null)
+			frame = frames[depth] = new Frame();
+
+		depth++;
+
+		frame.kind = kind;
+		frame.name = name;
+		frame.listItem = listItem;
+		frame.projection = projection;
+
+		return frame;
+	}
+
+	private void pushObject(String name, ClassMetadata metadata,
+			Object object, boolean listItem, Projection projection) {
+		FieldMetadata[] fields = null;
+		Projection[] children = null;
+
+		if (projection == null)
+			fields = metadata.fields;
+		else {
+			// Only walk the fields the projection asked for.
+			Projection.Plan plan = projection.getPlan(metadata);
+
+			fields = plan.fields;
+			children = plan.children;
+		}
+
+		prepareObject(name, metadata, fields, level, listItem);
+		openObject(name, listItem);
+
+		Frame frame = push(Frame.OBJECT, name, listItem, projection);
+		frame.source = object;
+		frame.fields = fields;
+		frame.children = children;
+
+		// Literals can only be fused when nothing is indented between them.
+		if (compact)
+			frame.plan = getRenderPlan(fields);
+	}
+
+	private void pushArray(String name, Object array, boolean listItem,
+			Projection projection) {
+		openList(name, listItem);
+
+		Frame frame = push(Frame.ARRAY, name, listItem, projection);
+		frame.source = array;
+		frame.size = (array == null ? 0 : Array.getLength(array));
+	}
+
+	private void pushList(String name, List<?> list, boolean listItem,
+			Projection projection) {
+		openList(name, listItem);
+
+		Frame frame = push(Frame.LIST, name, listItem, projection);
+		frame.source = list;
+		frame.size = (list == null ? 0 : list.size());
 	}
 
-	private void writeObject(String name, Class<?> type, Object object,
-			boolean listItem) {
-		openObject(name, listItem);
+	/**
+	 * Used to open a list whose elements are pulled one at a time from the
+	 * given iterator as the list is written, so sources like database cursors
+	 * never need to be materialized into a {@link List} first.
+	 * 
+	 * @param closeable
+	 *            The source of the iterator if it needs to be closed once the
+	 *            list has been written (or abandoned), otherwise
+	 *            <code>null</code>.
+	 */
+	private void pushIterator(String name, Iterator<?> iterator,
+			Object closeable, boolean listItem, Projection projection) {
+		openList(name, listItem);
 
-		// Check if we already have the fields cached for this class.
-		Field[] fields = fieldCache.get(type);
+		Frame frame = push(Frame.ITERATOR, name, listItem, projection);
+		frame.iterator = iterator;
+		frame.closeable = closeable;
+	}
 
-		// Check if the fields for this type were already cached.
-		if (fields == null) {
-			// Get all public, inherited fields for the class.
-			fields = type.getFields();
+	/**
+	 * Used to advance the traversal by writing the next member of the frame on
+	 * the top of the stack, or closing that frame if it has no more members.
+	 * <p/>
+	 * This must only be called while <code>depth</code> is &gt; 0.
+	 */
+	private void step() {
+		// Only check for cancellation every so often, it may read the clock.
+		if (cancellation != null && --cancellationCountdown == 0) {
+			cancellationCountdown = CANCELLATION_CHECK_INTERVAL;
+			cancellation.check();
+		}
 
-			// Cache the fields for this type incase we parse it again later.
-			fieldCache.put(type, fields);
+		if (sinkWritten + length > maxLength && !truncated) {
+			exceeded(Budget.LENGTH, maxLength);
+			truncate();
 		}
 
-		// Process the object's fields and values.
-		for (int i = 0, lastSepIdx = (fields.length - 1); i < fields.length; i++) {
-			Field field = fields[i];
+		if (contentDigest != null && length - digested >= DIGEST_CHUNK_SIZE)
+			updateDigest();
 
-			int mods = field.getModifiers();
+		Frame frame = frames[depth - 1];
 
-			// Skip static, transient or synthetic fields.
-			if (Modifier.isStatic(mods) || Modifier.isTransient(mods)
-					|| field.isSynthetic())
-				continue;
+		switch (frame.kind) {
+		case Frame.OBJECT:
+			stepObject(frame);
+			break;
+
+		case Frame.ARRAY:
+		case Frame.LIST:
+			stepIndexed(frame);
+			break;
+
+		case Frame.ITERATOR:
+			stepIterator(frame);
+			break;
+
+		case Frame.COLUMNS:
+			stepColumns(frame);
+			break;
+
+		case Frame.VALUE_COLUMN:
+			stepValueColumn(frame);
+			break;
+		}
+	}
+
+	private void stepObject(Frame frame) {
+		FieldMetadata[] fields = frame.fields;
+		RenderPlan plan = frame.plan;
+
+		/*
+		 * Index of the last simple value written by this call using the render
+		 * plan; its closing literal is held back so it can be written along
+		 * with the opening literal of the next one.
+		 */
+		int fused = -1;
 
+		// Process the object's next field and value.
+		for (int i = frame.index; i < fields.length; i++) {
+			FieldMetadata field = fields[i];
 			Object fieldValue = null;
 
 			try {
 				// Get the field's value.
-				fieldValue = field.get(object);
+				fieldValue = field.getValue(frame.source);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -426,114 +1838,562 @@ public abstract class AbstractGenerator implements IGenerator {
 			if (fieldValue == null)
 				continue;
 
+			// Simple values are written in place, with fused literals.
+			if (plan != null && plan.fusable[i]) {
+				/*
+				 * Hand back to step() once over budget, so a run of fused
+				 * values can't write past it unchecked.
+				 */
+				if (sinkWritten + length > maxLength && !truncated) {
+					if (fused >= 0)
+						append(plan.suffixes[fused]);
+
+					frame.index = i;
+					return;
+				}
+
+				if (fused >= 0 && fused == i - 1)
+					append(plan.chained[i]);
+				else {
+					if (fused >= 0)
+						append(plan.suffixes[fused]);
+
+					append(frame.separatorPending ? plan.separated[i]
+							: plan.prefixes[i]);
+				}
+
+				writeFusedValue(field, fieldValue);
+
+				fused = i;
+				frame.separatorPending = true;
+				continue;
+			}
+
+			if (fused >= 0)
+				append(plan.suffixes[fused]);
+
+			// Pick up after this field the next time this frame is stepped.
+			frame.index = i + 1;
+
+			// Separate this field from the one written before it.
+			if (frame.separatorPending)
+				writeListSeparator();
+
+			frame.separatorPending = true;
+
 			/*
 			 * Dispatch the writing of the field and its value. Also reset the
 			 * "inList" state to false, because even if this parent object was
 			 * in a list, the field that we are recursing on is in the scope of
 			 * an object and no longer directly in the list.
 			 */
-			writeDispatcher(field.getName(), field.getType(),
-					field.getAnnotation(Encode.class), fieldValue, false);
+			writeDispatcher(field.name, field.type, field.kind, field.writer,
+					field.encoding, fieldValue, false,
+					(frame.children == null ? null : frame.children[i]));
+			return;
+		}
 
-			// Append the list separator (if there is one) between items.
-			if (i < lastSepIdx)
-				writeListSeparator();
+		if (fused >= 0)
+			append(plan.suffixes[fused]);
+
+		pop();
+		closeObject(frame.name, frame.listItem);
+		frame.clear();
+	}
+
+	/**
+	 * Used to write just the value of a field the {@link RenderPlan} marked
+	 * as fusable, the same way {@link #writeValue} would have the format write
+	 * it between the field's literals.
+	 */
+	private void writeFusedValue(FieldMetadata field, Object value) {
+		if (field.writer != null)
+			field.writer.write(value, (field.writer.isText() ? getTextOutput()
+					: valueOutput));
+		else if (field.kind == Kind.BOOLEAN)
+			append((Boolean) value);
+		else if (field.kind == Kind.NUMBER)
+			append((Number) value);
+		else if (value instanceof String)
+			appendText((String) value);
+		else
+			appendText(value.toString());
+	}
+
+	/**
+	 * Used to get the render plan for the given fields (all of a class's
+	 * fields or those selected by a projection), building it the first time.
+	 * 
+	 * @return the render plan or <code>null</code> if this generator's format
+	 *         doesn't support fused literals.
+	 */
+	private RenderPlan getRenderPlan(FieldMetadata[] fields) {
+		RenderPlan plan = renderPlanCache.get(fields);
+
+		if (plan == null) {
+			char[] separator = encodeSeparator();
+
+			// The format doesn't support fusing.
+			if (separator == null)
+				return null;
+
+			plan = new RenderPlan(fields.length);
+
+			for (int i = 0; i < fields.length; i++) {
+				FieldMetadata field = fields[i];
+				Kind kind = field.kind;
+
+				if (field.encoding != null
+						|| (kind != Kind.BOOLEAN && kind != Kind.NUMBER && kind != Kind.VALUE))
+					continue;
+
+				char[][] literals = encodeValueLiterals(field.name,
+						(field.writer == null ? kind == Kind.VALUE
+								: field.writer.isText()));
+
+				if (literals == null)
+					continue;
+
+				plan.fusable[i] = true;
+				plan.prefixes[i] = literals[0];
+				plan.suffixes[i] = literals[1];
+				plan.separated[i] = concat(separator, literals[0], null);
+
+				if (i > 0 && plan.fusable[i - 1])
+					plan.chained[i] = concat(plan.suffixes[i - 1], separator,
+							literals[0]);
+			}
+
+			/*
+			 * Plans are keyed by the identity of the fields they were built
+			 * for, so without a bound every field set a projection ever
+			 * compiled would be kept alive here.
+			 */
+			if (renderPlanCache.size() >= MAX_CACHED_RENDER_PLANS)
+				renderPlanCache.clear();
+
+			renderPlanCache.put(fields, plan);
 		}
 
-		closeObject(name, listItem);
+		return plan;
 	}
 
-	private void writeArray(String name, Class<?> type, Object array,
-			boolean listItem) {
-		openList(name, listItem);
+	private static char[] concat(char[] a, char[] b, char[] c) {
+		char[] result = new char[a.length + b.length
+				+ (c == null ? 0 : c.length)];
+
+		System.arraycopy(a, 0, result, 0, a.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
 
-		// Check if we have any work to do on the list.
-		if (array != null) {
-			int length = Array.getLength(array);
+		if (c != null)
+			System.arraycopy(c, 0, result, a.length + b.length, c.length);
 
-			for (int i = 0, lastSepIdx = length - 1; i < length; i++) {
-				Object item = Array.get(array, i);
-				Class<?> itemType = item.getClass();
+		return result;
+	}
 
-				writeDispatcher(typeToName(itemType), itemType, null, item,
-						true);
+	private void stepColumns(Frame frame) {
+		FieldMetadata[] fields = frame.fields;
+		int i = frame.index;
 
-				if (i < lastSepIdx) {
-					writeListSeparator();
-					indent(Type.LIST_ITEM, Position.AFTER);
-				}
+		if (i < fields.length) {
+			if (i > 0)
+				writeListSeparator();
+
+			frame.index = i + 1;
+			FieldMetadata field = fields[i];
+
+			/*
+			 * Columns of simple values are written a chunk at a time
+			 * (primitives without boxing), only columns holding objects or
+			 * lists are walked element by element.
+			 */
+			if (field.kind == Kind.BOOLEAN || field.kind == Kind.NUMBER
+					|| field.kind == Kind.VALUE)
+				pushValueColumn(field, frame.source, frame.size);
+			else {
+				pushList(field.name, new ColumnList(field, frame.source,
+						frame.size), false, (frame.children == null ? null
+						: frame.children[i]));
+				frames[depth - 1].column = field;
 			}
+		} else {
+			pop();
+			closeObject(frame.name, frame.listItem);
+			frame.clear();
 		}
+	}
+
+	private void stepValueColumn(Frame frame) {
+		int i = frame.index;
+
+		if (i < frame.size) {
+			int end = Math.min(frame.size, i + COLUMN_CHUNK_SIZE);
 
-		closeList(name, listItem);
+			if (isPrimitiveColumn(frame.column))
+				writePrimitiveColumn(frame, i, end);
+			else
+				writeValueColumn(frame, i, end);
+
+			frame.index = end;
+		} else {
+			pop();
+			closeList(frame.name, frame.listItem);
+			frame.clear();
+		}
 	}
 
-	private void writeList(String name, Class<?> type, List<?> list,
-			boolean listItem) {
-		openList(name, listItem);
+	private void stepIndexed(Frame frame) {
+		int i = frame.index;
 
-		// Check if we have any work to do on the list.
-		if (list != null && !list.isEmpty()) {
-			for (int i = 0, size = list.size(), lastSepIdx = size - 1; i < size; i++) {
-				Object item = list.get(i);
-				Class<?> itemType = item.getClass();
+		if (i < frame.size) {
+			if (i >= maxListSize) {
+				truncateList(frame);
+				frame.size = i;
+				return;
+			}
 
-				writeDispatcher(typeToName(itemType), itemType, null, item,
-						true);
+			if (i > 0) {
+				writeListSeparator();
+				indent(Type.LIST_ITEM, Position.AFTER);
+			}
 
-				if (i < lastSepIdx) {
-					writeListSeparator();
-					indent(Type.LIST_ITEM, Position.AFTER);
-				}
+			frame.index = i + 1;
+
+			Object item = (frame.kind == Frame.ARRAY ? Array.get(frame.source,
+					i) : ((List<?>) frame.source).get(i));
+
+			writeItem(frame, item);
+		} else {
+			pop();
+			closeList(frame.name, frame.listItem);
+			frame.clear();
+		}
+	}
+
+	private void stepIterator(Frame frame) {
+		Iterator<?> elements = frame.iterator;
+
+		if (elements != null && elements.hasNext()) {
+			if (frame.index >= maxListSize) {
+				truncateList(frame);
+				frame.iterator = null;
+				return;
 			}
+
+			if (frame.index++ > 0) {
+				writeListSeparator();
+				indent(Type.LIST_ITEM, Position.AFTER);
+			}
+
+			writeItem(frame, elements.next());
+		} else {
+			pop();
+
+			if (frame.closeable != null)
+				LazySources.close(frame.closeable);
+
+			closeList(frame.name, frame.listItem);
+			frame.clear();
+		}
+	}
+
+	private void writeItem(Frame frame, Object item) {
+		if (item == null) {
+			indent(Type.VALUE, Position.BEFORE);
+			writeNull(NULL_ELEMENT_NAME, level, true);
+			indent(Type.VALUE, Position.AFTER);
+			return;
+		}
+
+		// Column elements are written the way their field is for an object.
+		if (frame.column != null) {
+			FieldMetadata field = frame.column;
+			writeDispatcher(field.name, field.type, field.kind, field.writer,
+					field.encoding, item, true, frame.projection);
+			return;
 		}
 
-		closeList(name, listItem);
+		Class<?> itemType = item.getClass();
+		ClassMetadata metadata = frame.itemMetadata;
+
+		/*
+		 * Lists are almost always homogeneous, so remember the metadata of the
+		 * last item's class and only go to the cache when the class changes.
+		 */
+		if (metadata == null || metadata.type != itemType)
+			metadata = frame.itemMetadata = metadataCache.get(itemType);
+
+		writeDispatcher(metadata.elementName, itemType, metadata.kind,
+				metadata.writer, null, item, true, frame.projection);
 	}
 
-	private void writeCollection(String name, Class<?> type,
-			Collection<?> collection, boolean listItem) {
-		openList(name, listItem);
+	private void pop() {
+		depth--;
+	}
+
+	/**
+	 * Used to write the given list or array as an object of columns if it
+	 * holds objects of a single {@link Kind#OBJECT} class.
+	 * 
+	 * @return <code>true</code> if the columns were pushed or
+	 *         <code>false</code> if the value must be written as a list.
+	 */
+	private boolean pushColumns(String name, Object value, boolean listItem,
+			Projection projection) {
+		List<?> list = (value instanceof List ? (List<?>) value : null);
+		int size = (list == null ? Array.getLength(value) : list.size());
+
+		/*
+		 * Without rows there is no class to take the columns from; lists over
+		 * the list size budget are left to be truncated (or rejected) as lists.
+		 */
+		if (size == 0 || size > maxListSize)
+			return false;
+
+		Class<?> type = null;
+
+		for (int i = 0; i < size; i++) {
+			Object row = (list == null ? Array.get(value, i) : list.get(i));
+
+			if (row == null || (type != null && row.getClass() != type))
+				return false;
+
+			type = row.getClass();
+		}
+
+		ClassMetadata metadata = metadataCache.get(type);
+
+		if (metadata.kind != Kind.OBJECT)
+			return false;
+
+		FieldMetadata[] fields = metadata.fields;
+		Projection[] children = null;
+
+		if (projection != null) {
+			Projection.Plan plan = projection.getPlan(metadata);
+
+			fields = plan.fields;
+			children = plan.children;
+		}
+
+		openObject(name, listItem);
+
+		Frame frame = push(Frame.COLUMNS, name, listItem, projection);
+		frame.source = value;
+		frame.size = size;
+		frame.fields = fields;
+		frame.children = children;
+
+		return true;
+	}
+
+	/**
+	 * Used to open the list holding the values of a field holding simple
+	 * values (booleans, numbers and strings) of every row; its values are
+	 * written a chunk at a time by {@link #stepValueColumn(Frame)}.
+	 */
+	private void pushValueColumn(FieldMetadata field, Object rows, int size) {
+		openList(field.name, false);
+
+		Frame frame = push(Frame.VALUE_COLUMN, field.name, false, null);
+		frame.source = rows;
+		frame.size = size;
+		frame.column = field;
+		frame.itemMetadata = metadataCache.get(field.type);
+	}
+
+	/**
+	 * Used to determine if the values of the given column can be read with
+	 * the typed {@link Field} getters instead of being boxed.
+	 */
+	private static boolean isPrimitiveColumn(FieldMetadata field) {
+		return (field.writer == null
+				&& field.type.isPrimitive() && field.type != char.class);
+	}
+
+	/**
+	 * Used to write the values of the column on the top of the stack for the
+	 * rows from <code>from</code> (inclusive) to <code>to</code> (exclusive),
+	 * the same way the field is written for a single object.
+	 */
+	private void writeValueColumn(Frame frame, int from, int to) {
+		FieldMetadata field = frame.column;
+		Object rows = frame.source;
+		List<?> list = (rows instanceof List ? (List<?>) rows : null);
+		String elementName = frame.itemMetadata.elementName;
+
+		for (int i = from; i < to; i++) {
+			Object row = (list == null ? Array.get(rows, i) : list.get(i));
+			Object value = null;
 
-		if (collection != null) {
-			Iterator<?> elements = collection.iterator();
+			try {
+				value = field.getValue(row);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
 
-			while (elements.hasNext()) {
-				Object item = elements.next();
-				Class<?> itemType = item.getClass();
+			if (i > 0) {
+				writeListSeparator();
+				indent(Type.LIST_ITEM, Position.AFTER);
+			}
 
-				writeDispatcher(typeToName(itemType), itemType, null, item,
-						true);
+			if (value == null) {
+				indent(Type.VALUE, Position.BEFORE);
+				writeNull(elementName, level, true);
+				indent(Type.VALUE, Position.AFTER);
+			} else
+				writeValue(elementName, field.kind, field.writer,
+						field.encoding, value, true);
+		}
+	}
 
-				if (elements.hasNext()) {
+	/**
+	 * Used to write the values of the primitive column on the top of the
+	 * stack for the rows from <code>from</code> (inclusive) to
+	 * <code>to</code> (exclusive), reading them with the typed {@link Field}
+	 * getters so they are never boxed.
+	 */
+	private void writePrimitiveColumn(Frame frame, int from, int to) {
+		FieldMetadata field = frame.column;
+		Object rows = frame.source;
+		List<?> list = (rows instanceof List ? (List<?>) rows : null);
+		Field f = field.field;
+		Class<?> type = field.type;
+
+		try {
+			for (int i = from; i < to; i++) {
+				Object row = (list == null ? Array.get(rows, i) : list.get(i));
+
+				if (i > 0) {
 					writeListSeparator();
 					indent(Type.LIST_ITEM, Position.AFTER);
 				}
+
+				indent(Type.VALUE, Position.BEFORE);
+
+				if (type == int.class)
+					append(f.getInt(row));
+				else if (type == long.class)
+					append(f.getLong(row));
+				else if (type == double.class)
+					append(Double.toString(f.getDouble(row)));
+				else if (type == boolean.class)
+					append(f.getBoolean(row) ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+				else if (type == float.class)
+					append(Float.toString(f.getFloat(row)));
+				else if (type == short.class)
+					append(f.getShort(row));
+				else
+					append(f.getByte(row));
+
+				indent(Type.VALUE, Position.AFTER);
 			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("unable to read field ["
+					+ field.name + "]", e);
 		}
+	}
 
-		closeList(name, listItem);
+	private void setCancellation(CancellationToken token) {
+		cancellation = token;
+		cancellationCountdown = CANCELLATION_CHECK_INTERVAL;
 	}
 
-	private void writeValue(String name, Class<?> type, Encode encoding,
-			Object value, boolean listItem) {
-		/*
-		 * For primitive field types, the type returned from field.getType() is
-		 * an empty stub Class with a name representing the primitive type and
-		 * nothing else.
-		 * 
-		 * Calling fieldValue.getClass() returns the actual wrapper class of the
-		 * primitive type which is needed by writeValue to accurately decide
-		 * which write method to call.
-		 */
-		if (type.isPrimitive() && value != null)
-			type = value.getClass();
+	/**
+	 * Used to fail a generation that ended up over its length budget.
+	 * <p/>
+	 * The budget is otherwise only checked when a step starts and when the
+	 * buffer has to grow, so content written by the last steps (or a root
+	 * value written without any steps) into a buffer that was already large
+	 * enough would never be checked.
+	 */
+	private void checkLength() {
+		if (sinkWritten + length > maxLength
+				&& budgetPolicy == BudgetPolicy.FAIL)
+			throw new BudgetExceededException(Budget.LENGTH, maxLength);
+	}
+
+	/**
+	 * Used to apply the {@link BudgetPolicy} to a budget that was just
+	 * exceeded; this returns (leaving the caller to truncate the output) only
+	 * when truncating.
+	 */
+	private void exceeded(Budget budget, long limit) {
+		if (budgetPolicy == BudgetPolicy.FAIL)
+			throw new BudgetExceededException(budget, limit);
+
+		truncated = true;
+	}
+
+	/**
+	 * Used to end the list on the top of the stack early, writing the
+	 * truncation marker as its last element.
+	 */
+	private void truncateList(Frame frame) {
+		exceeded(Budget.LIST_SIZE, maxListSize);
+
+		if (frame.index > 0) {
+			writeListSeparator();
+			indent(Type.LIST_ITEM, Position.AFTER);
+		}
+
+		writeValue(metadataCache.get(String.class).elementName, Kind.VALUE,
+				null, null, truncationMarker, true);
+	}
+
+	/**
+	 * Used to stop the traversal once the output budget has been exceeded by
+	 * exhausting every open frame, so each is closed (keeping the output
+	 * well-formed) the next time it is stepped. A list on the top of the stack
+	 * gets the truncation marker as its last element.
+	 */
+	private void truncate() {
+		for (int i = depth - 1; i >= 0; i--) {
+			Frame frame = frames[i];
+
+			switch (frame.kind) {
+			case Frame.OBJECT:
+				frame.index = frame.fields.length;
+				frame.separatorPending = false;
+				break;
+
+			case Frame.ARRAY:
+			case Frame.LIST:
+			case Frame.VALUE_COLUMN:
+				if (i == depth - 1 && frame.index < frame.size)
+					truncateList(frame);
+
+				frame.size = frame.index;
+				break;
+
+			case Frame.COLUMNS:
+				frame.index = frame.fields.length;
+				break;
+
+			case Frame.ITERATOR:
+				if (i == depth - 1 && frame.iterator != null
+						&& frame.iterator.hasNext())
+					truncateList(frame);
+
+				frame.iterator = null;
+				break;
+			}
+		}
+	}
 
+	private void writeValue(String name, Kind kind, ITypeWriter<Object> writer,
+			Encode encoding, Object value, boolean listItem) {
 		indent(Type.VALUE, Position.BEFORE);
 
-		if (Boolean.class.isAssignableFrom(type))
+		/*
+		 * Primitive field types were already resolved to the kind of their
+		 * wrapper class when the field's metadata was created.
+		 */
+		if (writer != null)
+			writeTypedValue(name, writer, value, level, listItem);
+		else if (kind == Kind.BOOLEAN)
 			writeBoolean(name, (Boolean) value, level, listItem);
-		else if (Number.class.isAssignableFrom(type))
+		else if (kind == Kind.NUMBER)
 			writeNumber(name, (Number) value, level, listItem);
 		else {
 			String text = null;
@@ -577,4 +2437,230 @@ public abstract class AbstractGenerator implements IGenerator {
 
 		indent(Type.VALUE, Position.AFTER);
 	}
+
+	private static Class<?> findClass(String name) {
+		try {
+			return Class.forName(name);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Class used to adapt this generator's append methods to the
+	 * {@link IValueOutput} handed to {@link ITypeWriter}s.
+	 */
+	private class ValueOutput implements IValueOutput {
+		public IValueOutput append(char c) {
+			AbstractGenerator.this.append(c);
+			return this;
+		}
+
+		public IValueOutput append(char[] chars) {
+			AbstractGenerator.this.append(chars);
+			return this;
+		}
+
+		public IValueOutput append(char[] chars, int index, int length) {
+			AbstractGenerator.this.append(chars, index, length);
+			return this;
+		}
+
+		public IValueOutput append(String text) {
+			AbstractGenerator.this.append(text);
+			return this;
+		}
+
+		public IValueOutput append(long value) {
+			AbstractGenerator.this.append(value);
+			return this;
+		}
+	}
+
+	/**
+	 * Class used to collect the output of an {@link ITypeWriter} into a
+	 * <code>String</code> for formats that can't write it directly.
+	 */
+	private static class StringBuilderOutput implements IValueOutput {
+		private StringBuilder builder = new StringBuilder(32);
+
+		public IValueOutput append(char c) {
+			builder.append(c);
+			return this;
+		}
+
+		public IValueOutput append(char[] chars) {
+			builder.append(chars);
+			return this;
+		}
+
+		public IValueOutput append(char[] chars, int index, int length) {
+			builder.append(chars, index, length);
+			return this;
+		}
+
+		public IValueOutput append(String text) {
+			builder.append(text);
+			return this;
+		}
+
+		public IValueOutput append(long value) {
+			builder.append(value);
+			return this;
+		}
+	}
+
+	/**
+	 * Class used to hold the traversal state of a single object or list
+	 * structure that is in the process of being written.
+	 */
+	private static class Frame {
+		private static final int OBJECT = 0;
+		private static final int ARRAY = 1;
+		private static final int LIST = 2;
+		private static final int ITERATOR = 3;
+		private static final int COLUMNS = 4;
+		private static final int VALUE_COLUMN = 5;
+
+		private int kind;
+		private String name;
+		private boolean listItem;
+
+		private Object source;
+		private FieldMetadata[] fields;
+		private RenderPlan plan;
+		private ClassMetadata itemMetadata;
+		private FieldMetadata column;
+		private Iterator<?> iterator;
+		private Object closeable;
+
+		private Projection projection;
+		private Projection[] children;
+
+		private int index;
+		private int size;
+		private boolean separatorPending;
+
+		/**
+		 * Used to drop all references held by this frame so it can be
+		 * re-used and doesn't keep the generated object graph reachable.
+		 */
+		private void clear() {
+			name = null;
+			source = null;
+			fields = null;
+			plan = null;
+			itemMetadata = null;
+			column = null;
+			iterator = null;
+			closeable = null;
+
+			projection = null;
+			children = null;
+
+			index = 0;
+			size = 0;
+			separatorPending = false;
+		}
+	}
+
+	/**
+	 * Class used to present one field of every row of a columnar list as a
+	 * list of its own, reading each value from its row as it is written.
+	 */
+	private static class ColumnList extends AbstractList<Object> implements
+			RandomAccess {
+		private FieldMetadata field;
+		private Object rows;
+		private int size;
+
+		private ColumnList(FieldMetadata field, Object rows, int size) {
+			this.field = field;
+			this.rows = rows;
+			this.size = size;
+		}
+
+		@Override
+		public Object get(int index) {
+			Object row = (rows instanceof List ? ((List<?>) rows).get(index)
+					: Array.get(rows, index));
+
+			try {
+				return field.getValue(row);
+			} catch (Exception e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Class used to hold the constant text written around the simple values
+	 * of a class's fields in compact mode, with adjacent literals fused into
+	 * single tokens (e.g. <code>","title": "</code> in JSON or
+	 * <code>&lt;/title&gt;&lt;isbn&gt;</code> in XML) so each field costs one
+	 * bulk copy plus its value instead of several small appends.
+	 * <p/>
+	 * Every array is indexed by the field's position in the fields the plan
+	 * was built for.
+	 */
+	private static class RenderPlan {
+		/**
+		 * If the field is a simple value written with the literals below.
+		 */
+		private boolean[] fusable;
+
+		/**
+		 * The opening literal when the field is the first one written.
+		 */
+		private char[][] prefixes;
+
+		/**
+		 * The separator and opening literal.
+		 */
+		private char[][] separated;
+
+		/**
+		 * The closing literal of the previous field, the separator and the
+		 * opening literal; used when both fields are written back to back.
+		 */
+		private char[][] chained;
+
+		/**
+		 * The closing literal.
+		 */
+		private char[][] suffixes;
+
+		private RenderPlan(int size) {
+			fusable = new boolean[size];
+			prefixes = new char[size][];
+			separated = new char[size][];
+			chained = new char[size][];
+			suffixes = new char[size][];
+		}
+	}
+
+	/**
+	 * Unchecked wrapper used to carry an {@link IOException} thrown by an
+	 * {@link ISink} out of the append methods (which subclasses call without
+	 * any exception handling) and back to
+	 * {@link AbstractGenerator#generate(Object, ISink)}.
+	 */
+	private static class SinkException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private SinkException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
 }
\ No newline at end of file
@@ -52,10 +52,18 @@ public abstract class AbstractIndenter implements IIndenter {
 	 */
 	public static final int DEFAULT_INDENT_MULTIPLE = 1;
 
+	private static final int POSITION_COUNT = Position.values().length;
+	private static final int SLOT_COUNT = Type.values().length
+			* POSITION_COUNT;
+
 	private Mode mode;
 	private int indentMultiple;
 
-	private char[][] cache;
+	/**
+	 * Indents cached by type and position (see {@link #getSlot(Type, Position)})
+	 * and then by level.
+	 */
+	private char[][][] cache;
 
 	public AbstractIndenter() {
 		this(DEFAULT_MODE);
@@ -70,7 +78,7 @@ public abstract class AbstractIndenter implements IIndenter {
 		setMode(mode);
 		setIndentMultiple(indentMultiple);
 
-		cache = new char[128][];
+		cache = new char[SLOT_COUNT][][];
 	}
 
 	public Mode getMode() {
@@ -104,12 +112,10 @@ public abstract class AbstractIndenter implements IIndenter {
 	 * {@link #getIndentImpl(IIndenter.Type, IIndenter.Position, int)} to create
 	 * it.
 	 * <p/>
-	 * This method calculates if an existing cached <code>char[]</code> exists
-	 * for these arguments by using the following key as a lookup:
-	 * 
-	 * <pre>
-	 * int key = type.hashCode() + position.hashCode() + level;
-	 * </pre>
+	 * Indents are cached by the ordinals of the type and position and then by
+	 * level, so every combination of arguments has its own entry. The cache is
+	 * safe to use from multiple threads; at worst the same indent is created
+	 * more than once.
 	 */
 	public char[] getIndent(Type type, Position position, int level)
 			throws IllegalArgumentException {
@@ -120,26 +126,36 @@ public abstract class AbstractIndenter implements IIndenter {
 		if (level < 0)
 			throw new IllegalArgumentException("level must be >= 0");
 
-		// Calculate the cache lookup key
-		int key = (type.hashCode() + position.hashCode() + level)
-				% cache.length;
+		int slot = getSlot(type, position);
+		char[][] levels = cache[slot];
+
+		// Grow the cache for this type and position to hold the level.
+		if (levels == null || level >= levels.length) {
+			char[][] tmp = new char[Math.max(level + 1,
+					(levels == null ? 8 : levels.length * 2))][];
 
-		// Protect from overflow.
-		if (key < 0)
-			key = -key;
+			if (levels != null)
+				System.arraycopy(levels, 0, tmp, 0, levels.length);
+
+			cache[slot] = levels = tmp;
+		}
 
 		// Attempt to pull an indent from the cache
-		char[] indent = cache[key];
+		char[] indent = levels[level];
 
 		// If the indent wasn't cached, calculate it and cache it.
 		if (indent == null) {
 			indent = getIndentImpl(type, position, level);
-			cache[key] = indent;
+			levels[level] = indent;
 		}
 
 		return indent;
 	}
 
+	private static int getSlot(Type type, Position position) {
+		return (type.ordinal() * POSITION_COUNT) + position.ordinal();
+	}
+
 	/**
 	 * Convenience method used to generate a <code>char[]</code> representing an
 	 * indent for the given level, the current indent multiple set on this
@@ -0,0 +1,384 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.thebuzzmedia.common.io.IInput;
+import com.thebuzzmedia.simple.generator.sink.ISink;
+
+/**
+ * Class used to generate a large number of independent documents (e.g. one
+ * per account) in parallel, using the threads of a given {@link Executor}.
+ * <p/>
+ * The roots are split into contiguous ranges that are generated as separate
+ * tasks. Each task borrows a generator from a pool kept by this class (new
+ * ones are created with an {@link IGeneratorFactory} when the pool is empty),
+ * so no generator is ever used by two threads at once. Every generator shares
+ * the same thread-safe {@link ClassMetadataCache}, so the reflection done on a
+ * class is only ever done once no matter how many threads write it.
+ * <p/>
+ * Results are always returned (or written) in the order of the given roots,
+ * regardless of the order the tasks complete in.
+ * <p/>
+ * This class is thread-safe; any number of batches can be generated with the
+ * same instance at once.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class BatchGenerator {
+	/**
+	 * Number of tasks a batch is split into per thread of parallelism. Using
+	 * more than one task per thread keeps every thread busy until the end of
+	 * the batch when some documents are much larger than others.
+	 * <p/>
+	 * Default value is: 4
+	 */
+	public static final int TASKS_PER_THREAD = 4;
+
+	/**
+	 * Default separator written between documents when a batch is generated
+	 * into a sink.
+	 * <p/>
+	 * Default value is: <code>"\n"</code>
+	 */
+	public static final String DEFAULT_SEPARATOR = "\n";
+
+	private IGeneratorFactory factory;
+	private ClassMetadataCache metadataCache;
+	private int parallelism;
+	private char[] separator;
+
+	private ConcurrentLinkedQueue<AbstractGenerator> pool;
+
+	public BatchGenerator(IGeneratorFactory factory)
+			throws IllegalArgumentException {
+		this(factory, new ClassMetadataCache());
+	}
+
+	public BatchGenerator(IGeneratorFactory factory,
+			ClassMetadataCache metadataCache) throws IllegalArgumentException {
+		this(factory, metadataCache, Runtime.getRuntime().availableProcessors());
+	}
+
+	public BatchGenerator(IGeneratorFactory factory,
+			ClassMetadataCache metadataCache, int parallelism)
+			throws IllegalArgumentException {
+		if (factory == null)
+			throw new IllegalArgumentException("factory cannot be null");
+		if (metadataCache == null)
+			throw new IllegalArgumentException("metadataCache cannot be null");
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism [" + parallelism
+					+ "] must be >= 1");
+
+		this.factory = factory;
+		this.metadataCache = metadataCache;
+		this.parallelism = parallelism;
+
+		separator = DEFAULT_SEPARATOR.toCharArray();
+		pool = new ConcurrentLinkedQueue<AbstractGenerator>();
+	}
+
+	public IGeneratorFactory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Used to get the cache of class metadata shared by every generator this
+	 * class uses.
+	 * 
+	 * @return the cache of class metadata shared by every generator this class
+	 *         uses.
+	 */
+	public ClassMetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+
+	/**
+	 * Used to get the number of threads a batch is expected to be generated on
+	 * at once, which decides how many tasks a batch is split into. This should
+	 * match the number of threads of the executors batches are generated with.
+	 * 
+	 * @return the number of threads a batch is expected to be generated on.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public String getSeparator() {
+		return new String(separator);
+	}
+
+	/**
+	 * Used to set the separator written between every two documents when a
+	 * batch is generated into a sink with
+	 * {@link #generateAll(List, Executor, ISink)}, e.g. <code>"\n"</code> to
+	 * produce one JSON document per line.
+	 * 
+	 * @param separator
+	 *            The separator to write between documents, possibly empty.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>separator</code> is <code>null</code>.
+	 */
+	public void setSeparator(String separator) throws IllegalArgumentException {
+		if (separator == null)
+			throw new IllegalArgumentException("separator cannot be null");
+
+		this.separator = separator.toCharArray();
+	}
+
+	/**
+	 * Used to generate the textual representation of every object in the
+	 * given list, in parallel, on the threads of the given executor.
+	 * <p/>
+	 * This method blocks until every document has been generated. If the
+	 * generation of any document fails, the tasks not yet started are
+	 * cancelled and the failure is re-thrown.
+	 * 
+	 * @param objects
+	 *            The objects to generate a representation of. A
+	 *            <code>null</code> object results in an empty document.
+	 * @param executor
+	 *            The executor to run the generation on.
+	 * 
+	 * @return the generated documents, in the same order as
+	 *         <code>objects</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>objects</code> or <code>executor</code> are
+	 *             <code>null</code>.
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             batch to complete. The thread's interrupt status is
+	 *             restored.
+	 */
+	public List<IInput<char[], char[]>> generateAll(List<?> objects,
+			Executor executor) throws IllegalArgumentException,
+			CancellationException {
+		if (objects == null)
+			throw new IllegalArgumentException("objects cannot be null");
+		if (executor == null)
+			throw new IllegalArgumentException("executor cannot be null");
+
+		IInput<char[], char[]>[] results = newResults(objects.size());
+		Task[] tasks = submit(objects.toArray(), results, executor);
+
+		for (int i = 0; i < tasks.length; i++)
+			await(tasks, i);
+
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Used to generate the textual representation of every object in the
+	 * given list, in parallel, on the threads of the given executor, writing
+	 * the documents to the given sink in the same order as
+	 * <code>objects</code>, separated by the separator (see
+	 * {@link #setSeparator(String)}).
+	 * <p/>
+	 * The sink is only ever written to by the calling thread, so it does not
+	 * need to be thread-safe. Each range of documents is written as soon as it
+	 * and all the ranges before it are complete and then released, while the
+	 * remaining ranges are still being generated. The sink is flushed once
+	 * every document has been written.
+	 * 
+	 * @param objects
+	 *            The objects to generate a representation of.
+	 * @param executor
+	 *            The executor to run the generation on.
+	 * @param sink
+	 *            The sink the generated documents are written to.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>objects</code>, <code>executor</code> or
+	 *             <code>sink</code> are <code>null</code>.
+	 * @throws IOException
+	 *             if the sink throws an exception while being written to or
+	 *             flushed.
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             batch to complete. The thread's interrupt status is
+	 *             restored.
+	 */
+	public void generateAll(List<?> objects, Executor executor, ISink sink)
+			throws IllegalArgumentException, IOException,
+			CancellationException {
+		if (objects == null)
+			throw new IllegalArgumentException("objects cannot be null");
+		if (executor == null)
+			throw new IllegalArgumentException("executor cannot be null");
+		if (sink == null)
+			throw new IllegalArgumentException("sink cannot be null");
+
+		IInput<char[], char[]>[] results = newResults(objects.size());
+		Task[] tasks = submit(objects.toArray(), results, executor);
+
+		try {
+			for (int i = 0; i < tasks.length; i++) {
+				Task task = tasks[i];
+				await(tasks, i);
+
+				for (int j = task.from; j < task.to; j++) {
+					IInput<char[], char[]> input = results[j];
+
+					if (j > 0 && separator.length > 0)
+						sink.write(separator, 0, separator.length);
+					if (input.getLength() > 0)
+						sink.write(input.getSource(), input.getIndex(),
+								input.getLength());
+
+					// Let the document be collected as soon as it is written.
+					results[j] = null;
+				}
+			}
+		} catch (IOException e) {
+			cancel(tasks);
+			throw e;
+		}
+
+		sink.flush();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static IInput<char[], char[]>[] newResults(int size) {
+		/*
+		 * Generic arrays can't be created directly. The cast is safe because
+		 * the array is only ever written with the IInput<char[], char[]>
+		 * documents returned by AbstractGenerator.generate(Object).
+		 */
+		return (IInput<char[], char[]>[]) new IInput<?, ?>[size];
+	}
+
+	private Task[] submit(Object[] objects, IInput<char[], char[]>[] results,
+			Executor executor) {
+		int size = objects.length;
+		int taskCount = Math.min(size, parallelism * TASKS_PER_THREAD);
+		Task[] tasks = new Task[taskCount];
+
+		for (int i = 0; i < taskCount; i++) {
+			// Spread the remainder over the first ranges.
+			int from = (int) ((long) size * i / taskCount);
+			int to = (int) ((long) size * (i + 1) / taskCount);
+
+			tasks[i] = new Task(objects, results, from, to);
+		}
+
+		try {
+			for (int i = 0; i < taskCount; i++)
+				executor.execute(tasks[i]);
+		} catch (RejectedExecutionException e) {
+			cancel(tasks);
+			throw e;
+		}
+
+		return tasks;
+	}
+
+	private void await(Task[] tasks, int index) throws CancellationException {
+		try {
+			tasks[index].get();
+		} catch (InterruptedException e) {
+			cancel(tasks);
+			Thread.currentThread().interrupt();
+
+			throw new CancellationException(
+					"interrupted while waiting for the batch to complete");
+		} catch (ExecutionException e) {
+			cancel(tasks);
+			Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+
+			throw new RuntimeException(cause);
+		} catch (RuntimeException e) {
+			cancel(tasks);
+			throw e;
+		}
+	}
+
+	private static void cancel(Task[] tasks) {
+		// Tasks already running are left to finish; generation isn't interruptible.
+		for (int i = 0; i < tasks.length; i++)
+			tasks[i].cancel(false);
+	}
+
+	private AbstractGenerator acquire() {
+		AbstractGenerator generator = pool.poll();
+
+		if (generator == null) {
+			generator = factory.newGenerator();
+
+			if (generator == null)
+				throw new IllegalStateException(
+						"factory returned a null generator");
+
+			generator.setMetadataCache(metadataCache);
+		}
+
+		return generator;
+	}
+
+	private void release(AbstractGenerator generator) {
+		/*
+		 * The pool never holds more generators than were in use at once, which
+		 * is bounded by the number of threads generating batches.
+		 */
+		pool.offer(generator);
+	}
+
+	/**
+	 * Task used to generate a contiguous range of a batch with a single
+	 * generator, storing every document at its index in the results.
+	 */
+	private class Task extends FutureTask<Object> {
+		private int from;
+		private int to;
+
+		private Task(final Object[] objects,
+				final IInput<char[], char[]>[] results, final int from,
+				final int to) {
+			super(new Runnable() {
+				public void run() {
+					AbstractGenerator generator = acquire();
+
+					try {
+						for (int i = from; i < to; i++)
+							results[i] = generator.generate(objects[i]);
+					} finally {
+						release(generator);
+					}
+				}
+			}, null);
+
+			this.from = from;
+			this.to = to;
+		}
+	}
+}
\ No newline at end of file
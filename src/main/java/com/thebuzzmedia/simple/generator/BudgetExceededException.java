@@ -0,0 +1,71 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+/**
+ * Exception thrown by a generator using
+ * {@link AbstractGenerator.BudgetPolicy#FAIL} as soon as a generation exceeds
+ * one of the budgets set on it (see
+ * {@link AbstractGenerator#setMaxLength(long)},
+ * {@link AbstractGenerator#setMaxLevel(int)} and
+ * {@link AbstractGenerator#setMaxListSize(int)}).
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class BudgetExceededException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The budgets a generation can exceed.
+	 */
+	public static enum Budget {
+		/**
+		 * The number of characters of output.
+		 */
+		LENGTH,
+		/**
+		 * The nesting level of objects and lists.
+		 */
+		LEVEL,
+		/**
+		 * The number of elements written for a single list.
+		 */
+		LIST_SIZE;
+	}
+
+	private Budget budget;
+	private long limit;
+
+	public BudgetExceededException(Budget budget, long limit)
+			throws IllegalArgumentException {
+		super("generation exceeded its " + budget + " budget of " + limit);
+
+		if (budget == null)
+			throw new IllegalArgumentException("budget cannot be null");
+
+		this.budget = budget;
+		this.limit = limit;
+	}
+
+	public Budget getBudget() {
+		return budget;
+	}
+
+	public long getLimit() {
+		return limit;
+	}
+}
\ No newline at end of file
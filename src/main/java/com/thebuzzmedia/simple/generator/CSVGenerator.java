@@ -0,0 +1,294 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+/**
+ * Class used to implement a generator for the CSV (comma-separated values)
+ * file format as described by <a
+ * href="http://tools.ietf.org/html/rfc4180">RFC 4180</a>.
+ * <p/>
+ * CSV is a table, so this generator only supports flat data: a list (or
+ * array, {@link java.util.Collection} or lazy source) of objects of the same
+ * {@link com.thebuzzmedia.simple.generator.annotation.Recursable} class,
+ * each of which becomes one row, or a single such object, which becomes the
+ * only row. The header row is written from the cached field metadata of the
+ * first row's class (honoring any projection); fields with a
+ * <code>null</code> value are written as empty cells. A field holding an
+ * object or list, or a row of a different class than the first, causes an
+ * {@link IllegalStateException}.
+ * <p/>
+ * Values containing the separator, a double quote or a line break are
+ * enclosed in double quotes with any double quotes in them doubled; all other
+ * values are copied as-is, found by scanning each value once. Every row
+ * (including the last) ends in a CRLF line break.
+ * <p/>
+ * CSV has no indentation, so only {@link CompactIndenter} can be used with
+ * this generator.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class CSVGenerator extends AbstractGenerator {
+	/**
+	 * Default separator written between the cells of a row.
+	 * <p/>
+	 * Default value is: ,
+	 */
+	public static final char DEFAULT_SEPARATOR = ',';
+
+	private static final char QUOTE = '"';
+	private static final char[] LINE_BREAK = new char[] { '\r', '\n' };
+
+	private char separator;
+
+	/**
+	 * The fields of the first row's class, one per column, or
+	 * <code>null</code> before the header has been written.
+	 */
+	private FieldMetadata[] columns;
+	private Class<?> rowType;
+
+	/**
+	 * The index of the next column to be written in the current row.
+	 */
+	private int column;
+
+	public CSVGenerator() {
+		this(DEFAULT_SEPARATOR);
+	}
+
+	public CSVGenerator(char separator) throws IllegalArgumentException {
+		super();
+
+		this.separator = checkSeparator(separator);
+	}
+
+	public CSVGenerator(char separator, int initialBufferSize)
+			throws IllegalArgumentException {
+		super(CompactIndenter.INSTANCE, initialBufferSize);
+
+		this.separator = checkSeparator(separator);
+	}
+
+	public char getSeparator() {
+		return separator;
+	}
+
+	/**
+	 * Overridden to only accept {@link CompactIndenter}, anything else would
+	 * break up the rows.
+	 */
+	@Override
+	public void setIndenter(IIndenter indenter)
+			throws IllegalArgumentException {
+		if (!(indenter instanceof CompactIndenter))
+			throw new IllegalArgumentException(
+					"indenter must be a CompactIndenter, CSV output cannot be indented");
+
+		super.setIndenter(indenter);
+	}
+
+	/**
+	 * Overridden to start a row, writing the header row first if this is the
+	 * first row of the generation.
+	 */
+	@Override
+	protected void prepareObject(String fieldName, ClassMetadata metadata,
+			FieldMetadata[] fields, int level, boolean inList) {
+		if (!isRow(level, inList))
+			throw new IllegalStateException("CSV rows must be flat, field ["
+					+ fieldName + "] holds an object");
+
+		// The root object is the only row.
+		if (level == 0)
+			columns = null;
+
+		if (columns == null) {
+			columns = fields;
+			rowType = metadata.type;
+
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0)
+					append(separator);
+
+				appendCell(fields[i].name);
+			}
+
+			append(LINE_BREAK);
+		} else if (fields != columns)
+			throw new IllegalStateException("every CSV row must be of the same class as the first row ["
+					+ rowType.getName()
+					+ "], found a row of class ["
+					+ metadata.type.getName() + "]");
+
+		column = 0;
+	}
+
+	@Override
+	protected void writeObjectOpen(String fieldName, int level, boolean inList) {
+		// no-op
+	}
+
+	/**
+	 * Overridden to write the empty cells of any trailing <code>null</code>
+	 * fields and end the row.
+	 */
+	@Override
+	protected void writeObjectClose(String fieldName, int level, boolean inList) {
+		for (int i = column; i < columns.length; i++) {
+			if (i > 0)
+				append(separator);
+		}
+
+		append(LINE_BREAK);
+	}
+
+	@Override
+	protected void writeListOpen(String fieldName, int level, boolean inList) {
+		if (level > 0)
+			throw new IllegalStateException("CSV rows must be flat, field ["
+					+ fieldName + "] holds a list");
+
+		// The header is written for the first row of the list.
+		columns = null;
+	}
+
+	@Override
+	protected void writeListClose(String fieldName, int level, boolean inList) {
+		// no-op
+	}
+
+	/**
+	 * Overridden to do nothing; cells and rows are separated as they are
+	 * written.
+	 */
+	@Override
+	protected void writeListSeparator() {
+		// no-op
+	}
+
+	@Override
+	protected void writeBoolean(String fieldName, Boolean value, int level,
+			boolean inList) {
+		if (startCell(fieldName, level, inList))
+			append(value);
+		else
+			append(value).append(LINE_BREAK);
+	}
+
+	@Override
+	protected void writeNumber(String fieldName, Number value, int level,
+			boolean inList) {
+		if (startCell(fieldName, level, inList))
+			append(value);
+		else
+			append(value).append(LINE_BREAK);
+	}
+
+	@Override
+	protected void writeString(String fieldName, String value, int level,
+			boolean inList) {
+		if (startCell(fieldName, level, inList))
+			appendCell(value);
+		else
+			appendCell(value).append(LINE_BREAK);
+	}
+
+	/**
+	 * Used to append the given value as a single cell, enclosing it in double
+	 * quotes (and doubling any double quotes in it) only if it contains the
+	 * separator, a double quote or a line break.
+	 * <p/>
+	 * The value is scanned once for a character that needs quoting; values
+	 * without one (by far the most common) are copied in a single append.
+	 * Quoted values are copied in runs between their double quotes.
+	 */
+	protected AbstractGenerator appendCell(String value) {
+		int length = value.length();
+		int i = 0;
+
+		for (; i < length; i++) {
+			char c = value.charAt(i);
+
+			if (c == separator || c == QUOTE || c == '\r' || c == '\n')
+				break;
+		}
+
+		// Nothing to quote, copy the value as-is.
+		if (i == length)
+			return append(value);
+
+		append(QUOTE);
+
+		int start = 0;
+
+		// Double quotes can only appear from the first special character on.
+		for (int q = value.indexOf(QUOTE, i); q >= 0; q = value.indexOf(
+				QUOTE, q + 1)) {
+			// Copy the run up to and including the quote, then escape it.
+			append(value, start, q + 1 - start).append(QUOTE);
+			start = q + 1;
+		}
+
+		return append(value, start, length - start).append(QUOTE);
+	}
+
+	/**
+	 * Used to move to the cell of the given field in the current row, writing
+	 * empty cells for any <code>null</code> fields skipped before it.
+	 * 
+	 * @return <code>true</code> if the value is a cell in a row or
+	 *         <code>false</code> if it is a row of its own (a simple value in
+	 *         the root list or the root value itself) and must be followed by
+	 *         a line break.
+	 */
+	private boolean startCell(String fieldName, int level, boolean inList) {
+		if (isRow(level, inList))
+			return false;
+
+		int c = column;
+
+		// Fields are written in column order, skipping null ones.
+		while (c < columns.length && columns[c].name != fieldName
+				&& !columns[c].name.equals(fieldName))
+			c++;
+
+		if (c == columns.length)
+			throw new IllegalStateException("field [" + fieldName
+					+ "] is not a column of this CSV table");
+
+		for (int i = column; i <= c; i++) {
+			if (i > 0)
+				append(separator);
+		}
+
+		column = c + 1;
+		return true;
+	}
+
+	private static char checkSeparator(char separator)
+			throws IllegalArgumentException {
+		if (separator == QUOTE || separator == '\r' || separator == '\n')
+			throw new IllegalArgumentException("separator [" + separator
+					+ "] cannot be a double quote or line break");
+
+		return separator;
+	}
+
+	private static boolean isRow(int level, boolean inList) {
+		return (level == 0 || (level == 1 && inList));
+	}
+}
\ No newline at end of file
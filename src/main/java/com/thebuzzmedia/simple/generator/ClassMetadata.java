@@ -0,0 +1,312 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.thebuzzmedia.simple.generator.annotation.Recursable;
+import com.thebuzzmedia.simple.generator.annotation.Timestamp;
+import com.thebuzzmedia.simple.generator.writer.DateTimeWriter;
+import com.thebuzzmedia.simple.generator.writer.ITypeWriter;
+
+/**
+ * Class used to hold everything a generator needs to know about a class that
+ * can be worked out once, instead of every time a value of that class is
+ * written: how values of the class are dispatched (see {@link Kind}), the name
+ * used for its instances when they are written as list elements (see
+ * {@link INamingStrategy}) and, for
+ * {@link Recursable} classes, the pre-filtered fields that get written.
+ * <p/>
+ * Metadata is created and cached by a {@link ClassMetadataCache}. Instances
+ * are immutable and thread-safe, apart from the thread-safe cache of the
+ * {@link Projection} plans compiled for the class.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public final class ClassMetadata {
+	/**
+	 * Enum used to describe how a generator writes the values of a class.
+	 */
+	public static enum Kind {
+		/**
+		 * Values are {@link Recursable} objects whose fields are written.
+		 */
+		OBJECT,
+		/**
+		 * Values are arrays written as lists.
+		 */
+		ARRAY,
+		/**
+		 * Values are {@link List}s written as lists.
+		 */
+		LIST,
+		/**
+		 * Values are non-{@link List} {@link Collection}s written as lists.
+		 */
+		COLLECTION,
+		/**
+		 * Values are lazy sources of elements (e.g. <code>Iterator</code>s or
+		 * <code>Stream</code>s) written as lists.
+		 */
+		LAZY,
+		/**
+		 * Values are written as booleans.
+		 */
+		BOOLEAN,
+		/**
+		 * Values are written as numbers.
+		 */
+		NUMBER,
+		/**
+		 * Values are written as Strings (their <code>toString()</code> value)
+		 * unless there is an {@link ITypeWriter} for them.
+		 */
+		VALUE
+	}
+
+	private static final FieldMetadata[] EMPTY_FIELDS = new FieldMetadata[0];
+
+	final Class<?> type;
+	final Kind kind;
+	final String elementName;
+	final FieldMetadata[] fields;
+	final ITypeWriter<Object> writer;
+
+	/**
+	 * Plans of the projection nodes that met this class, kept here (see
+	 * {@link Projection#getPlan(ClassMetadata)}) so they don't outlive it.
+	 */
+	final Map<Projection, Projection.Plan> plans;
+
+	ClassMetadata(Class<?> type, ClassMetadataCache cache) {
+		this.type = type;
+
+		kind = resolveKind(type);
+		elementName = cache.getNamingStrategy().getElementName(type);
+		fields = (kind == Kind.OBJECT ? resolveFields(type, cache)
+				: EMPTY_FIELDS);
+		writer = resolveWriter(type, kind, cache);
+		plans = new ConcurrentHashMap<Projection, Projection.Plan>(4);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + "[type=" + type.getName() + ", kind="
+				+ kind + ", elementName=" + elementName + ", fields="
+				+ fields.length + "]";
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Used to get the name written for instances of this class when they are
+	 * elements of a list, as derived by the {@link INamingStrategy} of the
+	 * cache this metadata was created by.
+	 * 
+	 * @return the name written for instances of this class when they are
+	 *         elements of a list.
+	 */
+	public String getElementName() {
+		return elementName;
+	}
+
+	/**
+	 * Used to get the fields written for instances of this class, in
+	 * declaration order. Only {@link Kind#OBJECT} classes have fields: their
+	 * public fields (or all of their fields if
+	 * {@link Recursable#includeNonPublic()} is set) or, for records, their
+	 * components. Static, transient and synthetic fields are never included.
+	 * 
+	 * @return the fields written for instances of this class.
+	 */
+	public FieldMetadata[] getFields() {
+		return fields.clone();
+	}
+
+	/**
+	 * Used to get the writer values of this class are written with, if they
+	 * are simple values with a registered {@link ITypeWriter}.
+	 * 
+	 * @return the writer values of this class are written with or
+	 *         <code>null</code> if there isn't one.
+	 */
+	public ITypeWriter<?> getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Used to work out how values declared as the given type are dispatched.
+	 * <p/>
+	 * Primitive types are resolved to the kind of their wrapper so values read
+	 * from primitive fields never need their (boxed) class inspected.
+	 */
+	static Kind resolveKind(Class<?> type) {
+		Kind kind;
+
+		if (type.isPrimitive()) {
+			if (type == Boolean.TYPE)
+				kind = Kind.BOOLEAN;
+			else if (type == Character.TYPE)
+				kind = Kind.VALUE;
+			else
+				kind = Kind.NUMBER;
+		} else if (type.isAnnotationPresent(Recursable.class))
+			kind = Kind.OBJECT;
+		else if (type.isArray())
+			kind = Kind.ARRAY;
+		else if (List.class.isAssignableFrom(type))
+			kind = Kind.LIST;
+		else if (Collection.class.isAssignableFrom(type))
+			kind = Kind.COLLECTION;
+		else if (LazySources.isLazySource(type))
+			kind = Kind.LAZY;
+		else if (Boolean.class.isAssignableFrom(type))
+			kind = Kind.BOOLEAN;
+		else if (Number.class.isAssignableFrom(type))
+			kind = Kind.NUMBER;
+		else
+			kind = Kind.VALUE;
+
+		return kind;
+	}
+
+	/**
+	 * Used to find the writer for values declared as the given type; only
+	 * simple values are ever written with a writer.
+	 */
+	@SuppressWarnings("unchecked")
+	static ITypeWriter<Object> resolveWriter(Class<?> type, Kind kind,
+			ClassMetadataCache cache) {
+		if (kind != Kind.BOOLEAN && kind != Kind.NUMBER && kind != Kind.VALUE)
+			return null;
+
+		return (ITypeWriter<Object>) cache.getTypeWriter(type);
+	}
+
+	private static FieldMetadata[] resolveFields(Class<?> type,
+			ClassMetadataCache cache) {
+		INamingStrategy namingStrategy = cache.getNamingStrategy();
+		List<FieldMetadata> list = new ArrayList<FieldMetadata>();
+
+		Method[] accessors = Records.getAccessors(type);
+
+		if (accessors != null) {
+			/*
+			 * Records are written using their components, in order. Each is
+			 * read from its backing field rather than through its accessor.
+			 */
+			for (Method accessor : accessors) {
+				Field field = null;
+
+				try {
+					field = type.getDeclaredField(accessor.getName());
+				} catch (NoSuchFieldException e) {
+					continue;
+				}
+
+				if (makeAccessible(field))
+					list.add(createField(field, namingStrategy, cache));
+			}
+		} else {
+			boolean includeNonPublic = type.getAnnotation(Recursable.class)
+					.includeNonPublic();
+
+			// Get all the fields we are allowed to write for the class.
+			for (Field field : (includeNonPublic ? getAllFields(type) : type
+					.getFields())) {
+				int mods = field.getModifiers();
+
+				// Skip static, transient or synthetic fields.
+				if (Modifier.isStatic(mods) || Modifier.isTransient(mods)
+						|| field.isSynthetic())
+					continue;
+
+				if (!includeNonPublic || makeAccessible(field))
+					list.add(createField(field, namingStrategy, cache));
+			}
+		}
+
+		return (list.isEmpty() ? EMPTY_FIELDS : list
+				.toArray(new FieldMetadata[list.size()]));
+	}
+
+	private static FieldMetadata createField(Field field,
+			INamingStrategy namingStrategy, ClassMetadataCache cache) {
+		Class<?> fieldType = field.getType();
+		Kind fieldKind = resolveKind(fieldType);
+		ITypeWriter<Object> writer = resolveWriter(fieldType, fieldKind, cache);
+
+		// Timestamp fields are always written as ISO-8601 date-times.
+		if (field.isAnnotationPresent(Timestamp.class)
+				&& (fieldKind == Kind.NUMBER || fieldKind == Kind.VALUE))
+			writer = DateTimeWriter.INSTANCE;
+
+		return new FieldMetadata(field, namingStrategy.getFieldName(field),
+				fieldKind, writer);
+	}
+
+	/**
+	 * Used to get every field declared by the given class and its
+	 * superclasses regardless of visibility, starting with the given class
+	 * the same way {@link Class#getFields()} does.
+	 */
+	private static Field[] getAllFields(Class<?> type) {
+		List<Field> fields = new ArrayList<Field>();
+
+		for (Class<?> c = type; c != null && c != Object.class; c = c
+				.getSuperclass()) {
+			for (Field field : c.getDeclaredFields())
+				fields.add(field);
+		}
+
+		return fields.toArray(new Field[fields.size()]);
+	}
+
+	/**
+	 * Used to suppress the access checks of the given field or method once, so
+	 * reading it while generating costs no more than reading a public field.
+	 * 
+	 * @return <code>true</code> if the checks were suppressed or
+	 *         <code>false</code> if they couldn't be.
+	 */
+	private static boolean makeAccessible(AccessibleObject member) {
+		try {
+			member.setAccessible(true);
+			return true;
+		} catch (RuntimeException e) {
+			/*
+			 * A SecurityException or, on Java 9+, an
+			 * InaccessibleObjectException if the package isn't open to us.
+			 */
+			return false;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,229 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.thebuzzmedia.simple.generator.writer.CharSequenceWriter;
+import com.thebuzzmedia.simple.generator.writer.CharacterWriter;
+import com.thebuzzmedia.simple.generator.writer.EnumWriter;
+import com.thebuzzmedia.simple.generator.writer.ITypeWriter;
+import com.thebuzzmedia.simple.generator.writer.URIWriter;
+import com.thebuzzmedia.simple.generator.writer.UUIDWriter;
+
+/**
+ * Class used to cache the {@link ClassMetadata} of every class a generator
+ * writes, so the reflection needed to work out how a class is written (its
+ * annotations, assignability checks and fields) is only ever done once per
+ * class.
+ * <p/>
+ * The cache also holds the {@link ITypeWriter}s registered for simple value
+ * types. Writers for {@link UUID}, enums, {@link Character},
+ * {@link CharSequence} and {@link URI} are registered by default.
+ * <p/>
+ * This class is thread-safe; a single cache can be shared by any number of
+ * generators (see {@link AbstractGenerator#setMetadataCache(ClassMetadataCache)}),
+ * even ones running on different threads.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class ClassMetadataCache {
+	private INamingStrategy namingStrategy;
+	private Map<Class<?>, ClassMetadata> cache;
+	private Map<Class<?>, ITypeWriter<?>> writers;
+
+	public ClassMetadataCache() {
+		this(DefaultNamingStrategy.INSTANCE);
+	}
+
+	public ClassMetadataCache(INamingStrategy namingStrategy)
+			throws IllegalArgumentException {
+		if (namingStrategy == null)
+			throw new IllegalArgumentException("namingStrategy cannot be null");
+
+		this.namingStrategy = namingStrategy;
+		cache = new ConcurrentHashMap<Class<?>, ClassMetadata>(256);
+		writers = new ConcurrentHashMap<Class<?>, ITypeWriter<?>>(16);
+
+		setTypeWriter(UUID.class, UUIDWriter.INSTANCE);
+		setTypeWriter(Enum.class, EnumWriter.INSTANCE);
+		setTypeWriter(Character.class, CharacterWriter.INSTANCE);
+		setTypeWriter(CharSequence.class, CharSequenceWriter.INSTANCE);
+		setTypeWriter(URI.class, URIWriter.INSTANCE);
+	}
+
+	/**
+	 * Used to get the strategy the element and field names of the metadata
+	 * created by this cache are derived with. The strategy is fixed for the
+	 * life of the cache since the names it derives are cached along with the
+	 * rest of the metadata.
+	 * 
+	 * @return the naming strategy used by this cache.
+	 */
+	public INamingStrategy getNamingStrategy() {
+		return namingStrategy;
+	}
+
+	/**
+	 * Used to register the writer used for values of the given type and its
+	 * sub-types (or implementations, if <code>type</code> is an interface).
+	 * Registering a writer for a primitive's wrapper also applies it to fields
+	 * of that primitive type.
+	 * <p/>
+	 * Writers are resolved once per class when its metadata is created, so
+	 * registering a writer clears this cache. Writers are best registered
+	 * before the cache is used.
+	 * 
+	 * @param type
+	 *            The type the writer writes.
+	 * @param writer
+	 *            The writer or <code>null</code> to remove the writer
+	 *            registered for <code>type</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>type</code> is <code>null</code>.
+	 */
+	public <T> void setTypeWriter(Class<T> type, ITypeWriter<? super T> writer)
+			throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException("type cannot be null");
+
+		if (writer == null)
+			writers.remove(type);
+		else
+			writers.put(type, writer);
+
+		cache.clear();
+	}
+
+	/**
+	 * Used to find the writer that values of the given type are written with.
+	 * <p/>
+	 * A writer registered for the type itself is used first, then one
+	 * registered for its closest superclass and finally one registered for
+	 * any interface it implements. <code>String</code>s are always written
+	 * directly by the generator unless a writer is registered for
+	 * <code>String</code> itself.
+	 * 
+	 * @param type
+	 *            The type of the values.
+	 * 
+	 * @return the writer for values of the given type or <code>null</code> if
+	 *         there isn't one.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>type</code> is <code>null</code>.
+	 */
+	public ITypeWriter<?> getTypeWriter(Class<?> type)
+			throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException("type cannot be null");
+
+		if (type.isPrimitive())
+			type = toWrapper(type);
+
+		ITypeWriter<?> writer = writers.get(type);
+
+		if (writer != null || type == String.class)
+			return writer;
+
+		for (Class<?> c = type.getSuperclass(); writer == null && c != null; c = c
+				.getSuperclass())
+			writer = writers.get(c);
+
+		for (Class<?> c = type; writer == null && c != null; c = c
+				.getSuperclass())
+			writer = findInterfaceWriter(c.getInterfaces());
+
+		return writer;
+	}
+
+	/**
+	 * Used to get the metadata for the given class, creating and caching it
+	 * the first time the class is seen.
+	 * <p/>
+	 * Two threads asking for an uncached class at the same time may both
+	 * create its metadata; the results are identical and either one may end up
+	 * cached.
+	 * 
+	 * @param type
+	 *            The class to get the metadata for.
+	 * 
+	 * @return the metadata for the given class.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>type</code> is <code>null</code>.
+	 */
+	public ClassMetadata get(Class<?> type) throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException("type cannot be null");
+
+		ClassMetadata metadata = cache.get(type);
+
+		if (metadata == null) {
+			metadata = new ClassMetadata(type, this);
+			cache.put(type, metadata);
+		}
+
+		return metadata;
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+
+	private ITypeWriter<?> findInterfaceWriter(Class<?>[] interfaces) {
+		ITypeWriter<?> writer = null;
+
+		for (int i = 0; writer == null && i < interfaces.length; i++)
+			writer = writers.get(interfaces[i]);
+
+		// Then check the interfaces those interfaces extend.
+		for (int i = 0; writer == null && i < interfaces.length; i++)
+			writer = findInterfaceWriter(interfaces[i].getInterfaces());
+
+		return writer;
+	}
+
+	private static Class<?> toWrapper(Class<?> type) {
+		if (type == Boolean.TYPE)
+			return Boolean.class;
+		else if (type == Character.TYPE)
+			return Character.class;
+		else if (type == Byte.TYPE)
+			return Byte.class;
+		else if (type == Short.TYPE)
+			return Short.class;
+		else if (type == Integer.TYPE)
+			return Integer.class;
+		else if (type == Long.TYPE)
+			return Long.class;
+		else if (type == Float.TYPE)
+			return Float.class;
+		else if (type == Double.TYPE)
+			return Double.class;
+		else
+			return type;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.lang.reflect.Field;
+
+/**
+ * Class used to implement the naming strategy Simple Generator has always
+ * used: fields are written using their Java name and elements are written
+ * using the simple name of their class with its first letter lowercased (e.g.
+ * <code>book</code> for <code>com.acme.Book</code> or
+ * <code>entry</code> for <code>com.acme.Library$Entry</code>).
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class DefaultNamingStrategy implements INamingStrategy {
+	/**
+	 * Singleton reference to this naming strategy.
+	 * <p/>
+	 * Since the design of {@link INamingStrategy}s is stateless, there is only
+	 * 1 instance of this class ever needed.
+	 */
+	public static final INamingStrategy INSTANCE = new DefaultNamingStrategy();
+
+	public String getElementName(Class<?> type) {
+		String name = type.getName();
+
+		// Check if this is a sub-class
+		int i = name.lastIndexOf('$');
+
+		// If not, then get the last package index.
+		if (i == -1)
+			i = name.lastIndexOf('.');
+
+		char[] chars = new char[name.length() - (i + 1)];
+		name.getChars(i + 1, name.length(), chars, 0);
+
+		char c = chars[0];
+
+		// Lowercase the first char if necessary
+		if (c > 64 && c < 91)
+			chars[0] = (char) (c + 32);
+
+		return new String(chars);
+	}
+
+	public String getFieldName(Field field) {
+		return field.getName();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.lang.reflect.Field;
+
+import com.thebuzzmedia.simple.generator.annotation.Encode;
+import com.thebuzzmedia.simple.generator.writer.ITypeWriter;
+
+/**
+ * Class used to hold the pre-resolved details of a single field written by a
+ * generator: the reflected {@link Field}, its written name, the
+ * {@link ClassMetadata.Kind} and {@link ITypeWriter} of its declared type and
+ * its {@link Encode} annotation, so none of them are looked up again while
+ * generating.
+ * <p/>
+ * Instances are immutable and thread-safe.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public final class FieldMetadata {
+	final Field field;
+	final String name;
+	final Class<?> type;
+	final ClassMetadata.Kind kind;
+	final Encode encoding;
+	final ITypeWriter<Object> writer;
+
+	FieldMetadata(Field field, String name, ClassMetadata.Kind kind,
+			ITypeWriter<Object> writer) {
+		this.field = field;
+		this.name = name;
+		this.kind = kind;
+		this.writer = writer;
+
+		type = field.getType();
+		encoding = field.getAnnotation(Encode.class);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + "[name=" + name + ", type="
+				+ type.getName() + ", kind=" + kind + ", encoding="
+				+ (encoding == null ? null : encoding.value()) + "]";
+	}
+
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * Used to get the name written for this field, as derived by the
+	 * {@link INamingStrategy} of the cache this metadata was created by.
+	 * 
+	 * @return the name written for this field.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public ClassMetadata.Kind getKind() {
+		return kind;
+	}
+
+	public Encode getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Used to get the writer the value of this field is written with, if its
+	 * declared type is a simple value with a registered {@link ITypeWriter}.
+	 * 
+	 * @return the writer the value of this field is written with or
+	 *         <code>null</code> if there isn't one.
+	 */
+	public ITypeWriter<?> getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Used to read the value of this field from the given object. Record
+	 * components are read straight from their private backing field too,
+	 * which is a lot cheaper than invoking their accessor reflectively.
+	 * 
+	 * @param source
+	 *            The object to read the value from.
+	 * 
+	 * @return the value of this field.
+	 * 
+	 * @throws Exception
+	 *             if the value can't be read.
+	 */
+	public Object getValue(Object source) throws Exception {
+		return field.get(source);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.thebuzzmedia.simple.generator.sink.ISink;
+
+/**
+ * Class used to provide a pull-mode {@link Reader} view over the generation of
+ * an object.
+ * <p/>
+ * Nothing is generated until the first read; every call to
+ * {@link #read(char[], int, int)} then drives the underlying generator (using
+ * {@link AbstractGenerator#resume(int)}) only as far as is needed to fill the
+ * request. Memory use is bounded by the size of the reads instead of the size
+ * of the document, and generation overlaps with whatever the consumer does
+ * with the characters it reads (e.g. compress them or send them over the
+ * network).
+ * <p/>
+ * The generator given to a reader must not be used for anything else until
+ * the reader has been read to the end or closed.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class GeneratorReader extends Reader {
+	private Object object;
+	private AbstractGenerator generator;
+
+	private boolean started;
+	private boolean finished;
+	private boolean closed;
+
+	private PendingSink pending;
+
+	public GeneratorReader(AbstractGenerator generator, Object object)
+			throws IllegalArgumentException {
+		if (generator == null)
+			throw new IllegalArgumentException("generator cannot be null");
+
+		this.generator = generator;
+		this.object = object;
+
+		pending = new PendingSink();
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (cbuf == null)
+			throw new IllegalArgumentException("cbuf cannot be null");
+		if (off < 0 || len < 0 || off + len > cbuf.length)
+			throw new IndexOutOfBoundsException("off [" + off + "] and len ["
+					+ len + "] must be >= 0 and (off + len) must be <= "
+					+ cbuf.length);
+
+		synchronized (lock) {
+			if (closed)
+				throw new IOException("Reader has been closed");
+			if (len == 0)
+				return 0;
+
+			// Only generate more once everything generated so far was read.
+			if (pending.length == 0) {
+				pending.index = 0;
+
+				if (!started) {
+					started = true;
+					generator.begin(object, pending);
+				}
+
+				while (pending.length == 0 && !finished)
+					finished = !generator.resume(len);
+			}
+
+			if (pending.length == 0)
+				return -1;
+
+			int count = Math.min(len, pending.length);
+			System.arraycopy(pending.chars, pending.index, cbuf, off, count);
+
+			pending.index += count;
+			pending.length -= count;
+
+			return count;
+		}
+	}
+
+	@Override
+	public boolean ready() throws IOException {
+		synchronized (lock) {
+			if (closed)
+				throw new IOException("Reader has been closed");
+
+			return (pending.length > 0);
+		}
+	}
+
+	/**
+	 * Implemented to abandon the generation (if it hasn't completed) and
+	 * release the generator so it can be used again. A generator that has
+	 * since moved on to another generation is left alone.
+	 */
+	@Override
+	public void close() {
+		synchronized (lock) {
+			if (closed)
+				return;
+
+			closed = true;
+
+			if (started && !finished && generator.isGenerating(pending))
+				generator.reset();
+
+			object = null;
+			pending.chars = null;
+			pending.length = 0;
+		}
+	}
+
+	/**
+	 * Sink used to hold the characters generated beyond what the current read
+	 * asked for until the next read.
+	 */
+	private static class PendingSink implements ISink {
+		private char[] chars = new char[8192];
+		private int index;
+		private int length;
+
+		public void write(char[] chars, int index, int length) {
+			int end = this.index + this.length;
+
+			// Compact or grow the pending buffer if we need to.
+			if (end + length > this.chars.length) {
+				char[] dest = this.chars;
+
+				if (this.length + length > dest.length)
+					dest = new char[Math.max(this.length + length,
+							dest.length * 2)];
+
+				System.arraycopy(this.chars, this.index, dest, 0, this.length);
+
+				this.chars = dest;
+				this.index = 0;
+				end = this.length;
+			}
+
+			System.arraycopy(chars, index, this.chars, end, length);
+			this.length += length;
+		}
+
+		public void flush() {
+			// no-op
+		}
+	}
+}
\ No newline at end of file
@@ -15,9 +15,16 @@
  */
 package com.thebuzzmedia.simple.generator;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.util.concurrent.CancellationException;
 
 import com.thebuzzmedia.common.io.IInput;
+import com.thebuzzmedia.simple.generator.sink.ChannelSink;
+import com.thebuzzmedia.simple.generator.sink.CountingSink;
+import com.thebuzzmedia.simple.generator.sink.ISink;
 
 /**
  * Interface used to describe a class that is capable of generating an
@@ -75,4 +82,173 @@ public interface IGenerator {
 	 *         given object.
 	 */
 	public IInput<char[], char[]> generate(Object object);
+
+	/**
+	 * Used to generate a textual representation of only the fields of the
+	 * given object selected by the given projection (a sparse fieldset, e.g.
+	 * <code>title,isbn,authors.lastName</code>).
+	 * <p/>
+	 * Fields that are not selected are skipped entirely; their values are
+	 * never read from the object.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * @param projection
+	 *            The projection selecting the fields to generate or
+	 *            <code>null</code> to generate all of them.
+	 * 
+	 * @return a light weight wrapper around the underlying <code>char[]</code>
+	 *         buffer containing the generated textual representation of the
+	 *         given object.
+	 * 
+	 * @see Projection#compile(String)
+	 */
+	public IInput<char[], char[]> generate(Object object, Projection projection);
+
+	/**
+	 * Used to generate a textual representation of the given object using
+	 * reflection, stopping early if the given token is cancelled (or its
+	 * deadline passes) before the generation completes.
+	 * <p/>
+	 * The token is checked before the generation starts and then at regular
+	 * intervals of the traversal (see
+	 * {@link AbstractGenerator#CANCELLATION_CHECK_INTERVAL}), never per
+	 * character written.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * @param token
+	 *            The token used to cancel the generation.
+	 * 
+	 * @return a light weight wrapper around the underlying <code>char[]</code>
+	 *         buffer containing the generated textual representation of the
+	 *         given object.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>token</code> is <code>null</code>.
+	 * @throws CancellationException
+	 *             if <code>token</code> was cancelled before the generation
+	 *             completed.
+	 */
+	public IInput<char[], char[]> generate(Object object,
+			CancellationToken token) throws IllegalArgumentException,
+			CancellationException;
+
+	/**
+	 * Used to generate a textual representation of the given object using
+	 * reflection, streaming the generated content into the given sink as it is
+	 * generated.
+	 * <p/>
+	 * Unlike {@link #generate(Object)}, the generated content never exists in
+	 * memory all at once; the generator fills a small, fixed-size buffer and
+	 * hands it to {@link ISink#write(char[], int, int)} every time it fills
+	 * up, calling {@link ISink#flush()} once generation is complete.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * @param sink
+	 *            The sink the generated content is written to.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>sink</code> is <code>null</code>.
+	 * @throws IOException
+	 *             if the sink throws an exception while being written to or
+	 *             flushed.
+	 */
+	public void generate(Object object, ISink sink)
+			throws IllegalArgumentException, IOException;
+
+	/**
+	 * Used to generate a textual representation of the given object into the
+	 * given sink, stopping early if the given token is cancelled (or its
+	 * deadline passes) before the generation completes; e.g. because the
+	 * client the content is streamed to has disconnected.
+	 * <p/>
+	 * Content generated before the cancellation may already have been written
+	 * to the sink, but the sink is not flushed.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * @param sink
+	 *            The sink the generated content is written to.
+	 * @param token
+	 *            The token used to cancel the generation.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>sink</code> or <code>token</code> are
+	 *             <code>null</code>.
+	 * @throws IOException
+	 *             if the sink throws an exception while being written to or
+	 *             flushed.
+	 * @throws CancellationException
+	 *             if <code>token</code> was cancelled before the generation
+	 *             completed.
+	 * 
+	 * @see #generate(Object, CancellationToken)
+	 */
+	public void generate(Object object, ISink sink, CancellationToken token)
+			throws IllegalArgumentException, IOException,
+			CancellationException;
+
+	/**
+	 * Used to generate a textual representation of the given object using
+	 * reflection, writing it as UTF-8 to the given file (which is created or
+	 * truncated).
+	 * <p/>
+	 * The content is streamed to the file through a {@link ChannelSink} as it
+	 * is generated, so the memory used stays constant regardless of how large
+	 * the generated file is.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * @param file
+	 *            The file to write the generated content to.
+	 * 
+	 * @return the number of bytes written to the file.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>file</code> is <code>null</code>.
+	 * @throws IOException
+	 *             if the file cannot be opened or written to.
+	 */
+	public long generateTo(Object object, File file)
+			throws IllegalArgumentException, IOException;
+
+	/**
+	 * Used to measure the exact size of the textual representation of the
+	 * given object without materializing it.
+	 * <p/>
+	 * The generation runs the same traversal, formatting and escaping as
+	 * {@link #generate(Object)}, but the content is streamed into a
+	 * {@link CountingSink} that only counts it, so the memory used stays
+	 * constant regardless of how large the document is. The result can be
+	 * used to set a <code>Content-Length</code> header, or to decide between
+	 * pre-allocating a buffer of exactly the right size and streaming the
+	 * document, before generating it for real.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * 
+	 * @return the number of <code>char</code>s and UTF-8 bytes the generated
+	 *         representation of the given object takes up.
+	 */
+	public OutputSize measure(Object object);
+
+	/**
+	 * Used to get a {@link Reader} over the textual representation of the
+	 * given object that is generated lazily, as it is read.
+	 * <p/>
+	 * Each read only advances the generation as far as is needed to fill it,
+	 * so the document is never materialized in memory as a whole and
+	 * generation overlaps with consumption. This generator must not be used
+	 * for anything else until the returned reader has been read to the end or
+	 * closed.
+	 * 
+	 * @param object
+	 *            The object to be reflected on during generation.
+	 * 
+	 * @return a reader over the generated textual representation of the given
+	 *         object.
+	 */
+	public Reader generateReader(Object object);
 }
\ No newline at end of file
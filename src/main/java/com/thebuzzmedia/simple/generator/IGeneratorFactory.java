@@ -0,0 +1,37 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+/**
+ * Interface used to describe a class that creates new, identically configured
+ * generators. It is used wherever more than one generator is needed for the
+ * same kind of output, e.g. by a {@link BatchGenerator} to give every worker
+ * thread a generator of its own.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface IGeneratorFactory {
+	/**
+	 * Used to create a new generator.
+	 * <p/>
+	 * Generators are not thread-safe, so every call must return a new
+	 * instance.
+	 * 
+	 * @return a new generator.
+	 */
+	public AbstractGenerator newGenerator();
+}
\ No newline at end of file
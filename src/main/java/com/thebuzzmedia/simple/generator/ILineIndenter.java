@@ -0,0 +1,64 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+/**
+ * Interface used to define an {@link IIndenter} whose every indent is either
+ * nothing at all or a newline ('\n') followed by some number of the indent
+ * character of its {@link IIndenter.Mode}; which is how most pretty-printed
+ * formats (including JSON and XML) are indented.
+ * <p/>
+ * Instead of asking for (and then copying) the <code>char[]</code> returned by
+ * {@link #getIndent(IIndenter.Type, IIndenter.Position, int)}, generators ask
+ * indenters implementing this interface for the width of the indent and fill
+ * it in straight into their own output buffer; no indent arrays are ever
+ * created, cached or copied.
+ * <p/>
+ * {@link #getIndent(IIndenter.Type, IIndenter.Position, int)} must still
+ * return the equivalent <code>char[]</code> for callers that use it.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface ILineIndenter extends IIndenter {
+	/**
+	 * Width returned by
+	 * {@link #getIndentWidth(IIndenter.Type, IIndenter.Position, int)} when no
+	 * indent (not even a newline) should be written.
+	 */
+	public static final int NO_INDENT = -1;
+
+	/**
+	 * Used to get the width of the indent for the given type, position and
+	 * level; the number of indent characters written after the newline.
+	 * 
+	 * @param type
+	 *            The type of element being indented.
+	 * @param position
+	 *            The fine-tune position of the element that is being indented.
+	 * @param level
+	 *            The indentation level.
+	 * 
+	 * @return the number of indent characters to write after a newline or
+	 *         {@link #NO_INDENT} if nothing should be written.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>type</code> or <code>position</code> are
+	 *             <code>null</code> or if <code>level</code> is &lt; 0.
+	 */
+	public int getIndentWidth(Type type, Position position, int level)
+			throws IllegalArgumentException;
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.lang.reflect.Field;
+
+/**
+ * Interface used to describe a strategy for deriving the names written by a
+ * generator: the name of an object or list written as an element of a list (or
+ * as the root of a document) and the name of each field written for an
+ * object.
+ * <p/>
+ * A naming strategy is only ever consulted once per class and once per field,
+ * when the {@link ClassMetadata} of a class is created; the derived names are
+ * cached and re-used for every value of that class that is written. This
+ * means implementations are free to do relatively expensive work (e.g.
+ * reflection or case conversion) without it showing up in generation times.
+ * <p/>
+ * A naming strategy is set on a {@link ClassMetadataCache} (see
+ * {@link ClassMetadataCache#ClassMetadataCache(INamingStrategy)}).
+ * Implementations must be thread-safe and should be stateless, since the
+ * cache they are used by may be shared between threads.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface INamingStrategy {
+	/**
+	 * Used to get the name written for instances of the given class when they
+	 * are elements of a list or the root of a generated document.
+	 * 
+	 * @param type
+	 *            The class of the instances.
+	 * 
+	 * @return the name written for instances of the given class; never
+	 *         <code>null</code>.
+	 */
+	public String getElementName(Class<?> type);
+
+	/**
+	 * Used to get the name written for the given field.
+	 * 
+	 * @param field
+	 *            The field.
+	 * 
+	 * @return the name written for the given field; never <code>null</code>.
+	 */
+	public String getFieldName(Field field);
+}
\ No newline at end of file
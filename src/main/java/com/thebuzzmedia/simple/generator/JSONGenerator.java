@@ -15,6 +15,9 @@
  */
 package com.thebuzzmedia.simple.generator;
 
+import com.thebuzzmedia.simple.generator.writer.ITypeWriter;
+import com.thebuzzmedia.simple.generator.writer.IValueOutput;
+
 /**
  * Class used to implement the default generator stubs for the JSON file format.
  * <p/>
@@ -27,6 +30,12 @@ package com.thebuzzmedia.simple.generator;
  * @since 1.1
  */
 public class JSONGenerator extends AbstractGenerator {
+	private static final char[] NULL = new char[] { 'n', 'u', 'l', 'l' };
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private boolean columnar;
+	private IValueOutput textOutput = new TextOutput();
+
 	public JSONGenerator() {
 		super();
 	}
@@ -40,10 +49,75 @@ public class JSONGenerator extends AbstractGenerator {
 		super(indenter, initialBufferSize);
 	}
 
+	/**
+	 * Used to determine if lists of objects of a single
+	 * {@link com.thebuzzmedia.simple.generator.annotation.Recursable} class
+	 * are written as an object of columns, e.g.
+	 * <code>{"title": ["Riptide","Relic"],"pageCount": [496,474]}</code>.
+	 * 
+	 * @return <code>true</code> if columnar output is enabled.
+	 * 
+	 * @see #setColumnar(boolean)
+	 */
+	@Override
+	public boolean isColumnar() {
+		return columnar;
+	}
+
+	/**
+	 * Used to set if lists (and arrays) of objects of a single
+	 * {@link com.thebuzzmedia.simple.generator.annotation.Recursable} class
+	 * are written as an object of columns (struct of arrays) instead of a
+	 * list of objects; so each field name is written once per list instead of
+	 * once per element.
+	 * <p/>
+	 * Every column holds one value per element, in order, with
+	 * <code>null</code> written for missing values. Primitive fields are
+	 * read into their column without boxing. Empty lists and lists holding
+	 * <code>null</code> elements or objects of different classes are still
+	 * written as lists, as are {@link java.util.Collection}s other than
+	 * {@link java.util.List}s and lazy sources, which can only be walked
+	 * once.
+	 * <p/>
+	 * Default value is: <code>false</code>
+	 * 
+	 * @param columnar
+	 *            <code>true</code> to write lists of objects as columns.
+	 */
+	public void setColumnar(boolean columnar) {
+		this.columnar = columnar;
+	}
+
+	/**
+	 * Overridden to encode the name as a single <code>"name": </code> token.
+	 */
+	@Override
+	protected char[][] encodeName(String name) {
+		return new char[][] { ("\"" + name + "\": ").toCharArray() };
+	}
+
+	/**
+	 * Overridden to write the name token, plus the opening quote for text,
+	 * before the value and the closing quote for text after it.
+	 */
+	@Override
+	protected char[][] encodeValueLiterals(String name, boolean text) {
+		String token = new String(getNameTokens(name)[0]);
+
+		return (text ? new char[][] { (token + '"').toCharArray(),
+				new char[] { '"' } } : new char[][] { token.toCharArray(),
+				new char[0] });
+	}
+
+	@Override
+	protected char[] encodeSeparator() {
+		return new char[] { ',' };
+	}
+
 	@Override
 	protected void writeObjectOpen(String fieldName, int level, boolean inList) {
-		if (!inList && level > 1)
-			append('"').append(fieldName).append("\": ");
+		if (!inList && level > 0)
+			append(getNameTokens(fieldName)[0]);
 
 		append('{');
 	}
@@ -55,7 +129,10 @@ public class JSONGenerator extends AbstractGenerator {
 
 	@Override
 	protected void writeListOpen(String fieldName, int level, boolean inList) {
-		append('"').append(fieldName).append("\": [");
+		if (!inList && level > 0)
+			append(getNameTokens(fieldName)[0]);
+
+		append('[');
 	}
 
 	@Override
@@ -71,8 +148,8 @@ public class JSONGenerator extends AbstractGenerator {
 	@Override
 	protected void writeBoolean(String fieldName, Boolean value, int level,
 			boolean inList) {
-		if (!inList)
-			append('"').append(fieldName).append("\": ");
+		if (!inList && level > 0)
+			append(getNameTokens(fieldName)[0]);
 
 		append(value);
 	}
@@ -80,18 +157,165 @@ public class JSONGenerator extends AbstractGenerator {
 	@Override
 	protected void writeNumber(String fieldName, Number value, int level,
 			boolean inList) {
-		if (!inList)
-			append('"').append(fieldName).append("\": ");
+		if (!inList && level > 0)
+			append(getNameTokens(fieldName)[0]);
 
 		append(value);
 	}
 
+	/**
+	 * Overridden to write the value straight into the buffer, quoted if the
+	 * writer produces text.
+	 */
+	@Override
+	protected void writeTypedValue(String fieldName,
+			ITypeWriter<Object> writer, Object value, int level, boolean inList) {
+		if (!inList && level > 0)
+			append(getNameTokens(fieldName)[0]);
+
+		if (writer.isText()) {
+			append('"');
+			writer.write(value, textOutput);
+			append('"');
+		} else
+			writer.write(value, getValueOutput());
+	}
+
+	/**
+	 * Overridden to write the <code>null</code> literal.
+	 */
+	@Override
+	protected void writeNull(String fieldName, int level, boolean inList) {
+		if (!inList && level > 0)
+			append(getNameTokens(fieldName)[0]);
+
+		append(NULL);
+	}
+
 	@Override
 	protected void writeString(String fieldName, String value, int level,
 			boolean inList) {
-		if (!inList)
-			append('"').append(fieldName).append("\": ");
+		if (!inList && level > 0)
+			append(getNameTokens(fieldName)[0]);
+
+		append('"').appendText(value).append('"');
+	}
+
+	/**
+	 * Overridden to escape the quotes, backslashes and control characters in
+	 * the text as required by RFC 4627. Runs of text that need no escaping
+	 * (by far the most common case) are appended in one go.
+	 */
+	@Override
+	protected AbstractGenerator appendText(String text) {
+		int length = text.length();
+		int start = 0;
+
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+
+			if (c >= 0x20 && c != '"' && c != '\\')
+				continue;
+
+			append(text, start, i - start);
+			appendEscape(c);
+			start = i + 1;
+		}
+
+		if (start == 0)
+			return append(text);
+
+		return append(text, start, length - start);
+	}
+
+	/**
+	 * Overridden to return an output that escapes what is appended to it the
+	 * same way {@link #appendText(String)} does.
+	 */
+	@Override
+	protected IValueOutput getTextOutput() {
+		return textOutput;
+	}
+
+	private void appendEscape(char c) {
+		append('\\');
+
+		switch (c) {
+		case '"':
+		case '\\':
+			append(c);
+			break;
+
+		case '\n':
+			append('n');
+			break;
+
+		case '\r':
+			append('r');
+			break;
+
+		case '\t':
+			append('t');
+			break;
+
+		case '\b':
+			append('b');
+			break;
+
+		case '\f':
+			append('f');
+			break;
+
+		default:
+			append('u').append('0').append('0').append(HEX[c >> 4]).append(
+					HEX[c & 0xF]);
+		}
+	}
+
+	/**
+	 * Class used to escape the text appended by {@link ITypeWriter}s that
+	 * produce text before it is written to the buffer.
+	 */
+	private class TextOutput implements IValueOutput {
+		public IValueOutput append(char c) {
+			if (c >= 0x20 && c != '"' && c != '\\')
+				JSONGenerator.this.append(c);
+			else
+				appendEscape(c);
+
+			return this;
+		}
+
+		public IValueOutput append(char[] chars) {
+			return append(chars, 0, chars.length);
+		}
+
+		public IValueOutput append(char[] chars, int index, int length) {
+			int start = index;
+
+			for (int i = index, end = index + length; i < end; i++) {
+				char c = chars[i];
+
+				if (c >= 0x20 && c != '"' && c != '\\')
+					continue;
+
+				JSONGenerator.this.append(chars, start, i - start);
+				appendEscape(c);
+				start = i + 1;
+			}
+
+			JSONGenerator.this.append(chars, start, index + length - start);
+			return this;
+		}
+
+		public IValueOutput append(String text) {
+			appendText(text);
+			return this;
+		}
 
-		append('"').append(value).append('"');
+		public IValueOutput append(long value) {
+			JSONGenerator.this.append(value);
+			return this;
+		}
 	}
 }
\ No newline at end of file
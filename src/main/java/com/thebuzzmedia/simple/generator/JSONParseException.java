@@ -0,0 +1,49 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+/**
+ * Exception thrown by a {@link JSONParser} when the content it reads is not
+ * valid JSON or can't be bound to the type it is being read into.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class JSONParseException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	private long offset;
+
+	public JSONParseException(String message, long offset) {
+		this(message, offset, null);
+	}
+
+	public JSONParseException(String message, long offset, Throwable cause) {
+		super(message + " at offset " + offset, cause);
+
+		this.offset = offset;
+	}
+
+	/**
+	 * Used to get the offset (in <code>char</code>s, from the start of the
+	 * content) the problem was found at.
+	 * 
+	 * @return the offset the problem was found at.
+	 */
+	public long getOffset() {
+		return offset;
+	}
+}
\ No newline at end of file
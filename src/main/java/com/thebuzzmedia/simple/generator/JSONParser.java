@@ -0,0 +1,2094 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.thebuzzmedia.common.io.IInput;
+import com.thebuzzmedia.simple.generator.ClassMetadata.Kind;
+import com.thebuzzmedia.simple.generator.annotation.Recursable;
+import com.thebuzzmedia.simple.generator.writer.DateTimeWriter;
+
+/**
+ * Class used to read JSON, like the JSON written by {@link JSONGenerator},
+ * back into instances of {@link Recursable} classes in a single streaming
+ * pass.
+ * <p/>
+ * The parser binds JSON to objects using the same {@link ClassMetadata} the
+ * generators use, so a parser sharing the {@link ClassMetadataCache} of a
+ * generator (see {@link #JSONParser(ClassMetadataCache)}) never reflects on a
+ * class the generator has already written. Fields are matched by the names
+ * the generator writes them with, without creating a <code>String</code>
+ * for the name; fields that are missing or <code>null</code> in the JSON are
+ * left as they were initialized and members of the JSON that don't match a
+ * field are skipped.
+ * <p/>
+ * Nothing is allocated while parsing other than the objects being populated
+ * and their values: JSON is read straight out of the given
+ * <code>char[]</code> (or, for <code>byte[]</code>s and {@link Reader}s, out
+ * of a chunk buffer that is decoded into and re-used between calls), numbers
+ * are parsed without creating <code>String</code>s and primitive fields are
+ * set without boxing their values.
+ * <p/>
+ * Values are read into the declared types of the fields they are bound to:
+ * <ul>
+ * <li>{@link Recursable} classes from JSON objects, using their no-arg
+ * constructor (which may be private) or, for records, their canonical
+ * constructor.</li>
+ * <li>Arrays and {@link Collection}s from JSON lists, using the type
+ * argument of the field (e.g. <code>List&lt;Book&gt;</code>) for their
+ * elements. Interfaces are created as an <code>ArrayList</code>,
+ * <code>LinkedHashSet</code>, <code>TreeSet</code> or
+ * <code>LinkedList</code>.</li>
+ * <li>Primitives, their wrappers, <code>BigDecimal</code>,
+ * <code>BigInteger</code>, <code>String</code>s, enums, <code>UUID</code>s
+ * and any other class with a static <code>valueOf(String)</code>,
+ * <code>fromString(String)</code> or <code>parse(CharSequence)</code> method
+ * or a <code>String</code> constructor (e.g. <code>URI</code>).</li>
+ * <li>Fields written with the {@link DateTimeWriter} (see
+ * {@link com.thebuzzmedia.simple.generator.annotation.Timestamp}) from their
+ * ISO-8601 date-times.</li>
+ * <li>Untyped values (<code>Object</code>) as <code>String</code>s,
+ * <code>Boolean</code>s, <code>Long</code>s, <code>Double</code>s,
+ * <code>ArrayList</code>s and <code>LinkedHashMap</code>s.</li>
+ * </ul>
+ * Columnar output (see {@link JSONGenerator#setColumnar(boolean)}) is not
+ * read back.
+ * <p/>
+ * Like the generators, this class is not thread-safe; use one parser per
+ * thread (they can all share one {@link ClassMetadataCache}).
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class JSONParser {
+	/**
+	 * Default size (in <code>char</code>s) of the buffer JSON read from a
+	 * <code>byte[]</code> or {@link Reader} is decoded into, a chunk at a
+	 * time. The buffer only grows if a single string is larger than it.
+	 * <p/>
+	 * Default value is: 8192
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The deepest nesting of objects and lists that is read before parsing
+	 * fails, instead of the stack overflowing on malicious input.
+	 * <p/>
+	 * Default value is: 512
+	 */
+	public static final int MAX_DEPTH = 512;
+
+	private static final int NONE = 0;
+	private static final int BOOLEAN = 1;
+	private static final int CHAR = 2;
+	private static final int BYTE = 3;
+	private static final int SHORT = 4;
+	private static final int INT = 5;
+	private static final int LONG = 6;
+	private static final int FLOAT = 7;
+	private static final int DOUBLE = 8;
+
+	private static final char[] TRUE = "true".toCharArray();
+	private static final char[] FALSE = "false".toCharArray();
+	private static final char[] NULL = "null".toCharArray();
+
+	private static final char REPLACEMENT = '\uFFFD';
+
+	/**
+	 * Mantissas are accumulated until they reach this; the digits after that
+	 * only adjust the exponent.
+	 */
+	private static final long MANTISSA_LIMIT = (Long.MAX_VALUE - 9) / 10;
+
+	private static final double[] DOUBLE_POWERS = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	private static final float[] FLOAT_POWERS = { 1e0f, 1e1f, 1e2f, 1e3f,
+			1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+	private static final long INVALID_DATE_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Marker cached for classes that have no way of being created from a
+	 * string.
+	 */
+	private static final Member NO_CONVERTER = JSONParser.class
+			.getDeclaredConstructors()[0];
+
+	private ClassMetadataCache metadataCache;
+	private Map<Class<?>, Binding> bindings;
+	private Map<Class<?>, Member> converters;
+
+	private char[] chars;
+	private int position;
+	private int limit;
+	private int mark;
+	private long offset;
+
+	private Reader reader;
+	private byte[] bytes;
+	private int byteIndex;
+	private int byteLimit;
+	private char[] buffer;
+
+	private long mantissa;
+	private int exponent;
+	private boolean negative;
+	private boolean exact;
+
+	private char[] text;
+	private long[] primitives;
+	private Object[][] elements;
+
+	public JSONParser() {
+		this(new ClassMetadataCache());
+	}
+
+	public JSONParser(ClassMetadataCache metadataCache)
+			throws IllegalArgumentException {
+		if (metadataCache == null)
+			throw new IllegalArgumentException("metadataCache cannot be null");
+
+		this.metadataCache = metadataCache;
+
+		bindings = new HashMap<Class<?>, Binding>(64);
+		converters = new HashMap<Class<?>, Member>(16);
+
+		mark = -1;
+		text = new char[64];
+		primitives = new long[64];
+		elements = new Object[8][];
+	}
+
+	/**
+	 * Used to get the cache of class metadata JSON is bound to objects with.
+	 * 
+	 * @return the cache of class metadata JSON is bound to objects with.
+	 */
+	public ClassMetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+
+	/**
+	 * Used to parse the given JSON into a value of the given type.
+	 * 
+	 * @param json
+	 *            The JSON to parse.
+	 * @param type
+	 *            The type of the value the JSON is read into.
+	 * 
+	 * @return the value read from the JSON or <code>null</code> if the JSON
+	 *         is <code>null</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>json</code> or <code>type</code> are
+	 *             <code>null</code>.
+	 * @throws JSONParseException
+	 *             if the JSON is invalid or can't be read into the given
+	 *             type.
+	 */
+	public <T> T parse(String json, Class<T> type)
+			throws IllegalArgumentException, JSONParseException {
+		if (json == null)
+			throw new IllegalArgumentException("json cannot be null");
+
+		return parse(json.toCharArray(), type);
+	}
+
+	/**
+	 * Used to parse the content generated by a {@link JSONGenerator} back
+	 * into a value of the given type.
+	 * 
+	 * @param input
+	 *            The generated content, as returned by
+	 *            {@link IGenerator#generate(Object)}.
+	 * @param type
+	 *            The type of the value the JSON is read into.
+	 * 
+	 * @return the value read from the JSON or <code>null</code> if the JSON
+	 *         is <code>null</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>input</code> or <code>type</code> are
+	 *             <code>null</code>.
+	 * @throws JSONParseException
+	 *             if the JSON is invalid or can't be read into the given
+	 *             type.
+	 */
+	public <T> T parse(IInput<char[], char[]> input, Class<T> type)
+			throws IllegalArgumentException, JSONParseException {
+		if (input == null)
+			throw new IllegalArgumentException("input cannot be null");
+
+		return parse(input.getSource(), input.getIndex(), input.getLength(),
+				type);
+	}
+
+	public <T> T parse(char[] chars, Class<T> type)
+			throws IllegalArgumentException, JSONParseException {
+		if (chars == null)
+			throw new IllegalArgumentException("chars cannot be null");
+
+		return parse(chars, 0, chars.length, type);
+	}
+
+	/**
+	 * Used to parse the JSON held in the given range of a
+	 * <code>char[]</code> into a value of the given type. The JSON is read in
+	 * place; the array is never copied or modified.
+	 * 
+	 * @param chars
+	 *            The array holding the JSON.
+	 * @param index
+	 *            The index in <code>chars</code> the JSON starts at.
+	 * @param length
+	 *            The number of <code>char</code>s of JSON.
+	 * @param type
+	 *            The type of the value the JSON is read into.
+	 * 
+	 * @return the value read from the JSON or <code>null</code> if the JSON
+	 *         is <code>null</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>chars</code> or <code>type</code> are
+	 *             <code>null</code> or if <code>index</code> and
+	 *             <code>length</code> are outside of <code>chars</code>.
+	 * @throws JSONParseException
+	 *             if the JSON is invalid or can't be read into the given
+	 *             type.
+	 */
+	public <T> T parse(char[] chars, int index, int length, Class<T> type)
+			throws IllegalArgumentException, JSONParseException {
+		if (chars == null)
+			throw new IllegalArgumentException("chars cannot be null");
+		if (index < 0 || length < 0 || index + length > chars.length)
+			throw new IllegalArgumentException("index [" + index
+					+ "] and length [" + length
+					+ "] must be >= 0 and (index + length) must be <= chars.length ["
+					+ chars.length + "]");
+
+		this.chars = chars;
+		position = index;
+		limit = index + length;
+		offset = -index;
+
+		try {
+			return parse(type);
+		} catch (IOException e) {
+			// Only Readers throw IOExceptions.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public <T> T parse(byte[] bytes, Class<T> type)
+			throws IllegalArgumentException, JSONParseException {
+		if (bytes == null)
+			throw new IllegalArgumentException("bytes cannot be null");
+
+		return parse(bytes, 0, bytes.length, type);
+	}
+
+	/**
+	 * Used to parse the UTF-8 encoded JSON held in the given range of a
+	 * <code>byte[]</code> into a value of the given type.
+	 * <p/>
+	 * The bytes are decoded a chunk at a time into a buffer that is re-used
+	 * between calls, as they are parsed. Malformed UTF-8 is decoded as
+	 * <code>U+FFFD</code>.
+	 * 
+	 * @param bytes
+	 *            The array holding the JSON.
+	 * @param index
+	 *            The index in <code>bytes</code> the JSON starts at.
+	 * @param length
+	 *            The number of bytes of JSON.
+	 * @param type
+	 *            The type of the value the JSON is read into.
+	 * 
+	 * @return the value read from the JSON or <code>null</code> if the JSON
+	 *         is <code>null</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>bytes</code> or <code>type</code> are
+	 *             <code>null</code> or if <code>index</code> and
+	 *             <code>length</code> are outside of <code>bytes</code>.
+	 * @throws JSONParseException
+	 *             if the JSON is invalid or can't be read into the given
+	 *             type.
+	 */
+	public <T> T parse(byte[] bytes, int index, int length, Class<T> type)
+			throws IllegalArgumentException, JSONParseException {
+		if (bytes == null)
+			throw new IllegalArgumentException("bytes cannot be null");
+		if (index < 0 || length < 0 || index + length > bytes.length)
+			throw new IllegalArgumentException("index [" + index
+					+ "] and length [" + length
+					+ "] must be >= 0 and (index + length) must be <= bytes.length ["
+					+ bytes.length + "]");
+
+		// Skip the UTF-8 byte order mark, if there is one.
+		if (length >= 3 && bytes[index] == (byte) 0xEF
+				&& bytes[index + 1] == (byte) 0xBB
+				&& bytes[index + 2] == (byte) 0xBF) {
+			index += 3;
+			length -= 3;
+		}
+
+		this.bytes = bytes;
+		byteIndex = index;
+		byteLimit = index + length;
+		startBuffer();
+
+		try {
+			return parse(type);
+		} catch (IOException e) {
+			// Only Readers throw IOExceptions.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Used to parse the JSON read from the given reader into a value of the
+	 * given type.
+	 * <p/>
+	 * The reader is read a chunk at a time into a buffer that is re-used
+	 * between calls, as the JSON is parsed; it is read up to the end of the
+	 * JSON (to make sure nothing follows it) but not closed.
+	 * 
+	 * @param reader
+	 *            The reader to read the JSON from.
+	 * @param type
+	 *            The type of the value the JSON is read into.
+	 * 
+	 * @return the value read from the JSON or <code>null</code> if the JSON
+	 *         is <code>null</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>reader</code> or <code>type</code> are
+	 *             <code>null</code>.
+	 * @throws IOException
+	 *             if an error occurs while reading from the reader.
+	 * @throws JSONParseException
+	 *             if the JSON is invalid or can't be read into the given
+	 *             type.
+	 */
+	public <T> T parse(Reader reader, Class<T> type)
+			throws IllegalArgumentException, IOException, JSONParseException {
+		if (reader == null)
+			throw new IllegalArgumentException("reader cannot be null");
+
+		this.reader = reader;
+		startBuffer();
+
+		return parse(type);
+	}
+
+	private void startBuffer() {
+		if (buffer == null)
+			buffer = new char[DEFAULT_BUFFER_SIZE];
+
+		chars = buffer;
+		position = 0;
+		limit = 0;
+		offset = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T parse(Class<T> type) throws IllegalArgumentException,
+			IOException, JSONParseException {
+		try {
+			if (type == null)
+				throw new IllegalArgumentException("type cannot be null");
+
+			Object value = readValue(type, type, false, 0);
+
+			if (peek() != -1)
+				throw error("unexpected content after the end of the JSON");
+
+			return (T) value;
+		} finally {
+			// Don't hold on to the caller's content.
+			chars = null;
+			reader = null;
+			bytes = null;
+			mark = -1;
+		}
+	}
+
+	/**
+	 * Used to read the next value, whatever it is, into the given type.
+	 * 
+	 * @param type
+	 *            The class of the value.
+	 * @param generic
+	 *            The generic type of the value, which carries the element
+	 *            types of collections.
+	 * @param timestamp
+	 *            <code>true</code> if the value was written by the
+	 *            {@link DateTimeWriter}.
+	 * @param depth
+	 *            The number of objects and lists the value is nested in.
+	 */
+	private Object readValue(Class<?> type, Type generic, boolean timestamp,
+			int depth) throws IOException {
+		int c = peek();
+
+		switch (c) {
+		case '{':
+			return readObjectValue(type, depth);
+
+		case '[':
+			return readListValue(type, generic, depth);
+
+		case '"':
+			if (type == String.class || type == Object.class)
+				return readString();
+
+			return toValue(type, readString(), timestamp);
+
+		case 't':
+		case 'f':
+			return toBoolean(type, readBoolean());
+
+		case 'n':
+			readLiteral(NULL);
+			return null;
+
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				scanNumber();
+
+				try {
+					return toNumber(type);
+				} finally {
+					mark = -1;
+				}
+			}
+
+			throw unexpected(c, "a value");
+		}
+	}
+
+	private Object readObjectValue(Class<?> type, int depth)
+			throws IOException {
+		Binding binding = bindings.get(type);
+
+		if (binding == null) {
+			ClassMetadata metadata = metadataCache.get(type);
+
+			if (metadata.kind == Kind.OBJECT) {
+				binding = createBinding(metadata);
+				bindings.put(type, binding);
+			}
+		}
+
+		if (binding != null)
+			return readObject(binding, depth);
+		if (type.isAssignableFrom(LinkedHashMap.class))
+			return readMap(depth);
+
+		throw error("an object cannot be read into [" + type.getName() + "]");
+	}
+
+	private Object readObject(Binding binding, int depth) throws IOException {
+		depth = enter(depth);
+		position++;
+
+		FieldMetadata[] fields = binding.fields;
+		Object target = (binding.record ? null : binding.newInstance());
+		Object[] arguments = (binding.record ? binding.newArguments() : null);
+
+		// Fields are almost always in declaration order, check the next one first.
+		int next = 0;
+		int c = peek();
+
+		if (c == '}') {
+			position++;
+			return (target == null ? binding.newRecord(arguments) : target);
+		}
+
+		while (true) {
+			if (c != '"')
+				throw unexpected(c, "a field name");
+
+			int index = readFieldIndex(fields, next);
+
+			if ((c = peek()) != ':')
+				throw unexpected(c, "':'");
+
+			position++;
+
+			if (index < 0)
+				skipValue(depth);
+			else {
+				FieldMetadata field = fields[index];
+				next = index + 1;
+
+				if (arguments != null) {
+					Object value = readValue(field.type,
+							binding.generics[index], binding.timestamps[index],
+							depth);
+
+					if (value != null)
+						arguments[index] = value;
+				} else if (binding.codes[index] != NONE)
+					readPrimitiveField(binding, index, target);
+				else {
+					Object value = readValue(field.type,
+							binding.generics[index], binding.timestamps[index],
+							depth);
+
+					if (value != null)
+						binding.set(field, target, value);
+				}
+			}
+
+			c = peek();
+
+			if (c == ',') {
+				position++;
+				c = peek();
+			} else if (c == '}') {
+				position++;
+				break;
+			} else
+				throw unexpected(c, "',' or '}'");
+		}
+
+		return (target == null ? binding.newRecord(arguments) : target);
+	}
+
+	/**
+	 * Used to read a field name and find the field it names, comparing the
+	 * name against the field names in place instead of creating a
+	 * <code>String</code> for it.
+	 * 
+	 * @return the index of the field or <code>-1</code> if there is no field
+	 *         with the name.
+	 */
+	private int readFieldIndex(FieldMetadata[] fields, int next)
+			throws IOException {
+		boolean escaped = scanString();
+
+		char[] source = chars;
+		int start = mark + 1;
+		int length = position - 1 - start;
+
+		if (escaped) {
+			length = unescape(start, position - 1);
+			source = text;
+			start = 0;
+		}
+
+		int index = -1;
+
+		if (next < fields.length
+				&& matches(fields[next].name, source, start, length))
+			index = next;
+		else {
+			for (int i = 0; index < 0 && i < fields.length; i++) {
+				if (i != next && matches(fields[i].name, source, start, length))
+					index = i;
+			}
+		}
+
+		mark = -1;
+		return index;
+	}
+
+	private static boolean matches(String name, char[] source, int start,
+			int length) {
+		if (name.length() != length)
+			return false;
+
+		for (int i = 0; i < length; i++) {
+			if (name.charAt(i) != source[start + i])
+				return false;
+		}
+
+		return true;
+	}
+
+	private void readPrimitiveField(Binding binding, int index, Object target)
+			throws IOException {
+		// Missing values leave the field as it was initialized.
+		if (peek() == 'n') {
+			readLiteral(NULL);
+			return;
+		}
+
+		int code = binding.codes[index];
+		long bits = readPrimitive(code, binding.timestamps[index]);
+		Field field = binding.fields[index].field;
+
+		try {
+			switch (code) {
+			case BOOLEAN:
+				field.setBoolean(target, bits != 0);
+				break;
+
+			case CHAR:
+				field.setChar(target, (char) bits);
+				break;
+
+			case BYTE:
+				field.setByte(target, (byte) bits);
+				break;
+
+			case SHORT:
+				field.setShort(target, (short) bits);
+				break;
+
+			case INT:
+				field.setInt(target, (int) bits);
+				break;
+
+			case LONG:
+				field.setLong(target, bits);
+				break;
+
+			case FLOAT:
+				field.setFloat(target, Float.intBitsToFloat((int) bits));
+				break;
+
+			case DOUBLE:
+				field.setDouble(target, Double.longBitsToDouble(bits));
+				break;
+			}
+		} catch (IllegalAccessException e) {
+			throw error("unable to set field [" + field.getName() + "]", e);
+		}
+	}
+
+	/**
+	 * Used to read the next value as a primitive of the given kind, returned
+	 * as its bits in a <code>long</code> so it is never boxed.
+	 */
+	private long readPrimitive(int code, boolean timestamp) throws IOException {
+		int c = peek();
+
+		if (code == BOOLEAN) {
+			if (c != 't' && c != 'f')
+				throw unexpected(c, "a boolean");
+
+			return (readBoolean() ? 1 : 0);
+		}
+
+		// Characters and timestamps are written as text.
+		if (c == '"') {
+			Object value = toValue(toWrapper(code), readString(), timestamp);
+
+			if (code == CHAR)
+				return ((Character) value).charValue();
+			if (code == FLOAT)
+				return Float.floatToRawIntBits(((Number) value).floatValue());
+			if (code == DOUBLE)
+				return Double
+						.doubleToRawLongBits(((Number) value).doubleValue());
+
+			return ((Number) value).longValue();
+		}
+
+		if (c != '-' && (c < '0' || c > '9'))
+			throw unexpected(c, "a number");
+
+		scanNumber();
+
+		try {
+			switch (code) {
+			case BYTE:
+				return toInteger(Byte.MIN_VALUE, Byte.MAX_VALUE);
+
+			case SHORT:
+				return toInteger(Short.MIN_VALUE, Short.MAX_VALUE);
+
+			case INT:
+				return toInteger(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+			case FLOAT:
+				return Float.floatToRawIntBits(toFloat());
+
+			case DOUBLE:
+				return Double.doubleToRawLongBits(toDouble());
+
+			case CHAR:
+				throw error("a number cannot be read into a char");
+
+			default:
+				return toLong();
+			}
+		} finally {
+			mark = -1;
+		}
+	}
+
+	private Map<String, Object> readMap(int depth) throws IOException {
+		depth = enter(depth);
+		position++;
+
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		int c = peek();
+
+		if (c == '}') {
+			position++;
+			return map;
+		}
+
+		while (true) {
+			if (c != '"')
+				throw unexpected(c, "a field name");
+
+			String name = readString();
+
+			if ((c = peek()) != ':')
+				throw unexpected(c, "':'");
+
+			position++;
+			map.put(name, readValue(Object.class, Object.class, false, depth));
+
+			c = peek();
+
+			if (c == ',') {
+				position++;
+				c = peek();
+			} else if (c == '}') {
+				position++;
+				return map;
+			} else
+				throw unexpected(c, "',' or '}'");
+		}
+	}
+
+	private Object readListValue(Class<?> type, Type generic, int depth)
+			throws IOException {
+		Kind kind = metadataCache.get(type).kind;
+
+		if (kind == Kind.ARRAY) {
+			Class<?> componentType = type.getComponentType();
+
+			if (componentType.isPrimitive())
+				return readPrimitiveArray(componentType, depth);
+
+			return readArray(componentType, getElementType(generic), depth);
+		}
+
+		if (kind == Kind.LIST || kind == Kind.COLLECTION
+				|| type.isAssignableFrom(ArrayList.class))
+			return readCollection(newCollection(type), getElementType(generic),
+					depth);
+
+		throw error("a list cannot be read into [" + type.getName() + "]");
+	}
+
+	private Collection<Object> readCollection(Collection<Object> collection,
+			Type elementGeneric, int depth) throws IOException {
+		depth = enter(depth);
+		position++;
+
+		Class<?> elementType = toClass(elementGeneric);
+		int c = peek();
+
+		if (c == ']') {
+			position++;
+			return collection;
+		}
+
+		while (true) {
+			collection.add(readValue(elementType, elementGeneric, false, depth));
+			c = peek();
+
+			if (c == ',')
+				position++;
+			else if (c == ']') {
+				position++;
+				return collection;
+			} else
+				throw unexpected(c, "',' or ']'");
+		}
+	}
+
+	private Object readArray(Class<?> componentType, Type componentGeneric,
+			int depth) throws IOException {
+		depth = enter(depth);
+		position++;
+
+		// Elements are collected in a scratch array per depth, then copied.
+		if (elements.length <= depth)
+			elements = grow(elements, depth * 2);
+		if (elements[depth] == null)
+			elements[depth] = new Object[16];
+
+		Object[] values = elements[depth];
+		int count = 0;
+		int c = peek();
+
+		if (c != ']') {
+			while (true) {
+				Object value = readValue(componentType, componentGeneric,
+						false, depth);
+
+				if (count == values.length)
+					values = elements[depth] = grow(values, count * 2);
+
+				values[count++] = value;
+				c = peek();
+
+				if (c == ',')
+					position++;
+				else if (c == ']')
+					break;
+				else
+					throw unexpected(c, "',' or ']'");
+			}
+		}
+
+		position++;
+		Object array = Array.newInstance(componentType, count);
+
+		try {
+			System.arraycopy(values, 0, array, 0, count);
+		} catch (ArrayStoreException e) {
+			throw error("a list element cannot be stored in a ["
+					+ componentType.getName() + "] array", e);
+		} finally {
+			Arrays.fill(values, 0, count, null);
+		}
+
+		return array;
+	}
+
+	private Object readPrimitiveArray(Class<?> componentType, int depth)
+			throws IOException {
+		enter(depth);
+		position++;
+
+		int code = getPrimitiveCode(componentType);
+		long[] values = primitives;
+		int count = 0;
+		int c = peek();
+
+		if (c != ']') {
+			while (true) {
+				long bits = readPrimitive(code, false);
+
+				if (count == values.length)
+					values = primitives = grow(values, count * 2);
+
+				values[count++] = bits;
+				c = peek();
+
+				if (c == ',')
+					position++;
+				else if (c == ']')
+					break;
+				else
+					throw unexpected(c, "',' or ']'");
+			}
+		}
+
+		position++;
+
+		switch (code) {
+		case BOOLEAN:
+			boolean[] booleans = new boolean[count];
+
+			for (int i = 0; i < count; i++)
+				booleans[i] = (values[i] != 0);
+
+			return booleans;
+
+		case CHAR:
+			char[] chars = new char[count];
+
+			for (int i = 0; i < count; i++)
+				chars[i] = (char) values[i];
+
+			return chars;
+
+		case BYTE:
+			byte[] bytes = new byte[count];
+
+			for (int i = 0; i < count; i++)
+				bytes[i] = (byte) values[i];
+
+			return bytes;
+
+		case SHORT:
+			short[] shorts = new short[count];
+
+			for (int i = 0; i < count; i++)
+				shorts[i] = (short) values[i];
+
+			return shorts;
+
+		case INT:
+			int[] ints = new int[count];
+
+			for (int i = 0; i < count; i++)
+				ints[i] = (int) values[i];
+
+			return ints;
+
+		case FLOAT:
+			float[] floats = new float[count];
+
+			for (int i = 0; i < count; i++)
+				floats[i] = Float.intBitsToFloat((int) values[i]);
+
+			return floats;
+
+		case DOUBLE:
+			double[] doubles = new double[count];
+
+			for (int i = 0; i < count; i++)
+				doubles[i] = Double.longBitsToDouble(values[i]);
+
+			return doubles;
+
+		default:
+			return grow(values, count);
+		}
+	}
+
+	/**
+	 * Used to skip over the next value without creating anything for it.
+	 */
+	private void skipValue(int depth) throws IOException {
+		int c = peek();
+
+		switch (c) {
+		case '"':
+			scanString();
+			mark = -1;
+			break;
+
+		case '{':
+		case '[':
+			depth = enter(depth);
+			position++;
+
+			char close = (c == '{' ? '}' : ']');
+
+			if ((c = peek()) == close) {
+				position++;
+				break;
+			}
+
+			while (true) {
+				if (close == '}') {
+					if (c != '"')
+						throw unexpected(c, "a field name");
+
+					scanString();
+					mark = -1;
+
+					if ((c = peek()) != ':')
+						throw unexpected(c, "':'");
+
+					position++;
+				}
+
+				skipValue(depth);
+				c = peek();
+
+				if (c == ',') {
+					position++;
+					c = peek();
+				} else if (c == close) {
+					position++;
+					break;
+				} else
+					throw unexpected(c, "',' or '" + close + "'");
+			}
+			break;
+
+		case 't':
+		case 'f':
+			readBoolean();
+			break;
+
+		case 'n':
+			readLiteral(NULL);
+			break;
+
+		default:
+			if (c != '-' && (c < '0' || c > '9'))
+				throw unexpected(c, "a value");
+
+			scanNumber();
+			mark = -1;
+		}
+	}
+
+	private String readString() throws IOException {
+		boolean escaped = scanString();
+		int start = mark + 1;
+		int end = position - 1;
+
+		mark = -1;
+
+		if (!escaped)
+			return new String(chars, start, end - start);
+
+		// Unescaping may replace the text buffer, so it has to be done first.
+		int length = unescape(start, end);
+		return new String(text, 0, length);
+	}
+
+	/**
+	 * Used to scan past the string starting at the current position (its
+	 * opening quote), leaving it in the buffer between {@link #mark} (on its
+	 * opening quote) and {@link #position} (just past its closing quote).
+	 * 
+	 * @return <code>true</code> if the string contains escape sequences.
+	 */
+	private boolean scanString() throws IOException {
+		mark = position++;
+
+		boolean escaped = false;
+		boolean skip = false;
+
+		while (true) {
+			char[] chars = this.chars;
+			int i = position;
+			int limit = this.limit;
+
+			if (skip && i < limit) {
+				i++;
+				skip = false;
+			}
+
+			while (i < limit) {
+				char c = chars[i++];
+
+				if (c == '"') {
+					position = i;
+					return escaped;
+				}
+
+				if (c == '\\') {
+					escaped = true;
+
+					// Skip the escaped char, which may be in the next chunk.
+					if (i < limit)
+						i++;
+					else
+						skip = true;
+				}
+			}
+
+			position = i;
+
+			if (!fill())
+				throw error("unterminated string");
+		}
+	}
+
+	/**
+	 * Used to copy the given range of the buffer into {@link #text}, replacing
+	 * escape sequences with the <code>char</code>s they stand for.
+	 * 
+	 * @return the number of <code>char</code>s copied.
+	 */
+	private int unescape(int start, int end) {
+		if (text.length < end - start)
+			text = new char[Math.max(end - start, text.length * 2)];
+
+		char[] text = this.text;
+		int length = 0;
+
+		for (int i = start; i < end; i++) {
+			char c = chars[i];
+
+			if (c != '\\') {
+				text[length++] = c;
+				continue;
+			}
+
+			switch (c = chars[++i]) {
+			case 'n':
+				c = '\n';
+				break;
+
+			case 'r':
+				c = '\r';
+				break;
+
+			case 't':
+				c = '\t';
+				break;
+
+			case 'b':
+				c = '\b';
+				break;
+
+			case 'f':
+				c = '\f';
+				break;
+
+			case 'u':
+				if (i + 4 >= end)
+					throw error("invalid unicode escape");
+
+				int value = 0;
+
+				for (int j = 1; j <= 4; j++) {
+					int digit = Character.digit(chars[i + j], 16);
+
+					if (digit < 0)
+						throw error("invalid unicode escape");
+
+					value = (value << 4) | digit;
+				}
+
+				c = (char) value;
+				i += 4;
+				break;
+
+			case '"':
+			case '\\':
+			case '/':
+				break;
+
+			default:
+				throw error("invalid escape sequence [\\" + c + "]");
+			}
+
+			text[length++] = c;
+		}
+
+		return length;
+	}
+
+	private boolean readBoolean() throws IOException {
+		if (chars[position] == 't') {
+			readLiteral(TRUE);
+			return true;
+		}
+
+		readLiteral(FALSE);
+		return false;
+	}
+
+	private void readLiteral(char[] literal) throws IOException {
+		for (int i = 0; i < literal.length; i++) {
+			int c = current();
+
+			if (c != literal[i])
+				throw unexpected(c, "'" + new String(literal) + "'");
+
+			position++;
+		}
+	}
+
+	/**
+	 * Used to scan past the number starting at the current position, leaving
+	 * it in the buffer between {@link #mark} and {@link #position} and its
+	 * value in {@link #mantissa}, {@link #exponent} and {@link #negative}.
+	 * {@link #exact} is <code>false</code> if digits were dropped from the
+	 * mantissa.
+	 */
+	private void scanNumber() throws IOException {
+		mark = position;
+
+		long mantissa = 0;
+		int exponent = 0;
+		boolean exact = true;
+		int c = current();
+
+		if (negative = (c == '-')) {
+			position++;
+			c = current();
+		}
+
+		int digits = 0;
+
+		for (; c >= '0' && c <= '9'; position++, digits++, c = current()) {
+			if (mantissa < MANTISSA_LIMIT)
+				mantissa = mantissa * 10 + (c - '0');
+			else {
+				exponent++;
+
+				if (c != '0')
+					exact = false;
+			}
+		}
+
+		if (digits == 0)
+			throw error("invalid number");
+
+		if (c == '.') {
+			position++;
+			c = current();
+			digits = 0;
+
+			for (; c >= '0' && c <= '9'; position++, digits++, c = current()) {
+				if (mantissa < MANTISSA_LIMIT) {
+					mantissa = mantissa * 10 + (c - '0');
+					exponent--;
+				} else if (c != '0')
+					exact = false;
+			}
+
+			if (digits == 0)
+				throw error("invalid number");
+		}
+
+		if (c == 'e' || c == 'E') {
+			position++;
+			c = current();
+
+			boolean negativeExponent = (c == '-');
+
+			if (c == '-' || c == '+') {
+				position++;
+				c = current();
+			}
+
+			int value = 0;
+			digits = 0;
+
+			for (; c >= '0' && c <= '9'; position++, digits++, c = current()) {
+				if (value < 100000)
+					value = value * 10 + (c - '0');
+			}
+
+			if (digits == 0)
+				throw error("invalid number");
+
+			exponent += (negativeExponent ? -value : value);
+		}
+
+		this.mantissa = mantissa;
+		this.exponent = exponent;
+		this.exact = exact;
+	}
+
+	private long toLong() {
+		if (exact && exponent == 0)
+			return (negative ? -mantissa : mantissa);
+
+		try {
+			return new BigDecimal(chars, mark, position - mark)
+					.longValueExact();
+		} catch (ArithmeticException e) {
+			throw error("[" + new String(chars, mark, position - mark)
+					+ "] is not a long", e);
+		}
+	}
+
+	private long toInteger(long min, long max) {
+		long value = toLong();
+
+		if (value < min || value > max)
+			throw error("[" + value + "] is outside of the range " + min
+					+ " to " + max);
+
+		return value;
+	}
+
+	/**
+	 * Used to convert the scanned number to a <code>double</code>. When the
+	 * mantissa and the power of ten it is scaled by are both exactly
+	 * representable, a single multiplication or division is correctly
+	 * rounded; only other numbers are parsed from a <code>String</code>.
+	 */
+	private double toDouble() {
+		if (exact && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+			double value = mantissa;
+
+			if (exponent > 0)
+				value *= DOUBLE_POWERS[exponent];
+			else if (exponent < 0)
+				value /= DOUBLE_POWERS[-exponent];
+
+			return (negative ? -value : value);
+		}
+
+		return Double.parseDouble(new String(chars, mark, position - mark));
+	}
+
+	private float toFloat() {
+		if (exact && mantissa < (1L << 24) && exponent >= -10 && exponent <= 10) {
+			float value = mantissa;
+
+			if (exponent > 0)
+				value *= FLOAT_POWERS[exponent];
+			else if (exponent < 0)
+				value /= FLOAT_POWERS[-exponent];
+
+			return (negative ? -value : value);
+		}
+
+		return Float.parseFloat(new String(chars, mark, position - mark));
+	}
+
+	/**
+	 * Used to convert the scanned number to the given type.
+	 */
+	private Object toNumber(Class<?> type) {
+		if (type == Integer.class || type == Integer.TYPE)
+			return Integer.valueOf((int) toInteger(Integer.MIN_VALUE,
+					Integer.MAX_VALUE));
+		if (type == Long.class || type == Long.TYPE)
+			return Long.valueOf(toLong());
+		if (type == Double.class || type == Double.TYPE)
+			return Double.valueOf(toDouble());
+		if (type == Float.class || type == Float.TYPE)
+			return Float.valueOf(toFloat());
+		if (type == Short.class || type == Short.TYPE)
+			return Short.valueOf((short) toInteger(Short.MIN_VALUE,
+					Short.MAX_VALUE));
+		if (type == Byte.class || type == Byte.TYPE)
+			return Byte.valueOf((byte) toInteger(Byte.MIN_VALUE,
+					Byte.MAX_VALUE));
+		if (type == BigDecimal.class)
+			return new BigDecimal(chars, mark, position - mark);
+		if (type == BigInteger.class) {
+			try {
+				return new BigDecimal(chars, mark, position - mark)
+						.toBigIntegerExact();
+			} catch (ArithmeticException e) {
+				throw error("[" + new String(chars, mark, position - mark)
+						+ "] is not an integer", e);
+			}
+		}
+		if (type == AtomicInteger.class)
+			return new AtomicInteger((int) toInteger(Integer.MIN_VALUE,
+					Integer.MAX_VALUE));
+		if (type == AtomicLong.class)
+			return new AtomicLong(toLong());
+
+		// Untyped numbers (e.g. Object or Number) are read as Longs or Doubles.
+		if (type.isAssignableFrom(Long.class)
+				&& type.isAssignableFrom(Double.class)) {
+			if (exact && exponent == 0)
+				return Long.valueOf(negative ? -mantissa : mantissa);
+
+			return Double.valueOf(toDouble());
+		}
+
+		if (type.isAssignableFrom(Date.class))
+			return new Date(toLong());
+		if (type.isAssignableFrom(Calendar.class))
+			return toCalendar(toLong());
+
+		return toValue(type, new String(chars, mark, position - mark), false);
+	}
+
+	private Object toBoolean(Class<?> type, boolean value) {
+		if (type == Boolean.class || type == Boolean.TYPE
+				|| type.isAssignableFrom(Boolean.class))
+			return Boolean.valueOf(value);
+		if (type == String.class)
+			return String.valueOf(value);
+
+		throw error("a boolean cannot be read into [" + type.getName() + "]");
+	}
+
+	/**
+	 * Used to convert a string value to the given type.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Object toValue(Class<?> type, String value, boolean timestamp) {
+		if (type.isPrimitive())
+			type = toWrapper(getPrimitiveCode(type));
+		if (type.isAssignableFrom(String.class))
+			return value;
+
+		if (timestamp
+				|| metadataCache.get(type).writer instanceof DateTimeWriter) {
+			long millis = parseDateTime(value);
+
+			// Values that aren't instants (e.g. a LocalDate) are converted below.
+			if (millis != INVALID_DATE_TIME) {
+				if (type == Long.class || type.isAssignableFrom(Long.class))
+					return Long.valueOf(millis);
+				if (type.isAssignableFrom(Date.class))
+					return new Date(millis);
+				if (type.isAssignableFrom(Calendar.class))
+					return toCalendar(millis);
+			}
+		}
+
+		if (type == Character.class) {
+			if (value.length() != 1)
+				throw error("[" + value + "] is not a single char");
+
+			return Character.valueOf(value.charAt(0));
+		}
+
+		try {
+			if (type.isEnum())
+				return Enum.valueOf((Class) type, value);
+			if (type == UUID.class)
+				return UUID.fromString(value);
+			if (type == Boolean.class)
+				return Boolean.valueOf(value);
+
+			Member converter = getConverter(type);
+
+			if (converter instanceof Method)
+				return ((Method) converter).invoke(null, value);
+
+			return ((Constructor<?>) converter).newInstance(value);
+		} catch (JSONParseException e) {
+			throw e;
+		} catch (Exception e) {
+			throw error("[" + value + "] cannot be read into ["
+					+ type.getName() + "]", e);
+		}
+	}
+
+	/**
+	 * Used to find the static factory method or constructor used to create
+	 * values of the given type from a <code>String</code>.
+	 */
+	private Member getConverter(Class<?> type) {
+		Member converter = converters.get(type);
+
+		if (converter == null) {
+			converter = findMethod(type, "valueOf", String.class);
+
+			if (converter == null)
+				converter = findMethod(type, "fromString", String.class);
+			if (converter == null)
+				converter = findMethod(type, "parse", CharSequence.class);
+
+			if (converter == null) {
+				try {
+					converter = type.getConstructor(String.class);
+				} catch (NoSuchMethodException e) {
+					converter = NO_CONVERTER;
+				}
+			}
+
+			converters.put(type, converter);
+		}
+
+		if (converter == NO_CONVERTER)
+			throw error("a string cannot be read into [" + type.getName() + "]");
+
+		return converter;
+	}
+
+	private static Method findMethod(Class<?> type, String name,
+			Class<?> parameterType) {
+		try {
+			Method method = type.getMethod(name, parameterType);
+
+			if (Modifier.isStatic(method.getModifiers())
+					&& type.isAssignableFrom(method.getReturnType()))
+				return method;
+		} catch (NoSuchMethodException e) {
+			// fall through
+		}
+
+		return null;
+	}
+
+	private static Calendar toCalendar(long millis) {
+		Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.setTimeInMillis(millis);
+
+		return calendar;
+	}
+
+	/**
+	 * Used to parse an ISO-8601 date-time in the form written by the
+	 * {@link DateTimeWriter} (e.g. <code>2011-06-14T17:05:09.250Z</code>),
+	 * optionally with a <code>+hh:mm</code> offset instead of
+	 * <code>Z</code>, into milliseconds since the epoch.
+	 * 
+	 * @return the milliseconds since the epoch or {@link #INVALID_DATE_TIME}
+	 *         if the value isn't a date-time.
+	 */
+	static long parseDateTime(String value) {
+		int length = value.length();
+		int i = 0;
+
+		boolean negativeYear = (length > 0 && value.charAt(0) == '-');
+
+		if (negativeYear || (length > 0 && value.charAt(0) == '+'))
+			i++;
+
+		long year = 0;
+		int start = i;
+
+		for (; i < length && isDigit(value.charAt(i)); i++)
+			year = year * 10 + (value.charAt(i) - '0');
+
+		if (i - start < 4 || i - start > 9 || i + 15 > length
+				|| value.charAt(i) != '-' || value.charAt(i + 3) != '-'
+				|| value.charAt(i + 6) != 'T' || value.charAt(i + 9) != ':'
+				|| value.charAt(i + 12) != ':')
+			return INVALID_DATE_TIME;
+
+		int month = parse2(value, i + 1);
+		int day = parse2(value, i + 4);
+		int hour = parse2(value, i + 7);
+		int minute = parse2(value, i + 10);
+		int second = parse2(value, i + 13);
+
+		if (month < 1 || month > 12 || day < 1 || day > 31 || hour < 0
+				|| hour > 23 || minute < 0 || minute > 59 || second < 0
+				|| second > 59)
+			return INVALID_DATE_TIME;
+
+		i += 15;
+		int millis = 0;
+
+		if (i < length && value.charAt(i) == '.') {
+			int digits = 0;
+
+			for (i++; i < length && isDigit(value.charAt(i)); i++, digits++) {
+				if (digits < 3)
+					millis = millis * 10 + (value.charAt(i) - '0');
+			}
+
+			if (digits == 0)
+				return INVALID_DATE_TIME;
+
+			for (; digits < 3; digits++)
+				millis *= 10;
+		}
+
+		int offsetMinutes = 0;
+
+		if (i < length && value.charAt(i) == 'Z')
+			i++;
+		else if (i + 6 == length
+				&& (value.charAt(i) == '+' || value.charAt(i) == '-')
+				&& value.charAt(i + 3) == ':') {
+			int offsetHours = parse2(value, i + 1);
+			int offsetMins = parse2(value, i + 4);
+
+			if (offsetHours < 0 || offsetMins < 0)
+				return INVALID_DATE_TIME;
+
+			offsetMinutes = offsetHours * 60 + offsetMins;
+
+			if (value.charAt(i) == '-')
+				offsetMinutes = -offsetMinutes;
+
+			i += 6;
+		} else
+			return INVALID_DATE_TIME;
+
+		if (i != length)
+			return INVALID_DATE_TIME;
+
+		long days = daysFromCivil(negativeYear ? -year : year, month, day);
+
+		long minutes = (days * 24 + hour) * 60 + minute - offsetMinutes;
+
+		return (minutes * 60 + second) * 1000 + millis;
+	}
+
+	private static boolean isDigit(char c) {
+		return (c >= '0' && c <= '9');
+	}
+
+	private static int parse2(String value, int index) {
+		char c1 = value.charAt(index);
+		char c2 = value.charAt(index + 1);
+
+		return (isDigit(c1) && isDigit(c2) ? (c1 - '0') * 10 + (c2 - '0') : -1);
+	}
+
+	/**
+	 * Used to get the days since the epoch of the given date (proleptic
+	 * Gregorian calendar); the inverse of the days-to-civil conversion the
+	 * {@link DateTimeWriter} renders dates with.
+	 */
+	private static long daysFromCivil(long year, int month, int day) {
+		year -= (month <= 2 ? 1 : 0);
+
+		long era = (year >= 0 ? year : year - 399) / 400;
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day
+				- 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Used to get the next <code>char</code> that isn't whitespace, without
+	 * consuming it.
+	 * 
+	 * @return the next <code>char</code> or <code>-1</code> at the end of
+	 *         the content.
+	 */
+	private int peek() throws IOException {
+		while (true) {
+			char[] chars = this.chars;
+			int limit = this.limit;
+
+			for (int i = position; i < limit; i++) {
+				char c = chars[i];
+
+				if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+					position = i;
+					return c;
+				}
+			}
+
+			position = limit;
+
+			if (!fill())
+				return -1;
+		}
+	}
+
+	private int current() throws IOException {
+		return (position < limit || fill() ? chars[position] : -1);
+	}
+
+	/**
+	 * Used to read the next chunk of content into the buffer when parsing a
+	 * <code>byte[]</code> or {@link Reader}. The token being read (from
+	 * {@link #mark}) is moved to the start of the buffer first, so it is
+	 * always held in the buffer as a whole; the buffer is only grown if the
+	 * token fills it.
+	 * 
+	 * @return <code>true</code> if more content was read or
+	 *         <code>false</code> at the end of the content.
+	 */
+	private boolean fill() throws IOException {
+		if (reader == null && bytes == null)
+			return false;
+
+		int keep = (mark < 0 ? limit : mark);
+
+		if (keep > 0) {
+			System.arraycopy(chars, keep, chars, 0, limit - keep);
+
+			offset += keep;
+			position -= keep;
+			limit -= keep;
+
+			if (mark >= 0)
+				mark = 0;
+		}
+
+		// Leave room for (at least) a surrogate pair.
+		if (chars.length - limit < 2)
+			chars = buffer = grow(chars, chars.length * 2);
+
+		int read = (reader == null ? decode(chars, limit) : reader.read(chars,
+				limit, chars.length - limit));
+
+		if (read <= 0)
+			return false;
+
+		limit += read;
+		return true;
+	}
+
+	/**
+	 * Used to decode as much of the remaining UTF-8 content as fits into the
+	 * given buffer, starting at the given index.
+	 * 
+	 * @return the number of <code>char</code>s decoded or <code>-1</code> if
+	 *         there is no content left.
+	 */
+	private int decode(char[] target, int index) {
+		byte[] bytes = this.bytes;
+		int b = byteIndex;
+		int limit = byteLimit;
+
+		if (b >= limit)
+			return -1;
+
+		int i = index;
+
+		while (i < target.length && b < limit) {
+			int c = bytes[b];
+
+			// Fast path for ASCII, by far the most common content.
+			if (c >= 0) {
+				target[i++] = (char) c;
+				b++;
+				continue;
+			}
+
+			int count;
+			int codePoint;
+
+			if ((c & 0xE0) == 0xC0) {
+				count = 1;
+				codePoint = c & 0x1F;
+			} else if ((c & 0xF0) == 0xE0) {
+				count = 2;
+				codePoint = c & 0x0F;
+			} else if ((c & 0xF8) == 0xF0) {
+				// Supplementary code points need room for a surrogate pair.
+				if (i + 1 >= target.length)
+					break;
+
+				count = 3;
+				codePoint = c & 0x07;
+			} else {
+				target[i++] = REPLACEMENT;
+				b++;
+				continue;
+			}
+
+			int j = 1;
+
+			for (; j <= count; j++) {
+				if (b + j >= limit || (bytes[b + j] & 0xC0) != 0x80)
+					break;
+
+				codePoint = (codePoint << 6) | (bytes[b + j] & 0x3F);
+			}
+
+			// Truncated sequence, only skip the bytes that belonged to it.
+			if (j <= count) {
+				target[i++] = REPLACEMENT;
+				b += j;
+				continue;
+			}
+
+			b += count + 1;
+
+			if (count < 3)
+				target[i++] = (char) codePoint;
+			else if (codePoint < 0x10000 || codePoint > 0x10FFFF)
+				target[i++] = REPLACEMENT;
+			else {
+				i += Character.toChars(codePoint, target, i);
+			}
+		}
+
+		byteIndex = b;
+		return i - index;
+	}
+
+	private int enter(int depth) {
+		if (depth >= MAX_DEPTH)
+			throw error("nesting deeper than " + MAX_DEPTH);
+
+		return depth + 1;
+	}
+
+	private JSONParseException error(String message) {
+		return error(message, null);
+	}
+
+	private JSONParseException error(String message, Throwable cause) {
+		return new JSONParseException(message, offset + position, cause);
+	}
+
+	private JSONParseException unexpected(int c, String expected) {
+		return error("expected " + expected + " but found "
+				+ (c < 0 ? "the end of the content" : "'" + (char) c + "'"));
+	}
+
+	private Binding createBinding(ClassMetadata metadata) {
+		try {
+			return new Binding(metadata);
+		} catch (NoSuchMethodException e) {
+			throw error("[" + metadata.type.getName()
+					+ "] has no no-arg constructor to create it with", e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Collection<Object> newCollection(Class<?> type) {
+		// Interfaces and untyped values (e.g. Object or Iterable).
+		if (!Collection.class.isAssignableFrom(type) || type.isInterface()
+				|| Modifier.isAbstract(type.getModifiers())) {
+			if (type.isAssignableFrom(ArrayList.class))
+				return new ArrayList<Object>();
+			if (type.isAssignableFrom(LinkedHashSet.class))
+				return new LinkedHashSet<Object>();
+			if (type.isAssignableFrom(TreeSet.class))
+				return new TreeSet<Object>();
+			if (type.isAssignableFrom(LinkedList.class))
+				return new LinkedList<Object>();
+
+			throw error("no collection to read [" + type.getName()
+					+ "] into");
+		}
+
+		try {
+			return (Collection<Object>) type.getDeclaredConstructor()
+					.newInstance();
+		} catch (NoSuchMethodException e) {
+			throw error("[" + type.getName()
+					+ "] has no no-arg constructor to create it with", e);
+		} catch (InvocationTargetException e) {
+			// Report what the constructor itself threw.
+			throw error("unable to create [" + type.getName() + "]",
+					e.getCause());
+		} catch (Exception e) {
+			throw error("unable to create [" + type.getName() + "]", e);
+		}
+	}
+
+	private static Object[][] grow(Object[][] array, int length) {
+		Object[][] grown = new Object[length][];
+		System.arraycopy(array, 0, grown, 0, array.length);
+
+		return grown;
+	}
+
+	private static Object[] grow(Object[] array, int length) {
+		Object[] grown = new Object[length];
+		System.arraycopy(array, 0, grown, 0, array.length);
+
+		return grown;
+	}
+
+	private static long[] grow(long[] array, int length) {
+		long[] grown = new long[length];
+		System.arraycopy(array, 0, grown, 0, Math.min(array.length, length));
+
+		return grown;
+	}
+
+	private static char[] grow(char[] array, int length) {
+		char[] grown = new char[length];
+		System.arraycopy(array, 0, grown, 0, array.length);
+
+		return grown;
+	}
+
+	private static int getPrimitiveCode(Class<?> type) {
+		if (!type.isPrimitive())
+			return NONE;
+		if (type == Integer.TYPE)
+			return INT;
+		if (type == Long.TYPE)
+			return LONG;
+		if (type == Double.TYPE)
+			return DOUBLE;
+		if (type == Boolean.TYPE)
+			return BOOLEAN;
+		if (type == Float.TYPE)
+			return FLOAT;
+		if (type == Short.TYPE)
+			return SHORT;
+		if (type == Byte.TYPE)
+			return BYTE;
+
+		return CHAR;
+	}
+
+	private static Class<?> toWrapper(int code) {
+		switch (code) {
+		case BOOLEAN:
+			return Boolean.class;
+		case CHAR:
+			return Character.class;
+		case BYTE:
+			return Byte.class;
+		case SHORT:
+			return Short.class;
+		case INT:
+			return Integer.class;
+		case FLOAT:
+			return Float.class;
+		case DOUBLE:
+			return Double.class;
+		default:
+			return Long.class;
+		}
+	}
+
+	/**
+	 * Used to get the class of the given generic type, e.g.
+	 * <code>List</code> for <code>List&lt;Book&gt;</code> or the upper bound
+	 * of a wildcard.
+	 */
+	private static Class<?> toClass(Type type) {
+		if (type instanceof Class<?>)
+			return (Class<?>) type;
+		if (type instanceof ParameterizedType)
+			return toClass(((ParameterizedType) type).getRawType());
+		if (type instanceof GenericArrayType)
+			return Array.newInstance(
+					toClass(((GenericArrayType) type)
+							.getGenericComponentType()), 0).getClass();
+		if (type instanceof WildcardType)
+			return toClass(((WildcardType) type).getUpperBounds()[0]);
+		if (type instanceof TypeVariable<?>)
+			return toClass(((TypeVariable<?>) type).getBounds()[0]);
+
+		return Object.class;
+	}
+
+	/**
+	 * Used to get the generic type of the elements of the given array or
+	 * collection type, <code>Object</code> if it isn't known.
+	 */
+	private static Type getElementType(Type type) {
+		if (type instanceof Class<?>) {
+			Class<?> componentType = ((Class<?>) type).getComponentType();
+			return (componentType == null ? Object.class : componentType);
+		}
+
+		if (type instanceof GenericArrayType)
+			return ((GenericArrayType) type).getGenericComponentType();
+
+		if (type instanceof ParameterizedType) {
+			Type[] arguments = ((ParameterizedType) type)
+					.getActualTypeArguments();
+
+			if (arguments.length == 1)
+				return arguments[0];
+		}
+
+		return Object.class;
+	}
+
+	/**
+	 * Class used to hold what the parser needs, on top of a class's
+	 * {@link ClassMetadata}, to create instances of it and set their fields.
+	 */
+	private class Binding {
+		private Class<?> type;
+		private boolean record;
+		private Constructor<?> constructor;
+
+		private FieldMetadata[] fields;
+		private Type[] generics;
+		private int[] codes;
+		private boolean[] timestamps;
+
+		private Binding(ClassMetadata metadata) throws NoSuchMethodException {
+			type = metadata.type;
+			fields = metadata.fields;
+			record = (Records.getAccessors(type) != null);
+
+			int length = fields.length;
+			generics = new Type[length];
+			codes = new int[length];
+			timestamps = new boolean[length];
+
+			Class<?>[] parameterTypes = new Class<?>[length];
+
+			for (int i = 0; i < length; i++) {
+				Field field = fields[i].field;
+
+				generics[i] = field.getGenericType();
+				codes[i] = (record ? NONE : getPrimitiveCode(field.getType()));
+				timestamps[i] = (fields[i].writer instanceof DateTimeWriter);
+				parameterTypes[i] = field.getType();
+
+				// Final fields can only be set once access checks are suppressed.
+				if (!record && Modifier.isFinal(field.getModifiers()))
+					makeAccessible(field);
+			}
+
+			constructor = (record ? type.getDeclaredConstructor(parameterTypes)
+					: type.getDeclaredConstructor());
+			makeAccessible(constructor);
+		}
+
+		private Object newInstance() {
+			try {
+				return constructor.newInstance();
+			} catch (InvocationTargetException e) {
+				throw error("unable to create [" + type.getName() + "]",
+						e.getCause());
+			} catch (Exception e) {
+				throw error("unable to create [" + type.getName() + "]", e);
+			}
+		}
+
+		/**
+		 * Used to get the arguments for the canonical constructor of a record,
+		 * with the default value of every primitive component filled in.
+		 */
+		private Object[] newArguments() {
+			Object[] arguments = new Object[fields.length];
+
+			for (int i = 0; i < arguments.length; i++) {
+				Class<?> fieldType = fields[i].type;
+
+				if (fieldType.isPrimitive())
+					arguments[i] = Array.get(Array.newInstance(fieldType, 1),
+							0);
+			}
+
+			return arguments;
+		}
+
+		private Object newRecord(Object[] arguments) {
+			try {
+				return constructor.newInstance(arguments);
+			} catch (InvocationTargetException e) {
+				throw error("unable to create [" + type.getName() + "]",
+						e.getCause());
+			} catch (Exception e) {
+				throw error("unable to create [" + type.getName() + "]", e);
+			}
+		}
+
+		private void set(FieldMetadata field, Object target, Object value) {
+			try {
+				field.field.set(target, value);
+			} catch (Exception e) {
+				throw error("unable to set field [" + field.field.getName()
+						+ "]", e);
+			}
+		}
+	}
+
+	private static void makeAccessible(AccessibleObject member) {
+		try {
+			member.setAccessible(true);
+		} catch (RuntimeException e) {
+			// Left to fail with a descriptive error when it is used.
+		}
+	}
+}
\ No newline at end of file
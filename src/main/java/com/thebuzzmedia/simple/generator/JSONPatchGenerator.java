@@ -0,0 +1,523 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.thebuzzmedia.common.io.CharArrayInput;
+import com.thebuzzmedia.common.io.IInput;
+import com.thebuzzmedia.common.util.ArrayUtils;
+import com.thebuzzmedia.simple.generator.annotation.Recursable;
+import com.thebuzzmedia.simple.generator.sink.ISink;
+
+/**
+ * Class used to generate a JSON Patch
+ * (<a href="http://tools.ietf.org/html/rfc6902">RFC 6902</a>) document
+ * describing the changes between two versions of the same object graph, so a
+ * client holding the JSON of the source version (as written by a
+ * {@link JSONGenerator}) can bring it up to date without the whole target
+ * version being sent.
+ * <p/>
+ * The two graphs are walked side by side using the same {@link ClassMetadata}
+ * the generators use, so a patch generator sharing the
+ * {@link ClassMetadataCache} of a generator (see
+ * {@link #JSONPatchGenerator(ClassMetadataCache)}) never reflects on a class
+ * the generator has already written. Nothing is rendered for content that did
+ * not change: subtrees that are the same instance in both versions are
+ * skipped without being walked at all, simple values are compared with
+ * {@link Object#equals(Object)}, and only the values that were added or
+ * replaced are generated into the patch. The cost of a diff scales with the
+ * size of the change rather than the size of the document.
+ * <p/>
+ * The differences are written as:
+ * <ul>
+ * <li><code>add</code> and <code>remove</code> operations for fields that
+ * became non-<code>null</code> or <code>null</code> (the generators skip
+ * <code>null</code> fields).</li>
+ * <li><code>replace</code> operations for simple values that are not equal,
+ * and for objects or list elements whose class changed.</li>
+ * <li>Lists (arrays and {@link Collection}s) compared element by element, in
+ * order: elements at the same index are diffed, extra elements in the source
+ * are removed (from the end) and extra elements in the target are added. An
+ * element inserted in the middle of a list therefore shows up as changes to
+ * every element after it.</li>
+ * <li><code>replace</code> operations for lazy sources of elements, which
+ * can't be compared without consuming them.</li>
+ * </ul>
+ * Columnar output (see {@link JSONGenerator#setColumnar(boolean)}) is not
+ * patched.
+ * <p/>
+ * Like the generators, this class is not thread-safe; use one patch generator
+ * per thread (they can all share one {@link ClassMetadataCache}).
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class JSONPatchGenerator {
+	/**
+	 * The deepest nesting of objects and lists that is walked before the diff
+	 * fails, instead of the stack overflowing on a cyclic graph.
+	 * <p/>
+	 * Default value is: 512
+	 */
+	public static final int MAX_DEPTH = 512;
+
+	private static final int DEFAULT_BUFFER_SIZE = 256;
+	private static final float BUFFER_GROWTH_FACTOR = 1.5f;
+
+	private static final char[] ADD = "{\"op\":\"add\",\"path\":\""
+			.toCharArray();
+	private static final char[] REMOVE = "{\"op\":\"remove\",\"path\":\""
+			.toCharArray();
+	private static final char[] REPLACE = "{\"op\":\"replace\",\"path\":\""
+			.toCharArray();
+	private static final char[] VALUE = "\",\"value\":".toCharArray();
+	private static final char[] END = "\"}".toCharArray();
+	private static final char[] NULL = "null".toCharArray();
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private ClassMetadataCache metadataCache;
+	private JSONGenerator generator;
+	private ISink valueSink;
+
+	private int length;
+	private char[] buffer;
+	private int operations;
+
+	private int pathLength;
+	private char[] path;
+
+	public JSONPatchGenerator() {
+		this(new ClassMetadataCache());
+	}
+
+	public JSONPatchGenerator(ClassMetadataCache metadataCache)
+			throws IllegalArgumentException {
+		if (metadataCache == null)
+			throw new IllegalArgumentException("metadataCache cannot be null");
+
+		this.metadataCache = metadataCache;
+
+		// Added and replaced values are rendered with a compact generator.
+		generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		generator.setMetadataCache(metadataCache);
+		valueSink = new ValueSink();
+
+		path = new char[64];
+	}
+
+	public ClassMetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+
+	/**
+	 * Used to generate the JSON Patch that turns the JSON of the given source
+	 * object into the JSON of the given target object.
+	 * <p/>
+	 * Objects are compared using the fields of their {@link Recursable}
+	 * classes; if the two roots are not of the same class, the patch replaces
+	 * the whole document.
+	 * 
+	 * @param source
+	 *            The version of the object graph the client already has.
+	 * @param target
+	 *            The version of the object graph the client should end up
+	 *            with.
+	 * 
+	 * @return a light weight wrapper around the <code>char[]</code> buffer
+	 *         containing the patch; an empty list (<code>[]</code>) if there
+	 *         are no differences.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the graphs are nested more than {@link #MAX_DEPTH} levels
+	 *             deep.
+	 */
+	public IInput<char[], char[]> diff(Object source, Object target)
+			throws IllegalArgumentException {
+		length = 0;
+		buffer = new char[DEFAULT_BUFFER_SIZE];
+		operations = 0;
+		pathLength = 0;
+
+		append('[');
+
+		diffValue(source, target, 0);
+
+		append(']');
+
+		return new CharArrayInput(buffer, 0, length);
+	}
+
+	/**
+	 * Used to diff two values dispatched by their runtime class, the way the
+	 * roots and list elements are written.
+	 */
+	private void diffValue(Object source, Object target, int depth) {
+		if (source == target)
+			return;
+
+		if (source == null || target == null
+				|| source.getClass() != target.getClass()) {
+			writeReplace(null, target);
+			return;
+		}
+
+		ClassMetadata metadata = metadataCache.get(source.getClass());
+
+		switch (metadata.kind) {
+		case OBJECT:
+			diffFields(metadata, source, target, depth + 1);
+			break;
+
+		case ARRAY:
+		case LIST:
+		case COLLECTION:
+			diffList(source, target, depth + 1);
+			break;
+
+		case LAZY:
+			writeReplace(null, target);
+			break;
+
+		default:
+			if (!source.equals(target))
+				writeReplace(null, target);
+		}
+	}
+
+	private void diffFields(ClassMetadata metadata, Object source,
+			Object target, int depth) {
+		checkDepth(depth);
+
+		FieldMetadata[] fields = metadata.fields;
+
+		for (int i = 0; i < fields.length; i++) {
+			FieldMetadata field = fields[i];
+			Object sourceValue = getValue(field, source);
+			Object targetValue = getValue(field, target);
+
+			// Same instance (or both null), nothing below it changed.
+			if (sourceValue == targetValue)
+				continue;
+
+			int mark = pushName(field.name);
+
+			if (sourceValue == null)
+				writeAdd(field, targetValue);
+			else if (targetValue == null)
+				writeRemove();
+			else {
+				// Fields are dispatched by their declared type.
+				switch (field.kind) {
+				case OBJECT:
+					diffFields(metadataCache.get(field.type), sourceValue,
+							targetValue, depth + 1);
+					break;
+
+				case ARRAY:
+				case LIST:
+				case COLLECTION:
+					diffList(sourceValue, targetValue, depth + 1);
+					break;
+
+				case LAZY:
+					writeReplace(field, targetValue);
+					break;
+
+				default:
+					if (!sourceValue.equals(targetValue))
+						writeReplace(field, targetValue);
+				}
+			}
+
+			pathLength = mark;
+		}
+	}
+
+	private void diffList(Object source, Object target, int depth) {
+		checkDepth(depth);
+
+		// Compare unchanged primitive arrays without boxing every element.
+		if (source.getClass() == target.getClass()
+				&& source.getClass().getComponentType() != null
+				&& source.getClass().getComponentType().isPrimitive()
+				&& primitiveArraysEqual(source, target))
+			return;
+
+		Iterator<?> sourceElements = iterator(source);
+		Iterator<?> targetElements = iterator(target);
+		int sourceSize = size(source);
+		int targetSize = size(target);
+		int i = 0;
+
+		// Diff the elements both versions have in place.
+		for (int size = Math.min(sourceSize, targetSize); i < size; i++) {
+			Object sourceElement = get(source, sourceElements, i);
+			Object targetElement = get(target, targetElements, i);
+
+			if (sourceElement == targetElement)
+				continue;
+
+			int mark = pushIndex(i);
+			diffValue(sourceElement, targetElement, depth);
+			pathLength = mark;
+		}
+
+		// Remove from the end so the indices of the rest don't shift.
+		for (int j = sourceSize - 1; j >= targetSize; j--) {
+			int mark = pushIndex(j);
+			writeRemove();
+			pathLength = mark;
+		}
+
+		for (; i < targetSize; i++) {
+			int mark = pushIndex(i);
+			writeAdd(null, get(target, targetElements, i));
+			pathLength = mark;
+		}
+	}
+
+	private void checkDepth(int depth) throws IllegalArgumentException {
+		if (depth > MAX_DEPTH)
+			throw new IllegalArgumentException(
+					"object graph is nested more than MAX_DEPTH [" + MAX_DEPTH
+							+ "] levels deep, it may be cyclic");
+	}
+
+	private static boolean primitiveArraysEqual(Object source, Object target) {
+		if (source instanceof int[])
+			return Arrays.equals((int[]) source, (int[]) target);
+		else if (source instanceof long[])
+			return Arrays.equals((long[]) source, (long[]) target);
+		else if (source instanceof double[])
+			return Arrays.equals((double[]) source, (double[]) target);
+		else if (source instanceof byte[])
+			return Arrays.equals((byte[]) source, (byte[]) target);
+		else if (source instanceof char[])
+			return Arrays.equals((char[]) source, (char[]) target);
+		else if (source instanceof boolean[])
+			return Arrays.equals((boolean[]) source, (boolean[]) target);
+		else if (source instanceof float[])
+			return Arrays.equals((float[]) source, (float[]) target);
+		else
+			return Arrays.equals((short[]) source, (short[]) target);
+	}
+
+	private static Object getValue(FieldMetadata field, Object source) {
+		try {
+			return field.getValue(source);
+		} catch (Exception e) {
+			// Written the way the generators write an unreadable field.
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Used to get an iterator over the elements of a {@link Collection} that
+	 * can't be accessed by index, or <code>null</code> for arrays and
+	 * random-access lists.
+	 */
+	private static Iterator<?> iterator(Object list) {
+		if (list instanceof Collection<?>
+				&& !(list instanceof List<?> && list instanceof RandomAccess))
+			return ((Collection<?>) list).iterator();
+
+		return null;
+	}
+
+	private static int size(Object list) {
+		return (list instanceof Collection<?> ? ((Collection<?>) list).size()
+				: Array.getLength(list));
+	}
+
+	private static Object get(Object list, Iterator<?> elements, int index) {
+		if (elements != null)
+			return elements.next();
+
+		return (list instanceof List<?> ? ((List<?>) list).get(index) : Array
+				.get(list, index));
+	}
+
+	private void writeAdd(FieldMetadata field, Object value) {
+		writeOperation(ADD);
+		append(VALUE);
+		writeValue(field, value);
+		append('}');
+	}
+
+	private void writeRemove() {
+		writeOperation(REMOVE);
+		append(END);
+	}
+
+	private void writeReplace(FieldMetadata field, Object value) {
+		writeOperation(REPLACE);
+		append(VALUE);
+		writeValue(field, value);
+		append('}');
+	}
+
+	/**
+	 * Used to write the start of an operation up to the end of its (JSON
+	 * escaped) path.
+	 */
+	private void writeOperation(char[] op) {
+		if (operations++ > 0)
+			append(',');
+
+		append(op);
+
+		for (int i = 0; i < pathLength; i++) {
+			char c = path[i];
+
+			if (c == '"' || c == '\\')
+				append('\\').append(c);
+			else if (c < 0x20)
+				append('\\').append('u').append('0').append('0').append(
+						HEX[c >> 4]).append(HEX[c & 0x0F]);
+			else
+				append(c);
+		}
+	}
+
+	/**
+	 * Used to render a value into the patch with the generator; field values
+	 * are written with their field's writer and encoding.
+	 */
+	private void writeValue(FieldMetadata field, Object value) {
+		if (value == null) {
+			append(NULL);
+			return;
+		}
+
+		try {
+			if (field == null)
+				generator.generate(value, valueSink);
+			else
+				generator.generate(field, value, valueSink);
+		} catch (IOException e) {
+			// Can't happen, the value sink never throws.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Used to append a field name to the path as a JSON Pointer reference
+	 * token, escaping <code>~</code> and <code>/</code>.
+	 * 
+	 * @return the length of the path before the name was appended.
+	 */
+	private int pushName(String name) {
+		int mark = pathLength;
+		ensurePathCapacity(1 + name.length() * 2);
+
+		path[pathLength++] = '/';
+
+		for (int i = 0, l = name.length(); i < l; i++) {
+			char c = name.charAt(i);
+
+			if (c == '~') {
+				path[pathLength++] = '~';
+				path[pathLength++] = '0';
+			} else if (c == '/') {
+				path[pathLength++] = '~';
+				path[pathLength++] = '1';
+			} else
+				path[pathLength++] = c;
+		}
+
+		return mark;
+	}
+
+	/**
+	 * Used to append a list index to the path.
+	 * 
+	 * @return the length of the path before the index was appended.
+	 */
+	private int pushIndex(int index) {
+		int mark = pathLength;
+		ensurePathCapacity(11);
+
+		path[pathLength++] = '/';
+
+		// Write the digits backwards, then reverse them in place.
+		int start = pathLength;
+
+		do {
+			path[pathLength++] = (char) ('0' + index % 10);
+			index /= 10;
+		} while (index > 0);
+
+		for (int i = start, j = pathLength - 1; i < j; i++, j--) {
+			char c = path[i];
+			path[i] = path[j];
+			path[j] = c;
+		}
+
+		return mark;
+	}
+
+	private void ensurePathCapacity(int count) {
+		if (pathLength + count > path.length)
+			path = ArrayUtils.ensureCapacity(path, pathLength + count,
+					BUFFER_GROWTH_FACTOR);
+	}
+
+	private JSONPatchGenerator append(char c) {
+		if (length == buffer.length)
+			buffer = ArrayUtils.ensureCapacity(buffer, length + 1,
+					BUFFER_GROWTH_FACTOR);
+
+		buffer[length++] = c;
+		return this;
+	}
+
+	private JSONPatchGenerator append(char[] chars) {
+		return append(chars, 0, chars.length);
+	}
+
+	private JSONPatchGenerator append(char[] chars, int index, int count) {
+		if (length + count > buffer.length)
+			buffer = ArrayUtils.ensureCapacity(buffer, length + count,
+					BUFFER_GROWTH_FACTOR);
+
+		System.arraycopy(chars, index, buffer, length, count);
+		length += count;
+		return this;
+	}
+
+	/**
+	 * Class used to append the values rendered by the generator straight into
+	 * the patch being built.
+	 */
+	private class ValueSink implements ISink {
+		public void write(char[] chars, int index, int length)
+				throws IOException {
+			append(chars, index, length);
+		}
+
+		public void flush() throws IOException {
+			// no-op
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,139 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+
+import com.thebuzzmedia.simple.generator.annotation.Iterated;
+
+/**
+ * Class used to adapt lazily-evaluated sources of elements (
+ * {@link Iterator}s, <code>java.util.stream.Stream</code>s,
+ * <code>java.util.Spliterator</code>s and {@link Iterable}s annotated with
+ * {@link Iterated}) into an {@link Iterator} that the generator can consume
+ * one element at a time while it writes them out as a list.
+ * <p/>
+ * Simple Generator still runs on Java 5, so the Java 8 stream types are looked
+ * up reflectively once when this class is loaded; on older runtimes those
+ * types simply don't exist and are never matched.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+final class LazySources {
+	private static final Class<?> BASE_STREAM_CLASS;
+	private static final Method BASE_STREAM_ITERATOR;
+	private static final Method BASE_STREAM_CLOSE;
+
+	private static final Class<?> SPLITERATOR_CLASS;
+	private static final Method SPLITERATORS_ITERATOR;
+
+	static {
+		Class<?> streamClass = null;
+		Method streamIterator = null;
+		Method streamClose = null;
+
+		Class<?> spliteratorClass = null;
+		Method spliteratorsIterator = null;
+
+		try {
+			streamClass = Class.forName("java.util.stream.BaseStream");
+			streamIterator = streamClass.getMethod("iterator");
+			streamClose = streamClass.getMethod("close");
+
+			spliteratorClass = Class.forName("java.util.Spliterator");
+			spliteratorsIterator = Class.forName("java.util.Spliterators")
+					.getMethod("iterator", spliteratorClass);
+		} catch (Exception e) {
+			// Pre-Java 8 runtime, streams and spliterators can't show up.
+			streamClass = null;
+			spliteratorClass = null;
+		}
+
+		BASE_STREAM_CLASS = streamClass;
+		BASE_STREAM_ITERATOR = streamIterator;
+		BASE_STREAM_CLOSE = streamClose;
+
+		SPLITERATOR_CLASS = spliteratorClass;
+		SPLITERATORS_ITERATOR = spliteratorsIterator;
+	}
+
+	private LazySources() {
+		// no-op
+	}
+
+	/**
+	 * Used to determine if values of the given type are lazy sources of
+	 * elements that should be written as a list. Only {@link Iterable}s that
+	 * opt in with {@link Iterated} are, since many value types (e.g.
+	 * <code>java.nio.file.Path</code>) are also {@link Iterable}.
+	 */
+	static boolean isLazySource(Class<?> type) {
+		return (Iterator.class.isAssignableFrom(type)
+				|| (Iterable.class.isAssignableFrom(type) && type
+						.isAnnotationPresent(Iterated.class))
+				|| (BASE_STREAM_CLASS != null && BASE_STREAM_CLASS
+						.isAssignableFrom(type)) || (SPLITERATOR_CLASS != null && SPLITERATOR_CLASS
+				.isAssignableFrom(type)));
+	}
+
+	/**
+	 * Used to determine if the given source needs to be closed once all of
+	 * its elements have been consumed (e.g. a stream backed by a database
+	 * cursor).
+	 */
+	static boolean isCloseable(Object source) {
+		return (BASE_STREAM_CLASS != null && BASE_STREAM_CLASS
+				.isInstance(source));
+	}
+
+	/**
+	 * Used to get an {@link Iterator} that lazily walks the elements of the
+	 * given source, which must be of a type accepted by
+	 * {@link #isLazySource(Class)}.
+	 */
+	static Iterator<?> iterator(Object source) {
+		if (source instanceof Iterator<?>)
+			return (Iterator<?>) source;
+		if (source instanceof Iterable<?>)
+			return ((Iterable<?>) source).iterator();
+
+		try {
+			if (BASE_STREAM_CLASS.isInstance(source))
+				return (Iterator<?>) BASE_STREAM_ITERATOR.invoke(source);
+			else
+				return (Iterator<?>) SPLITERATORS_ITERATOR.invoke(null, source);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to iterate over source ["
+					+ source + "]", e);
+		}
+	}
+
+	/**
+	 * Used to close the given source if {@link #isCloseable(Object)}; any
+	 * exception thrown while closing is printed and otherwise ignored.
+	 */
+	static void close(Object source) {
+		if (isCloseable(source)) {
+			try {
+				BASE_STREAM_CLOSE.invoke(source);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+/**
+ * Class used to hold the exact size of a generated document, as measured by
+ * {@link IGenerator#measure(Object)} without the document being materialized.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class OutputSize {
+	private long charCount;
+	private long byteCount;
+
+	public OutputSize(long charCount, long byteCount)
+			throws IllegalArgumentException {
+		if (charCount < 0)
+			throw new IllegalArgumentException("charCount [" + charCount
+					+ "] must be >= 0");
+		if (byteCount < 0)
+			throw new IllegalArgumentException("byteCount [" + byteCount
+					+ "] must be >= 0");
+
+		this.charCount = charCount;
+		this.byteCount = byteCount;
+	}
+
+	/**
+	 * Used to get the number of <code>char</code>s the document is made of;
+	 * the length of the {@link com.thebuzzmedia.common.io.IInput} that
+	 * {@link IGenerator#generate(Object)} would return.
+	 * 
+	 * @return the number of <code>char</code>s in the document.
+	 */
+	public long getCharCount() {
+		return charCount;
+	}
+
+	/**
+	 * Used to get the number of bytes the document takes up encoded as UTF-8;
+	 * e.g. the value of its <code>Content-Length</code> header.
+	 * 
+	 * @return the number of UTF-8 bytes in the document.
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + "[charCount=" + charCount
+				+ ", byteCount=" + byteCount + "]";
+	}
+}
\ No newline at end of file
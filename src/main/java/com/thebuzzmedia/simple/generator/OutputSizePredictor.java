@@ -0,0 +1,222 @@
+/**
+ * Copyright 2011 The Buzz Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class used to learn, per root class, how large the generated output for an
+ * object of that class typically is so an {@link AbstractGenerator} can size
+ * its <code>char[]</code> buffer up front instead of growing it repeatedly
+ * during generation.
+ * <p/>
+ * Every recorded output length updates an exponentially weighted moving
+ * average (EWMA) and variance for the root class. The predicted size is the
+ * average plus {@link #DEVIATION_MULTIPLIER} standard deviations, so that
+ * most documents of the same class fit in the initial buffer and the rest
+ * need at most a single buffer growth.
+ * <p/>
+ * Estimates can be seeded ahead of time (e.g. from a previous run) with
+ * {@link #seed(Class, int)} so even the first generations are sized well.
+ * <p/>
+ * This class is thread-safe; a single predictor can be shared by any number of
+ * generators (see {@link AbstractGenerator#setSizePredictor(OutputSizePredictor)}),
+ * even ones running on different threads. Each estimate is updated atomically
+ * so concurrent recordings never leave its average and variance out of step.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class OutputSizePredictor {
+	/**
+	 * Weight given to the newest sample when updating the running average and
+	 * variance.
+	 * <p/>
+	 * Default value is: 0.125
+	 */
+	public static final double DEFAULT_ALPHA = 0.125d;
+
+	/**
+	 * Number of standard deviations added to the running average when
+	 * predicting an output size.
+	 * <p/>
+	 * Default value is: 2
+	 */
+	public static final int DEVIATION_MULTIPLIER = 2;
+
+	private double alpha;
+	private ConcurrentMap<Class<?>, Estimate> estimates;
+
+	public OutputSizePredictor() {
+		this(DEFAULT_ALPHA);
+	}
+
+	public OutputSizePredictor(double alpha) throws IllegalArgumentException {
+		if (alpha <= 0 || alpha > 1)
+			throw new IllegalArgumentException("alpha [" + alpha
+					+ "] must be > 0 and <= 1");
+
+		this.alpha = alpha;
+		estimates = new ConcurrentHashMap<Class<?>, Estimate>(64);
+	}
+
+	/**
+	 * Used to get the predicted output length (in <code>char</code>s) for an
+	 * object of the given root class.
+	 * 
+	 * @param type
+	 *            The class of the root object being generated.
+	 * 
+	 * @return the predicted output length or <code>-1</code> if nothing is
+	 *         known yet about the given class.
+	 */
+	public int predict(Class<?> type) {
+		Estimate estimate = estimates.get(type);
+
+		if (estimate == null)
+			return -1;
+
+		double size = estimate.predict();
+
+		return (size >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math
+				.ceil(size));
+	}
+
+	/**
+	 * Used to record the actual output length of a generation for the given
+	 * root class, updating the running average and variance.
+	 * 
+	 * @param type
+	 *            The class of the root object that was generated.
+	 * @param length
+	 *            The length (in <code>char</code>s) of the generated output.
+	 */
+	public void record(Class<?> type, int length) {
+		if (type == null || length < 0)
+			return;
+
+		Estimate estimate = estimates.get(type);
+
+		if (estimate == null) {
+			estimate = estimates.putIfAbsent(type, new Estimate(length));
+
+			// Only the thread that added the estimate skips updating it.
+			if (estimate == null)
+				return;
+		}
+
+		estimate.update(length, alpha);
+	}
+
+	/**
+	 * Used to seed the estimate for the given root class with a known output
+	 * length, replacing anything learned so far.
+	 * 
+	 * @param type
+	 *            The class of the root object.
+	 * @param length
+	 *            The expected length (in <code>char</code>s) of the output.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>type</code> is <code>null</code> or if
+	 *             <code>length</code> is &lt; 0.
+	 */
+	public void seed(Class<?> type, int length) throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException("type cannot be null");
+		if (length < 0)
+			throw new IllegalArgumentException("length [" + length
+					+ "] must be >= 0");
+
+		estimates.put(type, new Estimate(length));
+	}
+
+	/**
+	 * Used to get the running average output length for the given root class.
+	 * 
+	 * @return the running average or <code>-1</code> if nothing is known yet
+	 *         about the given class.
+	 */
+	public double getMean(Class<?> type) {
+		Estimate estimate = estimates.get(type);
+		return (estimate == null ? -1 : estimate.getMean());
+	}
+
+	/**
+	 * Used to get the running standard deviation of the output length for the
+	 * given root class.
+	 * 
+	 * @return the running standard deviation or <code>-1</code> if nothing is
+	 *         known yet about the given class.
+	 */
+	public double getDeviation(Class<?> type) {
+		Estimate estimate = estimates.get(type);
+		return (estimate == null ? -1 : Math.sqrt(estimate.getVariance()));
+	}
+
+	/**
+	 * Used to get the number of output lengths recorded (or seeded) for the
+	 * given root class.
+	 */
+	public int getSampleCount(Class<?> type) {
+		Estimate estimate = estimates.get(type);
+		return (estimate == null ? 0 : estimate.getSamples());
+	}
+
+	/**
+	 * Used to forget every estimate learned or seeded so far.
+	 */
+	public void clear() {
+		estimates.clear();
+	}
+
+	private static class Estimate {
+		private double mean;
+		private double variance;
+		private int samples;
+
+		private Estimate(int length) {
+			mean = length;
+			variance = 0;
+			samples = 1;
+		}
+
+		private synchronized void update(int length, double alpha) {
+			double diff = length - mean;
+
+			mean += alpha * diff;
+			variance = (1 - alpha) * (variance + alpha * diff * diff);
+			samples++;
+		}
+
+		private synchronized double predict() {
+			return mean + DEVIATION_MULTIPLIER * Math.sqrt(variance);
+		}
+
+		private synchronized double getMean() {
+			return mean;
+		}
+
+		private synchronized double getVariance() {
+			return variance;
+		}
+
+		private synchronized int getSamples() {
+			return samples;
+		}
+	}
+}
\ No newline at end of file
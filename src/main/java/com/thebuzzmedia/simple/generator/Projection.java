@@ -0,0 +1,233 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class used to describe a sparse fieldset; the subset of fields that should be
+ * included when generating an object, for example
+ * <code>title,isbn,authors.lastName</code>.
+ * <p/>
+ * A projection is a tree of field names. Each name selects a field of the
+ * object being generated; a name with no children (e.g. <code>isbn</code>)
+ * selects the field and everything under it, while dotted paths (e.g.
+ * <code>authors.lastName</code>) narrow down what is generated for the
+ * {@link com.thebuzzmedia.simple.generator.annotation.Recursable} objects held
+ * by that field. Projections pass straight through arrays, {@link List}s and
+ * other collections and apply to their elements.
+ * <p/>
+ * Fields are selected by the name they are written with, so when a custom
+ * {@link INamingStrategy} is in use the field list names the generated fields,
+ * not the Java fields.
+ * <p/>
+ * The first time a projection node meets a given class, it is compiled into a
+ * render plan for that class: the filtered {@link FieldMetadata} (in
+ * declaration order) and the child projection of each of those fields. The
+ * generator walks that plan instead of every public field of the class, so
+ * fields that were not requested are skipped before
+ * {@link Field#get(Object)} is ever called on them. Plans are held by the
+ * class's {@link ClassMetadata}, so they are dropped along with the
+ * {@link ClassMetadataCache} that created it.
+ * <p/>
+ * Projections are immutable and thread-safe. {@link #compile(String)} caches
+ * compiled projections by their field list so the parsing and per-class plans
+ * are re-used across requests asking for the same fields.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class Projection {
+	/**
+	 * Maximum number of distinct field lists that {@link #compile(String)}
+	 * caches. Field lists typically come from request parameters, so the cache
+	 * is simply emptied when it grows past this to keep it from growing
+	 * without bound.
+	 * <p/>
+	 * Default value is: 256
+	 */
+	public static final int MAX_CACHED = 256;
+
+	private static final FieldMetadata[] EMPTY_FIELDS = new FieldMetadata[0];
+
+	private static final Map<String, Projection> CACHE = new ConcurrentHashMap<String, Projection>(
+			64);
+
+	/**
+	 * Child projections of this node by field name. A <code>null</code> value
+	 * means the whole field is included.
+	 */
+	private Map<String, Projection> children;
+
+	private Projection() {
+		children = new HashMap<String, Projection>(8);
+	}
+
+	/**
+	 * Used to get the compiled projection for the given comma-separated list
+	 * of (optionally dotted) field paths, for example
+	 * <code>title,isbn,authors.lastName</code>.
+	 * <p/>
+	 * Compiled projections are cached and the same instance is returned for
+	 * the same field list.
+	 * 
+	 * @param fields
+	 *            The comma-separated list of field paths.
+	 * 
+	 * @return the compiled projection.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>fields</code> is <code>null</code> or contains an
+	 *             empty path segment (e.g. <code>authors..name</code>).
+	 */
+	public static Projection compile(String fields)
+			throws IllegalArgumentException {
+		if (fields == null)
+			throw new IllegalArgumentException("fields cannot be null");
+
+		Projection projection = CACHE.get(fields);
+
+		if (projection == null) {
+			projection = parse(fields);
+
+			if (CACHE.size() >= MAX_CACHED)
+				CACHE.clear();
+
+			CACHE.put(fields, projection);
+		}
+
+		return projection;
+	}
+
+	private static Projection parse(String fields)
+			throws IllegalArgumentException {
+		Projection root = new Projection();
+
+		for (String path : fields.split(",")) {
+			path = path.trim();
+
+			if (path.length() == 0)
+				continue;
+
+			String[] names = path.split("\\.", -1);
+			Projection node = root;
+
+			for (int i = 0; i < names.length; i++) {
+				String name = names[i].trim();
+
+				if (name.length() == 0)
+					throw new IllegalArgumentException("field path [" + path
+							+ "] contains an empty field name");
+
+				boolean last = (i == names.length - 1);
+
+				if (node.children.containsKey(name)) {
+					Projection child = node.children.get(name);
+
+					// The field is already included entirely.
+					if (child == null)
+						break;
+
+					if (last)
+						node.children.put(name, null);
+
+					node = child;
+				} else if (last)
+					node.children.put(name, null);
+				else {
+					Projection child = new Projection();
+					node.children.put(name, child);
+					node = child;
+				}
+			}
+		}
+
+		return root;
+	}
+
+	/**
+	 * Used to determine if the field with the given name is included by this
+	 * projection.
+	 */
+	public boolean includes(String name) {
+		return children.containsKey(name);
+	}
+
+	/**
+	 * Used to get the projection that applies to the value of the field with
+	 * the given name.
+	 * 
+	 * @return the child projection or <code>null</code> if the field is
+	 *         included entirely (or not at all, see {@link #includes(String)}).
+	 */
+	public Projection getChild(String name) {
+		return children.get(name);
+	}
+
+	/**
+	 * Used to get the render plan of this projection for the given class,
+	 * compiling it the first time the class is seen.
+	 * <p/>
+	 * Like the compiled projections, a class only keeps the plans of up to
+	 * {@link #MAX_CACHED} projection nodes and simply empties them when it
+	 * meets more.
+	 */
+	Plan getPlan(ClassMetadata metadata) {
+		Map<Projection, Plan> plans = metadata.plans;
+		Plan plan = plans.get(this);
+
+		if (plan == null) {
+			plan = new Plan(metadata, this);
+
+			if (plans.size() >= MAX_CACHED)
+				plans.clear();
+
+			plans.put(this, plan);
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Class used to hold the pre-filtered fields of a class that a projection
+	 * includes and the child projection to apply to each of them.
+	 */
+	static class Plan {
+		final FieldMetadata[] fields;
+		final Projection[] children;
+
+		private Plan(ClassMetadata metadata, Projection projection) {
+			List<FieldMetadata> included = new ArrayList<FieldMetadata>();
+
+			for (FieldMetadata field : metadata.fields) {
+				if (projection.includes(field.name))
+					included.add(field);
+			}
+
+			fields = (included.isEmpty() ? EMPTY_FIELDS : included
+					.toArray(new FieldMetadata[included.size()]));
+			children = new Projection[fields.length];
+
+			for (int i = 0; i < fields.length; i++)
+				children[i] = projection.getChild(fields[i].name);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+import java.lang.reflect.Method;
+
+/**
+ * Class used to look up the components of Java record classes.
+ * <p/>
+ * Simple Generator still runs on Java 5, so the record reflection API (added
+ * in Java 16) is looked up reflectively once when this class is loaded; on
+ * older runtimes records simply don't exist and are never matched.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+final class Records {
+	private static final Method CLASS_IS_RECORD;
+	private static final Method CLASS_GET_RECORD_COMPONENTS;
+	private static final Method RECORD_COMPONENT_GET_ACCESSOR;
+
+	static {
+		Method isRecord = null;
+		Method getRecordComponents = null;
+		Method getAccessor = null;
+
+		try {
+			isRecord = Class.class.getMethod("isRecord");
+			getRecordComponents = Class.class.getMethod("getRecordComponents");
+			getAccessor = Class.forName("java.lang.reflect.RecordComponent")
+					.getMethod("getAccessor");
+		} catch (Exception e) {
+			// Pre-Java 16 runtime, records can't show up.
+			isRecord = null;
+		}
+
+		CLASS_IS_RECORD = isRecord;
+		CLASS_GET_RECORD_COMPONENTS = getRecordComponents;
+		RECORD_COMPONENT_GET_ACCESSOR = getAccessor;
+	}
+
+	private Records() {
+		// no-op
+	}
+
+	/**
+	 * Used to get the accessor methods of the components of the given record
+	 * class, in declaration order.
+	 * 
+	 * @return the accessors of the record's components or <code>null</code>
+	 *         if the given class is not a record.
+	 */
+	static Method[] getAccessors(Class<?> type) {
+		if (CLASS_IS_RECORD == null)
+			return null;
+
+		try {
+			if (!((Boolean) CLASS_IS_RECORD.invoke(type)).booleanValue())
+				return null;
+
+			Object[] components = (Object[]) CLASS_GET_RECORD_COMPONENTS
+					.invoke(type);
+			Method[] accessors = new Method[components.length];
+
+			for (int i = 0; i < components.length; i++)
+				accessors[i] = (Method) RECORD_COMPONENT_GET_ACCESSOR
+						.invoke(components[i]);
+
+			return accessors;
+		} catch (Exception e) {
+			throw new IllegalStateException(
+					"Unable to get the components of record [" + type.getName()
+							+ "]", e);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,45 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator;
+
+/**
+ * Class used to implement a generator for tab-separated values; a
+ * {@link CSVGenerator} that separates cells with a tab (<code>'\t'</code>)
+ * instead of a comma.
+ * <p/>
+ * Values are quoted the same way as in CSV (when they contain a tab, double
+ * quote or line break), which is how spreadsheet applications read and write
+ * tab-separated files.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class TSVGenerator extends CSVGenerator {
+	/**
+	 * Separator written between the cells of a row.
+	 * <p/>
+	 * Value is: \t
+	 */
+	public static final char SEPARATOR = '\t';
+
+	public TSVGenerator() {
+		super(SEPARATOR);
+	}
+
+	public TSVGenerator(int initialBufferSize) throws IllegalArgumentException {
+		super(SEPARATOR, initialBufferSize);
+	}
+}
\ No newline at end of file
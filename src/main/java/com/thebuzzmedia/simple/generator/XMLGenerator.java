@@ -15,6 +15,8 @@
  */
 package com.thebuzzmedia.simple.generator;
 
+import com.thebuzzmedia.simple.generator.writer.ITypeWriter;
+
 /**
  * Class used to implement the default generator stubs for the XML file format.
  * <p/>
@@ -40,24 +42,52 @@ public class XMLGenerator extends AbstractGenerator {
 		super(indenter, initialBufferSize);
 	}
 
+	/**
+	 * Overridden to encode the name as its <code>&lt;name&gt;</code> opening
+	 * and <code>&lt;/name&gt;</code> closing tags.
+	 */
+	@Override
+	protected char[][] encodeName(String name) {
+		return new char[][] { ("<" + name + '>').toCharArray(),
+				("</" + name + '>').toCharArray() };
+	}
+
+	/**
+	 * Overridden to write the field's opening and closing tags around the
+	 * value.
+	 */
+	@Override
+	protected char[][] encodeValueLiterals(String name, boolean text) {
+		return getNameTokens(name);
+	}
+
+	/**
+	 * Overridden to return an empty separator, XML elements are not
+	 * separated.
+	 */
+	@Override
+	protected char[] encodeSeparator() {
+		return new char[0];
+	}
+
 	@Override
 	protected void writeObjectOpen(String fieldName, int level, boolean inList) {
-		append('<').append(fieldName).append('>');
+		append(getNameTokens(fieldName)[0]);
 	}
 
 	@Override
 	protected void writeObjectClose(String fieldName, int level, boolean inList) {
-		append("</").append(fieldName).append('>');
+		append(getNameTokens(fieldName)[1]);
 	}
 
 	@Override
 	protected void writeListOpen(String fieldName, int level, boolean inList) {
-		append('<').append(fieldName).append('>');
+		append(getNameTokens(fieldName)[0]);
 	}
 
 	@Override
 	protected void writeListClose(String fieldName, int level, boolean inList) {
-		append("</").append(fieldName).append('>');
+		append(getNameTokens(fieldName)[1]);
 	}
 
 	@Override
@@ -68,21 +98,35 @@ public class XMLGenerator extends AbstractGenerator {
 	@Override
 	protected void writeBoolean(String fieldName, Boolean value, int level,
 			boolean inList) {
-		append('<').append(fieldName).append('>').append(value).append("</")
-				.append(fieldName).append('>');
+		char[][] tokens = getNameTokens(fieldName);
+		append(tokens[0]).append(value).append(tokens[1]);
 	}
 
 	@Override
 	protected void writeNumber(String fieldName, Number value, int level,
 			boolean inList) {
-		append('<').append(fieldName).append('>').append(value).append("</")
-				.append(fieldName).append('>');
+		char[][] tokens = getNameTokens(fieldName);
+		append(tokens[0]).append(value).append(tokens[1]);
+	}
+
+	/**
+	 * Overridden to write the value straight into the buffer between the tags
+	 * for the field.
+	 */
+	@Override
+	protected void writeTypedValue(String fieldName,
+			ITypeWriter<Object> writer, Object value, int level, boolean inList) {
+		char[][] tokens = getNameTokens(fieldName);
+
+		append(tokens[0]);
+		writer.write(value, getValueOutput());
+		append(tokens[1]);
 	}
 
 	@Override
 	protected void writeString(String fieldName, String value, int level,
 			boolean inList) {
-		append('<').append(fieldName).append('>').append(value).append("</")
-				.append(fieldName).append('>');
+		char[][] tokens = getNameTokens(fieldName);
+		append(tokens[0]).append(value).append(tokens[1]);
 	}
 }
\ No newline at end of file
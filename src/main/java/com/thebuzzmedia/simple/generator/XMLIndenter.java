@@ -21,7 +21,8 @@ package com.thebuzzmedia.simple.generator;
  * @author Riyad Kalla (software@thebuzzmedia.com)
  * @since 1.1
  */
-public class XMLIndenter extends AbstractIndenter {
+public class XMLIndenter extends AbstractIndenter implements
+		ILineIndenter {
 	/**
 	 * Singleton reference to this indenter.
 	 * <p/>
@@ -43,87 +44,47 @@ public class XMLIndenter extends AbstractIndenter {
 		super(mode, indentMultiple);
 	}
 
-	protected char[] getIndentImpl(Type type, Position position, int level) {
-		char[] indent = null;
+	/**
+	 * Implemented to indent every element onto its own line, one level deeper
+	 * than its parent; except the root object, which starts on the first
+	 * line.
+	 */
+	public int getIndentWidth(Type type, Position position, int level)
+			throws IllegalArgumentException {
+		if (type == null)
+			throw new IllegalArgumentException("type cannot be null");
+		if (position == null)
+			throw new IllegalArgumentException("position cannot be null");
+		if (level < 0)
+			throw new IllegalArgumentException("level must be >= 0");
+
+		int width = NO_INDENT;
 
 		switch (type) {
 		case OBJECT_OPEN:
-			switch (position) {
-			case BEFORE:
-				// No indentation for root element, sub objects get it.
-				if (level > 0)
-					indent = createIndent(level, true);
-				else
-					indent = EMPTY_INDENT;
-				break;
-
-			case AFTER:
-				indent = EMPTY_INDENT;
-				break;
-			}
+			// No indentation for root element, sub objects get it.
+			if (position == Position.BEFORE && level > 0)
+				width = level * getIndentMultiple();
 			break;
 
 		case OBJECT_CLOSE:
-			switch (position) {
-			case BEFORE:
-				indent = createIndent(level, true);
-				break;
-
-			case AFTER:
-				indent = EMPTY_INDENT;
-				break;
-			}
-			break;
-
 		case LIST_OPEN:
-			switch (position) {
-			case BEFORE:
-				indent = createIndent(level, true);
-				break;
-
-			case AFTER:
-				indent = EMPTY_INDENT;
-				break;
-			}
-			break;
-
 		case LIST_CLOSE:
-			switch (position) {
-			case BEFORE:
-				indent = createIndent(level, true);
-				break;
-
-			case AFTER:
-				indent = EMPTY_INDENT;
-				break;
-			}
+		case VALUE:
+			if (position == Position.BEFORE)
+				width = level * getIndentMultiple();
 			break;
 
 		case LIST_ITEM:
-			switch (position) {
-			case BEFORE:
-				indent = EMPTY_INDENT;
-				break;
-
-			case AFTER:
-				indent = EMPTY_INDENT;
-				break;
-			}
-			break;
-
-		case VALUE:
-			switch (position) {
-			case BEFORE:
-				indent = createIndent(level, true);
-				break;
-
-			case AFTER:
-				indent = EMPTY_INDENT;
-				break;
-			}
+			// List items are indented by their own OBJECT_OPEN or VALUE.
 			break;
 		}
 
-		return indent;
+		return width;
+	}
+
+	protected char[] getIndentImpl(Type type, Position position, int level) {
+		return (getIndentWidth(type, position, level) == NO_INDENT ? EMPTY_INDENT
+				: createIndent(level, true));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marker annotation used to specify that instances of an {@link Iterable}
+ * class (that isn't a {@link java.util.Collection}) should be written as a
+ * list of the elements they iterate over, pulling one element at a time
+ * during traversal the same way <code>Iterator</code>s and
+ * <code>Stream</code>s are written.
+ * <p/>
+ * Plenty of value types happen to be {@link Iterable} (e.g.
+ * <code>java.nio.file.Path</code> iterates over its name elements), so
+ * un-annotated {@link Iterable}s keep being written as values using their
+ * <code>toString()</code> value.
+ * <p/>
+ * Annotating a class that isn't an {@link Iterable} with this has no effect.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+@Inherited
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Iterated {
+	// no-op
+}
@@ -50,6 +50,11 @@ import com.thebuzzmedia.simple.generator.IGenerator;
  * reflection-based generation would be taken.
  * <p/>
  * A nice side effect of this is better performance during generation.
+ * <p/>
+ * By default only the public fields of an annotated class are written. Set
+ * {@link #includeNonPublic()} to also write its private, protected and
+ * package-private fields. Annotated Java records are written using their
+ * record components (read from their backing fields).
  * 
  * @author Riyad Kalla (software@thebuzzmedia.com)
  * @since 2.0
@@ -57,5 +62,20 @@ import com.thebuzzmedia.simple.generator.IGenerator;
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Recursable {
-	// no-op
+	/**
+	 * Used to specify that the private, protected and package-private fields
+	 * declared by the annotated class and its superclasses should be written
+	 * along with its public fields.
+	 * <p/>
+	 * The fields are made accessible once, when the metadata for the class is
+	 * created, so reading them costs no more than reading a public field. This
+	 * requires the reflection permission to suppress access checks (and on
+	 * Java 9 and later, for the class's package to be open to Simple
+	 * Generator); fields that can't be made accessible are skipped.
+	 * <p/>
+	 * Default value is: <code>false</code>
+	 * 
+	 * @since 2.1
+	 */
+	boolean includeNonPublic() default false;
 }
\ No newline at end of file
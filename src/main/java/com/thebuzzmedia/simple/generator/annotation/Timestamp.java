@@ -0,0 +1,47 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.thebuzzmedia.simple.generator.writer.DateTimeWriter;
+
+/**
+ * Marker annotation used to specify that a field holding a point in time
+ * should be written as an ISO-8601 date-time in UTC (e.g.
+ * <code>2011-06-14T17:05:09.250Z</code>) by the {@link DateTimeWriter}.
+ * <p/>
+ * This is mostly useful on <code>long</code>/{@link Long} fields holding
+ * milliseconds since the epoch, which are otherwise written as plain numbers,
+ * but it can be used on any field type {@link DateTimeWriter} understands
+ * ({@link java.util.Date}, {@link java.util.Calendar} and the
+ * <code>java.time</code> types). To write every {@link java.util.Date} and
+ * <code>java.time</code> value as ISO-8601 instead of annotating each field,
+ * see {@link DateTimeWriter#register(com.thebuzzmedia.simple.generator.ClassMetadataCache)}.
+ * <p/>
+ * Annotating fields of any other type with this has no effect.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Timestamp {
+	// no-op
+}
\ No newline at end of file
@@ -0,0 +1,189 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.digest;
+
+/**
+ * Base implementation of an {@link IContentDigest} that encodes the digested
+ * content as UTF-8 by hand into a small scratch <code>byte[]</code> and hands
+ * the bytes to the underlying hash.
+ * <p/>
+ * Surrogate pairs split across two chunks of content are handled; unpaired
+ * surrogates are encoded as <code>'?'</code> the same way
+ * {@link String#getBytes(String)} does, so the digest always matches a hash
+ * of the content encoded with it.
+ * <p/>
+ * Implementors only need to provide {@link #engineReset()},
+ * {@link #engineUpdate(byte[], int, int)} and {@link #engineDigest()}.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public abstract class AbstractContentDigest implements IContentDigest {
+	private static final int SCRATCH_SIZE = 4096;
+	private static final int MAX_BYTES_PER_CHAR = 4;
+	private static final byte REPLACEMENT = (byte) '?';
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private byte[] scratch;
+	private char highSurrogate;
+	private byte[] digest;
+
+	public AbstractContentDigest() {
+		scratch = new byte[SCRATCH_SIZE];
+	}
+
+	public void reset() {
+		highSurrogate = 0;
+		digest = null;
+
+		engineReset();
+	}
+
+	public void update(char[] chars, int index, int length)
+			throws IllegalArgumentException, IllegalStateException {
+		if (chars == null)
+			throw new IllegalArgumentException("chars cannot be null");
+		if (index < 0 || length < 0 || index + length > chars.length)
+			throw new IllegalArgumentException("index [" + index
+					+ "] and length [" + length
+					+ "] must be >= 0 and (index + length) must be <= chars.length ["
+					+ chars.length + "]");
+		if (digest != null)
+			throw new IllegalStateException(
+					"digest already completed, reset() must be called first");
+
+		byte[] scratch = this.scratch;
+		int limit = scratch.length - MAX_BYTES_PER_CHAR;
+		int count = 0;
+
+		for (int i = index, end = index + length; i < end;) {
+			if (count > limit) {
+				engineUpdate(scratch, 0, count);
+				count = 0;
+			}
+
+			char c = chars[i];
+
+			// Fast path for runs of ASCII, by far the most common content.
+			if (c < 0x80 && highSurrogate == 0) {
+				int max = Math.min(end, i + (scratch.length - count));
+
+				do {
+					scratch[count++] = (byte) c;
+				} while (++i < max && (c = chars[i]) < 0x80);
+
+				continue;
+			}
+
+			if (highSurrogate != 0) {
+				if (Character.isLowSurrogate(c)) {
+					int cp = Character.toCodePoint(highSurrogate, c);
+
+					scratch[count++] = (byte) (0xF0 | (cp >> 18));
+					scratch[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+					scratch[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+					scratch[count++] = (byte) (0x80 | (cp & 0x3F));
+
+					highSurrogate = 0;
+					i++;
+					continue;
+				}
+
+				// Unpaired high surrogate, re-process c on the next pass.
+				scratch[count++] = REPLACEMENT;
+				highSurrogate = 0;
+				continue;
+			}
+
+			if (c < 0x800) {
+				scratch[count++] = (byte) (0xC0 | (c >> 6));
+				scratch[count++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c))
+				highSurrogate = c;
+			else if (Character.isLowSurrogate(c))
+				scratch[count++] = REPLACEMENT;
+			else {
+				scratch[count++] = (byte) (0xE0 | (c >> 12));
+				scratch[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				scratch[count++] = (byte) (0x80 | (c & 0x3F));
+			}
+
+			i++;
+		}
+
+		if (count > 0)
+			engineUpdate(scratch, 0, count);
+	}
+
+	public byte[] digest() {
+		if (digest == null) {
+			// A high surrogate that never got its low surrogate.
+			if (highSurrogate != 0) {
+				scratch[0] = REPLACEMENT;
+				engineUpdate(scratch, 0, 1);
+				highSurrogate = 0;
+			}
+
+			digest = engineDigest();
+		}
+
+		return digest.clone();
+	}
+
+	public String toETag() {
+		if (digest == null)
+			digest();
+
+		char[] tag = new char[digest.length * 2 + 2];
+
+		tag[0] = '"';
+
+		for (int i = 0, j = 1; i < digest.length; i++) {
+			tag[j++] = HEX[(digest[i] >> 4) & 0x0F];
+			tag[j++] = HEX[digest[i] & 0x0F];
+		}
+
+		tag[tag.length - 1] = '"';
+		return new String(tag);
+	}
+
+	/**
+	 * Method used to reset the underlying hash to its initial state.
+	 */
+	protected abstract void engineReset();
+
+	/**
+	 * Method used to feed the next run of UTF-8 encoded content into the
+	 * underlying hash. The given <code>byte[]</code> is re-used once this
+	 * method returns.
+	 * 
+	 * @param bytes
+	 *            The buffer holding the encoded content.
+	 * @param index
+	 *            The index in <code>bytes</code> the content starts at.
+	 * @param length
+	 *            The number of bytes of content.
+	 */
+	protected abstract void engineUpdate(byte[] bytes, int index, int length);
+
+	/**
+	 * Method used to complete the underlying hash of all the bytes fed into
+	 * it since it was last reset.
+	 * 
+	 * @return the digest of the content.
+	 */
+	protected abstract byte[] engineDigest();
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.digest;
+
+/**
+ * Interface used to describe a rolling hash of generated content that a
+ * generator feeds every chunk of output into as it is written (see
+ * {@link com.thebuzzmedia.simple.generator.AbstractGenerator#setContentDigest(IContentDigest)}).
+ * <p/>
+ * Computing the digest while generating avoids a second pass over the
+ * finished document (e.g. to build an HTTP <code>ETag</code> for conditional
+ * <code>GET</code> support) and works the same way when the content is
+ * streamed into an {@link com.thebuzzmedia.simple.generator.sink.ISink} and
+ * never exists in memory all at once.
+ * <p/>
+ * Content is digested as its UTF-8 encoding, so the digest matches a hash of
+ * the bytes actually sent to the client.
+ * <p/>
+ * Like the generators that use them, implementations are not thread-safe.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface IContentDigest {
+	/**
+	 * Used to discard all the content digested so far, leaving this digest
+	 * ready to digest a new document. Generators call this automatically
+	 * before every generation.
+	 */
+	public void reset();
+
+	/**
+	 * Used to digest the next chunk of generated content.
+	 * 
+	 * @param chars
+	 *            The buffer holding the generated content.
+	 * @param index
+	 *            The index in <code>chars</code> the content starts at.
+	 * @param length
+	 *            The number of <code>char</code>s of content to digest.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>chars</code> is <code>null</code> or if
+	 *             <code>index</code> and <code>length</code> are out of
+	 *             bounds.
+	 * @throws IllegalStateException
+	 *             if the digest has already been completed with
+	 *             {@link #digest()} and not {@link #reset()} since.
+	 */
+	public void update(char[] chars, int index, int length)
+			throws IllegalArgumentException, IllegalStateException;
+
+	/**
+	 * Used to complete the digest of all the content passed to
+	 * {@link #update(char[], int, int)} since the last {@link #reset()}.
+	 * <p/>
+	 * The result is kept, so this can be called any number of times until the
+	 * next reset.
+	 * 
+	 * @return the digest of the content.
+	 */
+	public byte[] digest();
+
+	/**
+	 * Used to get the completed digest formatted as a strong HTTP entity tag:
+	 * the lowercase hex encoding of {@link #digest()} in double quotes, ready
+	 * to be used as an <code>ETag</code> header value.
+	 * 
+	 * @return the completed digest as a quoted entity tag.
+	 */
+	public String toETag();
+}
\ No newline at end of file
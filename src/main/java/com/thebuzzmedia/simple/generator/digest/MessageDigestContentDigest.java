@@ -0,0 +1,72 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.digest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Class used to implement an {@link IContentDigest} on top of a JCA
+ * {@link MessageDigest} (e.g. <code>MD5</code> or <code>SHA-256</code>), for
+ * when entity tags have to match a cryptographic hash computed elsewhere.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class MessageDigestContentDigest extends AbstractContentDigest {
+	private MessageDigest messageDigest;
+
+	public MessageDigestContentDigest(String algorithm)
+			throws IllegalArgumentException {
+		if (algorithm == null)
+			throw new IllegalArgumentException("algorithm cannot be null");
+
+		try {
+			messageDigest = MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException("algorithm [" + algorithm
+					+ "] is not supported", e);
+		}
+	}
+
+	public MessageDigestContentDigest(MessageDigest messageDigest)
+			throws IllegalArgumentException {
+		if (messageDigest == null)
+			throw new IllegalArgumentException("messageDigest cannot be null");
+
+		this.messageDigest = messageDigest;
+		messageDigest.reset();
+	}
+
+	public MessageDigest getMessageDigest() {
+		return messageDigest;
+	}
+
+	@Override
+	protected void engineReset() {
+		messageDigest.reset();
+	}
+
+	@Override
+	protected void engineUpdate(byte[] bytes, int index, int length) {
+		messageDigest.update(bytes, index, length);
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		return messageDigest.digest();
+	}
+}
\ No newline at end of file
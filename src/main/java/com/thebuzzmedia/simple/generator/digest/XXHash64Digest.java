@@ -0,0 +1,209 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.digest;
+
+/**
+ * Class used to implement an {@link IContentDigest} using the 64-bit
+ * <a href="https://github.com/Cyan4973/xxHash">xxHash</a> algorithm.
+ * <p/>
+ * xxHash64 is not a cryptographic hash, but it runs at close to memory speed
+ * and is more than strong enough to detect changed content, which makes it
+ * the cheaper choice for entity tags. The digest is the 8-byte big-endian
+ * (canonical) representation of the hash, matching the output of the
+ * reference implementation for the same seed.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class XXHash64Digest extends AbstractContentDigest {
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private static final int STRIPE_SIZE = 32;
+
+	private long seed;
+
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+	private long totalLength;
+
+	private byte[] pending;
+	private int pendingLength;
+
+	public XXHash64Digest() {
+		this(0);
+	}
+
+	public XXHash64Digest(long seed) {
+		this.seed = seed;
+		pending = new byte[STRIPE_SIZE];
+
+		engineReset();
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Used to get the completed hash as a <code>long</code> instead of as the
+	 * bytes returned by {@link #digest()}.
+	 * 
+	 * @return the completed hash of the content.
+	 */
+	public long getValue() {
+		byte[] digest = digest();
+		long value = 0;
+
+		for (int i = 0; i < digest.length; i++)
+			value = (value << 8) | (digest[i] & 0xFF);
+
+		return value;
+	}
+
+	@Override
+	protected void engineReset() {
+		v1 = seed + PRIME1 + PRIME2;
+		v2 = seed + PRIME2;
+		v3 = seed;
+		v4 = seed - PRIME1;
+
+		totalLength = 0;
+		pendingLength = 0;
+	}
+
+	@Override
+	protected void engineUpdate(byte[] bytes, int index, int length) {
+		totalLength += length;
+
+		// Not enough for a full stripe yet, hold on to it.
+		if (pendingLength + length < STRIPE_SIZE) {
+			System.arraycopy(bytes, index, pending, pendingLength, length);
+			pendingLength += length;
+			return;
+		}
+
+		// Complete the stripe left over from the last update first.
+		if (pendingLength > 0) {
+			int count = STRIPE_SIZE - pendingLength;
+
+			System.arraycopy(bytes, index, pending, pendingLength, count);
+			stripe(pending, 0);
+
+			index += count;
+			length -= count;
+			pendingLength = 0;
+		}
+
+		int end = index + length;
+
+		for (int limit = end - STRIPE_SIZE; index <= limit; index += STRIPE_SIZE)
+			stripe(bytes, index);
+
+		if (index < end) {
+			pendingLength = end - index;
+			System.arraycopy(bytes, index, pending, 0, pendingLength);
+		}
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		long hash;
+
+		if (totalLength >= STRIPE_SIZE) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+					+ Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			hash = merge(hash, v1);
+			hash = merge(hash, v2);
+			hash = merge(hash, v3);
+			hash = merge(hash, v4);
+		} else
+			hash = seed + PRIME5;
+
+		hash += totalLength;
+
+		int i = 0;
+
+		for (; i + 8 <= pendingLength; i += 8) {
+			hash ^= round(0, readLong(pending, i));
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+		}
+
+		if (i + 4 <= pendingLength) {
+			hash ^= (readInt(pending, i) & 0xFFFFFFFFL) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+			i += 4;
+		}
+
+		for (; i < pendingLength; i++) {
+			hash ^= (pending[i] & 0xFF) * PRIME5;
+			hash = Long.rotateLeft(hash, 11) * PRIME1;
+		}
+
+		// Avalanche
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+
+		byte[] digest = new byte[8];
+
+		for (i = 7; i >= 0; i--, hash >>>= 8)
+			digest[i] = (byte) hash;
+
+		return digest;
+	}
+
+	private void stripe(byte[] bytes, int index) {
+		v1 = round(v1, readLong(bytes, index));
+		v2 = round(v2, readLong(bytes, index + 8));
+		v3 = round(v3, readLong(bytes, index + 16));
+		v4 = round(v4, readLong(bytes, index + 24));
+	}
+
+	private static long round(long acc, long input) {
+		acc += input * PRIME2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME1;
+	}
+
+	private static long merge(long hash, long v) {
+		hash ^= round(0, v);
+		return hash * PRIME1 + PRIME4;
+	}
+
+	private static long readLong(byte[] bytes, int index) {
+		return (bytes[index] & 0xFFL) | ((bytes[index + 1] & 0xFFL) << 8)
+				| ((bytes[index + 2] & 0xFFL) << 16)
+				| ((bytes[index + 3] & 0xFFL) << 24)
+				| ((bytes[index + 4] & 0xFFL) << 32)
+				| ((bytes[index + 5] & 0xFFL) << 40)
+				| ((bytes[index + 6] & 0xFFL) << 48)
+				| ((bytes[index + 7] & 0xFFL) << 56);
+	}
+
+	private static int readInt(byte[] bytes, int index) {
+		return (bytes[index] & 0xFF) | ((bytes[index + 1] & 0xFF) << 8)
+				| ((bytes[index + 2] & 0xFF) << 16)
+				| ((bytes[index + 3] & 0xFF) << 24);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,288 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.flow;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+import com.thebuzzmedia.simple.generator.AbstractGenerator;
+import com.thebuzzmedia.simple.generator.sink.AbstractByteBufferSink;
+
+/**
+ * Class used to publish the generated representation of an object as a
+ * sequence of UTF-8 encoded {@link ByteBuffer} chunks, generated on demand.
+ * <p/>
+ * The generation is driven entirely by the demand signalled through
+ * {@link ISubscription#request(long)}: each requested chunk advances the
+ * generator (using {@link AbstractGenerator#resume(int)}) just far enough to
+ * fill it, and traversal is suspended as soon as the outstanding demand is
+ * exhausted. A slow consumer therefore never forces the whole document to be
+ * buffered in memory.
+ * <p/>
+ * Chunks are generated on whichever thread calls
+ * {@link ISubscription#request(long)}; calls from multiple threads are
+ * serialized and re-entrant calls from within
+ * {@link ISubscriber#onNext(Object)} are handled without recursion. Every
+ * {@link ByteBuffer} passed to {@link ISubscriber#onNext(Object)} is flipped
+ * and owned by the subscriber.
+ * <p/>
+ * A publisher generates its object once and only accepts a single
+ * subscriber. The generator given to a publisher must not be used for
+ * anything else until the subscription completes, fails or is cancelled.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class GeneratorPublisher {
+	/**
+	 * Default size (in bytes) of the chunks published.
+	 * <p/>
+	 * Default value is: 8192
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	private Object object;
+	private int chunkSize;
+	private AbstractGenerator generator;
+
+	private boolean subscribed;
+
+	public GeneratorPublisher(AbstractGenerator generator, Object object)
+			throws IllegalArgumentException {
+		this(generator, object, DEFAULT_CHUNK_SIZE);
+	}
+
+	public GeneratorPublisher(AbstractGenerator generator, Object object,
+			int chunkSize) throws IllegalArgumentException {
+		if (generator == null)
+			throw new IllegalArgumentException("generator cannot be null");
+		if (chunkSize < 64)
+			throw new IllegalArgumentException("chunkSize [" + chunkSize
+					+ "] must be >= 64");
+
+		this.generator = generator;
+		this.object = object;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Used to subscribe to the generated content of this publisher.
+	 * <p/>
+	 * Nothing is generated until the subscriber requests content through the
+	 * subscription it is given in {@link ISubscriber#onSubscribe(ISubscription)}.
+	 * Any subscriber after the first one is immediately failed with an
+	 * {@link IllegalStateException}.
+	 * 
+	 * @param subscriber
+	 *            The subscriber to receive the generated content.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>subscriber</code> is <code>null</code>.
+	 */
+	public void subscribe(ISubscriber<? super ByteBuffer> subscriber)
+			throws IllegalArgumentException {
+		if (subscriber == null)
+			throw new IllegalArgumentException("subscriber cannot be null");
+
+		boolean first;
+
+		synchronized (this) {
+			first = !subscribed;
+			subscribed = true;
+		}
+
+		if (first)
+			subscriber.onSubscribe(new Subscription(subscriber));
+		else {
+			Subscription rejected = new Subscription(subscriber);
+			rejected.done = true;
+
+			subscriber.onSubscribe(rejected);
+			subscriber.onError(new IllegalStateException(
+					"GeneratorPublisher only supports a single subscriber"));
+		}
+	}
+
+	private class Subscription implements ISubscription {
+		private ISubscriber<? super ByteBuffer> subscriber;
+
+		private long demand;
+		private boolean emitting;
+		private boolean cancelled;
+		private boolean done;
+		private Throwable pendingError;
+
+		private boolean started;
+		private boolean finished;
+		private ChunkSink sink;
+
+		private Subscription(ISubscriber<? super ByteBuffer> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		public void request(long n) {
+			synchronized (this) {
+				if (n <= 0) {
+					if (pendingError == null)
+						pendingError = new IllegalArgumentException("n [" + n
+								+ "] must be > 0");
+				} else {
+					demand += n;
+
+					// Demand is effectively unbounded once it overflows.
+					if (demand < 0)
+						demand = Long.MAX_VALUE;
+				}
+
+				// Whoever is already emitting will pick up the new demand.
+				if (emitting)
+					return;
+
+				emitting = true;
+			}
+
+			emit();
+		}
+
+		public void cancel() {
+			synchronized (this) {
+				cancelled = true;
+
+				if (emitting)
+					return;
+
+				emitting = true;
+			}
+
+			emit();
+		}
+
+		/**
+		 * Used to deliver chunks while there is outstanding demand. Only one
+		 * thread at a time ever runs this (guarded by <code>emitting</code>),
+		 * which is what keeps the non-thread-safe generator safe to use.
+		 */
+		private void emit() {
+			while (true) {
+				boolean terminated = false;
+				Throwable error = null;
+
+				synchronized (this) {
+					if (done) {
+						emitting = false;
+						return;
+					}
+
+					if (cancelled || pendingError != null) {
+						error = pendingError;
+						terminated = done = true;
+						emitting = false;
+					} else if (demand == 0) {
+						emitting = false;
+						return;
+					} else if (demand != Long.MAX_VALUE)
+						demand--;
+				}
+
+				if (terminated) {
+					release();
+
+					if (!cancelled)
+						subscriber.onError(error);
+
+					return;
+				}
+
+				ByteBuffer chunk = null;
+
+				try {
+					chunk = nextChunk();
+				} catch (Throwable t) {
+					finish();
+					subscriber.onError(t);
+					return;
+				}
+
+				if (chunk == null) {
+					finish();
+					subscriber.onComplete();
+					return;
+				}
+
+				subscriber.onNext(chunk);
+			}
+		}
+
+		private ByteBuffer nextChunk() throws Exception {
+			if (!started) {
+				started = true;
+				sink = new ChunkSink(chunkSize);
+				generator.begin(object, sink);
+			}
+
+			// Only advance the generation until a full chunk is available.
+			while (sink.chunks.isEmpty() && !finished)
+				finished = !generator.resume(chunkSize);
+
+			return (sink.chunks.isEmpty() ? null : sink.chunks.removeFirst());
+		}
+
+		private void finish() {
+			synchronized (this) {
+				done = true;
+				emitting = false;
+			}
+
+			release();
+		}
+
+		private void release() {
+			/*
+			 * Abandon the generation if it didn't run to completion, unless
+			 * the generator has already moved on to another one.
+			 */
+			if (started && !finished && generator.isGenerating(sink))
+				generator.reset();
+
+			sink = null;
+			object = null;
+		}
+	}
+
+	/**
+	 * Sink used to collect the encoded content into a queue of full,
+	 * subscriber-owned chunks.
+	 */
+	private static class ChunkSink extends AbstractByteBufferSink {
+		private int chunkSize;
+		private LinkedList<ByteBuffer> chunks;
+
+		private ChunkSink(int chunkSize) {
+			this.chunkSize = chunkSize;
+			chunks = new LinkedList<ByteBuffer>();
+		}
+
+		@Override
+		protected ByteBuffer drain(ByteBuffer buffer, boolean flushing) {
+			if (buffer != null && buffer.position() > 0) {
+				buffer.flip();
+				chunks.add(buffer);
+			}
+
+			return (flushing ? null : ByteBuffer.allocate(chunkSize));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.flow;
+
+/**
+ * Interface used to describe a receiver of the content produced by a
+ * {@link GeneratorPublisher}.
+ * <p/>
+ * This mirrors <code>java.util.concurrent.Flow.Subscriber</code> (and the
+ * Reactive Streams <code>Subscriber</code>) method for method so adapting it to
+ * either is a one-line delegation, while still allowing this library to run on
+ * Java 5.
+ * 
+ * @param <T>
+ *            The type of item received.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface ISubscriber<T> {
+	/**
+	 * Called once, before any other signal, with the subscription used to
+	 * request content.
+	 */
+	public void onSubscribe(ISubscription subscription);
+
+	/**
+	 * Called with the next item, never more times than have been requested.
+	 */
+	public void onNext(T item);
+
+	/**
+	 * Called if the generation fails; no other signals follow.
+	 */
+	public void onError(Throwable throwable);
+
+	/**
+	 * Called once all the content has been delivered; no other signals follow.
+	 */
+	public void onComplete();
+}
\ No newline at end of file
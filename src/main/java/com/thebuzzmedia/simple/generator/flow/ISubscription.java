@@ -0,0 +1,48 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.flow;
+
+/**
+ * Interface used to describe the link between a {@link GeneratorPublisher} and
+ * its {@link ISubscriber}, through which the subscriber signals demand.
+ * <p/>
+ * This mirrors <code>java.util.concurrent.Flow.Subscription</code> (and the
+ * Reactive Streams <code>Subscription</code>) method for method so adapting
+ * it to either is a one-line delegation, while still allowing this library to
+ * run on Java 5.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface ISubscription {
+	/**
+	 * Used to request up to <code>n</code> more chunks of generated content.
+	 * The generation is only advanced as far as needed to satisfy the
+	 * outstanding demand.
+	 * 
+	 * @param n
+	 *            The number of additional chunks requested; a value &lt;= 0
+	 *            results in {@link ISubscriber#onError(Throwable)} being
+	 *            signalled.
+	 */
+	public void request(long n);
+
+	/**
+	 * Used to stop the generation and release its resources. No further
+	 * signals are delivered once this takes effect.
+	 */
+	public void cancel();
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2011 The Buzz Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.sink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Base implementation of an {@link ISink} that encodes the generated content
+ * as UTF-8 directly into a {@link ByteBuffer}.
+ * <p/>
+ * The encoding is done by hand straight into the target buffer (direct or
+ * heap) instead of going through a <code>CharsetEncoder</code>, which would
+ * require an intermediate <code>CharBuffer</code> and <code>byte[]</code> for
+ * every chunk.
+ * <p/>
+ * Surrogate pairs split across two chunks of content are handled; unpaired
+ * surrogates are encoded as <code>'?'</code> the same way
+ * {@link String#getBytes(String)} does.
+ * <p/>
+ * Implementors only need to provide
+ * {@link #drain(ByteBuffer, boolean)}, which decides what happens to a buffer
+ * once it is full (e.g. write it to a channel or keep it and hand out another
+ * one).
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public abstract class AbstractByteBufferSink implements ISink {
+	/**
+	 * The largest number of bytes a single encoded code point can take. A
+	 * buffer is drained as soon as it has less than this many bytes remaining.
+	 */
+	protected static final int MAX_BYTES_PER_CHAR = 4;
+
+	private static final byte REPLACEMENT = (byte) '?';
+
+	private ByteBuffer buffer;
+	private char highSurrogate;
+	private long drainedByteCount;
+
+	public void write(char[] chars, int index, int length) throws IOException {
+		if (chars == null)
+			throw new IllegalArgumentException("chars cannot be null");
+		if (index < 0 || length < 0 || index + length > chars.length)
+			throw new IllegalArgumentException("index [" + index
+					+ "] and length [" + length
+					+ "] must be >= 0 and (index + length) must be <= chars.length ["
+					+ chars.length + "]");
+
+		ByteBuffer buffer = this.buffer;
+
+		for (int i = index, end = index + length; i < end;) {
+			if (buffer == null || buffer.remaining() < MAX_BYTES_PER_CHAR)
+				buffer = drainBuffer(buffer, false);
+
+			char c = chars[i];
+
+			// Fast path for runs of ASCII, by far the most common content.
+			if (c < 0x80 && highSurrogate == 0) {
+				int max = Math.min(end, i + buffer.remaining());
+
+				do {
+					buffer.put((byte) c);
+				} while (++i < max && (c = chars[i]) < 0x80);
+
+				continue;
+			}
+
+			if (highSurrogate != 0) {
+				if (Character.isLowSurrogate(c)) {
+					int cp = Character.toCodePoint(highSurrogate, c);
+
+					buffer.put((byte) (0xF0 | (cp >> 18)));
+					buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+					buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+					buffer.put((byte) (0x80 | (cp & 0x3F)));
+
+					highSurrogate = 0;
+					i++;
+					continue;
+				}
+
+				// Unpaired high surrogate, re-process c on the next pass.
+				buffer.put(REPLACEMENT);
+				highSurrogate = 0;
+				continue;
+			}
+
+			if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c))
+				highSurrogate = c;
+			else if (Character.isLowSurrogate(c))
+				buffer.put(REPLACEMENT);
+			else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+
+			i++;
+		}
+
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Implemented to drain whatever has been encoded into the current buffer
+	 * so far by calling {@link #drain(ByteBuffer, boolean)}.
+	 * <p/>
+	 * The document is complete once it is flushed, so a high surrogate still
+	 * waiting for its low surrogate is unpaired and encoded as
+	 * <code>'?'</code> first.
+	 */
+	public void flush() throws IOException {
+		if (highSurrogate != 0) {
+			if (buffer == null || buffer.remaining() < MAX_BYTES_PER_CHAR)
+				buffer = drainBuffer(buffer, false);
+
+			buffer.put(REPLACEMENT);
+			highSurrogate = 0;
+		}
+
+		if (buffer != null && buffer.position() > 0)
+			buffer = drainBuffer(buffer, true);
+	}
+
+	/**
+	 * Used to get the total number of UTF-8 bytes encoded by this sink so far,
+	 * including the bytes not yet drained from the current buffer.
+	 * 
+	 * @return the total number of UTF-8 bytes encoded by this sink so far.
+	 */
+	public long getByteCount() {
+		return drainedByteCount + (buffer == null ? 0 : buffer.position());
+	}
+
+	/**
+	 * Used to reset the encoding state of this sink, returning the current
+	 * buffer (if any) so the implementor can dispose of it.
+	 * 
+	 * @return the buffer that was being encoded into or <code>null</code> if
+	 *         there was none.
+	 */
+	protected ByteBuffer resetBuffer() {
+		ByteBuffer current = buffer;
+
+		buffer = null;
+		highSurrogate = 0;
+		drainedByteCount = 0;
+
+		return current;
+	}
+
+	private ByteBuffer drainBuffer(ByteBuffer buffer, boolean flushing)
+			throws IOException {
+		if (buffer != null)
+			drainedByteCount += buffer.position();
+
+		buffer = drain(buffer, flushing);
+
+		if (!flushing
+				&& (buffer == null || buffer.remaining() < MAX_BYTES_PER_CHAR))
+			throw new IOException("drain must return a buffer with at least "
+					+ MAX_BYTES_PER_CHAR + " bytes remaining");
+
+		return buffer;
+	}
+
+	/**
+	 * Method used to consume the bytes encoded into the given buffer (from
+	 * <code>0</code> to its current position) and return the buffer that
+	 * encoding should continue in.
+	 * <p/>
+	 * This is called when the current buffer has less than
+	 * {@link #MAX_BYTES_PER_CHAR} bytes remaining, with <code>null</code>
+	 * before the very first write, and when this sink is flushed.
+	 * 
+	 * @param buffer
+	 *            The buffer holding the encoded bytes or <code>null</code> if
+	 *            there is no current buffer.
+	 * @param flushing
+	 *            <code>true</code> if this is being called because the sink is
+	 *            being flushed.
+	 * 
+	 * @return the buffer to continue encoding into, with at least
+	 *         {@link #MAX_BYTES_PER_CHAR} bytes remaining. When
+	 *         <code>flushing</code> is <code>true</code>, <code>null</code>
+	 *         may be returned and this method will be called again with
+	 *         <code>null</code> on the next write.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs while consuming the encoded bytes.
+	 */
+	protected abstract ByteBuffer drain(ByteBuffer buffer, boolean flushing)
+			throws IOException;
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2011 The Buzz Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.sink;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class used to pool fixed-size, off-heap (direct) {@link ByteBuffer}s so the
+ * (comparatively expensive) allocation of direct memory is only paid once per
+ * buffer instead of once per generation.
+ * <p/>
+ * This class is thread-safe; a single pool is typically shared by every
+ * generator in a process.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class ByteBufferPool {
+	/**
+	 * Default capacity (in bytes) of the buffers handed out by a pool.
+	 * <p/>
+	 * Default value is: 65536
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	/**
+	 * Default maximum number of released buffers a pool holds on to for
+	 * re-use.
+	 * <p/>
+	 * Default value is: 64
+	 */
+	public static final int DEFAULT_MAX_POOLED = 64;
+
+	/**
+	 * Shared pool using the default buffer size and pool limit.
+	 */
+	public static final ByteBufferPool INSTANCE = new ByteBufferPool();
+
+	private int bufferSize;
+	private int maxPooled;
+
+	private AtomicInteger pooledCount;
+	private ConcurrentLinkedQueue<ByteBuffer> pool;
+
+	public ByteBufferPool() {
+		this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+	}
+
+	public ByteBufferPool(int bufferSize, int maxPooled)
+			throws IllegalArgumentException {
+		if (bufferSize < AbstractByteBufferSink.MAX_BYTES_PER_CHAR)
+			throw new IllegalArgumentException("bufferSize [" + bufferSize
+					+ "] must be >= " + AbstractByteBufferSink.MAX_BYTES_PER_CHAR);
+		if (maxPooled < 0)
+			throw new IllegalArgumentException("maxPooled [" + maxPooled
+					+ "] must be >= 0");
+
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+
+		pooledCount = new AtomicInteger();
+		pool = new ConcurrentLinkedQueue<ByteBuffer>();
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public int getMaxPooled() {
+		return maxPooled;
+	}
+
+	/**
+	 * Used to get a cleared, direct buffer of {@link #getBufferSize()} bytes;
+	 * either one previously released to this pool or a newly allocated one.
+	 * 
+	 * @return a cleared, direct buffer.
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = pool.poll();
+
+		if (buffer == null)
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+		else {
+			pooledCount.decrementAndGet();
+			buffer.clear();
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Used to return a buffer to this pool for re-use. The caller must not
+	 * touch the buffer again after releasing it.
+	 * <p/>
+	 * Buffers that were not handed out by a pool of this size are ignored, as
+	 * are buffers released once the pool already holds
+	 * {@link #getMaxPooled()} buffers; those are left to the garbage
+	 * collector.
+	 * 
+	 * @param buffer
+	 *            The buffer to return to the pool.
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()
+				|| buffer.capacity() != bufferSize)
+			return;
+
+		if (pooledCount.incrementAndGet() <= maxPooled)
+			pool.offer(buffer);
+		else
+			pooledCount.decrementAndGet();
+	}
+}
\ No newline at end of file
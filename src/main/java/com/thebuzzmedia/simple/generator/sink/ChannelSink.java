@@ -0,0 +1,104 @@
+/**
+ * Copyright 2011 The Buzz Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.sink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Class used to implement an {@link ISink} that encodes generated content as
+ * UTF-8 into a large, pooled, direct {@link ByteBuffer} and writes it to a
+ * {@link WritableByteChannel} (typically a {@link FileChannel}) every time the
+ * buffer fills up.
+ * <p/>
+ * Combined with {@link com.thebuzzmedia.simple.generator.IGenerator#generate(Object, ISink)}
+ * the memory used to write a document out is constant (one generator
+ * <code>char[]</code> chunk plus one direct buffer) no matter how large the
+ * document is, and the content is never copied onto the heap as bytes.
+ * <p/>
+ * The buffer is taken from the pool on the first write and returned to it
+ * every time the sink is flushed; a sink that is abandoned before it is
+ * flushed (e.g. because the generation failed) must be {@link #release()}d
+ * instead. This sink never closes the channel it writes to.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class ChannelSink extends AbstractByteBufferSink {
+	/**
+	 * Shared pool of 1 MB direct buffers used by channel sinks that are not
+	 * given a pool explicitly.
+	 */
+	public static final ByteBufferPool DEFAULT_POOL = new ByteBufferPool(
+			1024 * 1024, 8);
+
+	private ByteBufferPool pool;
+	private WritableByteChannel channel;
+
+	public ChannelSink(WritableByteChannel channel)
+			throws IllegalArgumentException {
+		this(channel, DEFAULT_POOL);
+	}
+
+	public ChannelSink(WritableByteChannel channel, ByteBufferPool pool)
+			throws IllegalArgumentException {
+		if (channel == null)
+			throw new IllegalArgumentException("channel cannot be null");
+		if (pool == null)
+			throw new IllegalArgumentException("pool cannot be null");
+
+		this.channel = channel;
+		this.pool = pool;
+	}
+
+	public WritableByteChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Used to return the buffer held by this sink (if any) to its pool
+	 * without writing what is left in it to the channel, leaving the sink
+	 * empty and ready to be used for another generation.
+	 * <p/>
+	 * This is a no-op once the sink has been flushed, so it can always be
+	 * called from a <code>finally</code> block.
+	 */
+	public void release() {
+		pool.release(resetBuffer());
+	}
+
+	@Override
+	protected ByteBuffer drain(ByteBuffer buffer, boolean flushing)
+			throws IOException {
+		if (buffer == null)
+			return (flushing ? null : pool.acquire());
+
+		buffer.flip();
+
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+
+		if (flushing) {
+			pool.release(buffer);
+			return null;
+		}
+
+		buffer.clear();
+		return buffer;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.sink;
+
+import java.io.IOException;
+
+/**
+ * Class used to implement an {@link ISink} that discards the generated
+ * content, only counting how many <code>char</code>s it was made of and how
+ * many bytes it takes up encoded as UTF-8.
+ * <p/>
+ * Generating into this sink runs exactly the same traversal, formatting and
+ * escaping as a real generation, so the counts are exact, while the memory
+ * used stays at the generator's small, re-used sink buffer no matter how large
+ * the document is. This makes it possible to learn the
+ * <code>Content-Length</code> of a document (or decide between sending it
+ * inline and streaming it) before committing any memory to it.
+ * <p/>
+ * Bytes are counted the same way {@link AbstractByteBufferSink} encodes them:
+ * a surrogate pair is 4 bytes and an unpaired surrogate is replaced with a
+ * single <code>'?'</code>. Counts accumulate over every generation written to
+ * the sink until {@link #reset()} is called.
+ * <p/>
+ * Like the generators that use it, this class is not thread-safe.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class CountingSink implements ISink {
+	private long charCount;
+	private long byteCount;
+	private char highSurrogate;
+
+	public void write(char[] chars, int index, int length) throws IOException {
+		if (chars == null)
+			throw new IllegalArgumentException("chars cannot be null");
+		if (index < 0 || length < 0 || index + length > chars.length)
+			throw new IllegalArgumentException("index [" + index
+					+ "] and length [" + length
+					+ "] must be >= 0 and (index + length) must be <= chars.length ["
+					+ chars.length + "]");
+
+		long bytes = 0;
+		char highSurrogate = this.highSurrogate;
+
+		for (int i = index, end = index + length; i < end; i++) {
+			char c = chars[i];
+
+			if (highSurrogate != 0) {
+				highSurrogate = 0;
+
+				if (Character.isLowSurrogate(c)) {
+					bytes += 4;
+					continue;
+				}
+
+				// Unpaired high surrogate, written as '?'.
+				bytes++;
+			}
+
+			if (c < 0x80)
+				bytes++;
+			else if (c < 0x800)
+				bytes += 2;
+			else if (Character.isHighSurrogate(c))
+				highSurrogate = c;
+			else if (Character.isLowSurrogate(c))
+				bytes++;
+			else
+				bytes += 3;
+		}
+
+		charCount += length;
+		byteCount += bytes;
+		this.highSurrogate = highSurrogate;
+	}
+
+	/**
+	 * Implemented to count a high surrogate still waiting for its low
+	 * surrogate as the single <code>'?'</code> byte
+	 * {@link AbstractByteBufferSink} encodes it as when the document ends;
+	 * there is nothing buffered to push through.
+	 */
+	public void flush() throws IOException {
+		if (highSurrogate != 0) {
+			byteCount++;
+			highSurrogate = 0;
+		}
+	}
+
+	/**
+	 * Used to get the total number of <code>char</code>s written to this sink
+	 * since it was created or last reset.
+	 * 
+	 * @return the total number of <code>char</code>s written to this sink.
+	 */
+	public long getCharCount() {
+		return charCount;
+	}
+
+	/**
+	 * Used to get the total number of bytes the content written to this sink
+	 * since it was created or last reset takes up encoded as UTF-8.
+	 * 
+	 * @return the total number of UTF-8 bytes written to this sink.
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Used to reset the counts of this sink to <code>0</code> so it can be
+	 * used to measure another generation.
+	 */
+	public void reset() {
+		charCount = 0;
+		byteCount = 0;
+		highSurrogate = 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.sink;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Class used to pool {@link Deflater}s so the native memory each one allocates
+ * (several hundred KB of zlib state) is only allocated once per deflater
+ * instead of once per compressed document.
+ * <p/>
+ * Every deflater handed out by a pool compresses at the pool's
+ * {@link #getLevel()} and produces raw deflate data (no zlib header or
+ * checksum); {@link DeflaterSink} adds the gzip wrapper itself when needed.
+ * <p/>
+ * This class is thread-safe; a single pool is typically shared by every
+ * generator in a process.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class DeflaterPool {
+	/**
+	 * Default maximum number of released deflaters a pool holds on to for
+	 * re-use.
+	 * <p/>
+	 * Default value is: 16
+	 */
+	public static final int DEFAULT_MAX_POOLED = 16;
+
+	/**
+	 * Shared pool using the default compression level and pool limit.
+	 */
+	public static final DeflaterPool INSTANCE = new DeflaterPool();
+
+	private int level;
+	private int maxPooled;
+
+	private AtomicInteger pooledCount;
+	private ConcurrentLinkedQueue<Deflater> pool;
+
+	public DeflaterPool() {
+		this(Deflater.DEFAULT_COMPRESSION, DEFAULT_MAX_POOLED);
+	}
+
+	public DeflaterPool(int level, int maxPooled)
+			throws IllegalArgumentException {
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION)
+			throw new IllegalArgumentException("level [" + level
+					+ "] must be between 0 and 9 or be "
+					+ Deflater.DEFAULT_COMPRESSION
+					+ " (Deflater.DEFAULT_COMPRESSION)");
+		if (maxPooled < 0)
+			throw new IllegalArgumentException("maxPooled [" + maxPooled
+					+ "] must be >= 0");
+
+		this.level = level;
+		this.maxPooled = maxPooled;
+
+		pooledCount = new AtomicInteger();
+		pool = new ConcurrentLinkedQueue<Deflater>();
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public int getMaxPooled() {
+		return maxPooled;
+	}
+
+	/**
+	 * Used to get a reset, raw (<code>nowrap</code>) deflater; either one
+	 * previously released to this pool or a newly created one.
+	 * 
+	 * @return a reset, raw deflater.
+	 */
+	public Deflater acquire() {
+		Deflater deflater = pool.poll();
+
+		if (deflater == null)
+			deflater = new Deflater(level, true);
+		else
+			pooledCount.decrementAndGet();
+
+		return deflater;
+	}
+
+	/**
+	 * Used to return a deflater to this pool for re-use. The caller must not
+	 * touch the deflater again after releasing it.
+	 * <p/>
+	 * The deflater is reset before being pooled. Deflaters released once the
+	 * pool already holds {@link #getMaxPooled()} deflaters are ended instead,
+	 * freeing their native memory right away rather than whenever they are
+	 * finalized.
+	 * 
+	 * @param deflater
+	 *            The deflater to return to the pool.
+	 */
+	public void release(Deflater deflater) {
+		if (deflater == null)
+			return;
+
+		if (pooledCount.incrementAndGet() <= maxPooled) {
+			deflater.reset();
+			pool.offer(deflater);
+		} else {
+			pooledCount.decrementAndGet();
+			deflater.end();
+		}
+	}
+}
\ No newline at end of file
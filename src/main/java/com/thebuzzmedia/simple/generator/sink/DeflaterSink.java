@@ -0,0 +1,241 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.sink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Class used to implement an {@link ISink} that compresses generated content
+ * as it is generated, writing gzip or raw deflate data to an
+ * {@link OutputStream}.
+ * <p/>
+ * Content is encoded as UTF-8 into a fixed-size chunk which, every time it
+ * fills up, is fed straight into a {@link Deflater} taken from a
+ * {@link DeflaterPool}; the compressed bytes are written to the stream
+ * through a second fixed-size chunk. The generated content never exists in
+ * memory as a whole, neither as characters nor as uncompressed bytes.
+ * <p/>
+ * Each generation (everything written between two calls to {@link #flush()})
+ * produces one complete, self-contained compressed stream: a gzip member for
+ * {@link Format#GZIP} or a finished deflate stream for
+ * {@link Format#DEFLATE}. A generation that writes nothing still produces
+ * one, holding a single empty deflate block. The deflater is only held while a generation is in
+ * progress and is returned to its pool as soon as the stream is finished. If
+ * a generation fails part way through, call {@link #reset()} to discard the
+ * partial stream and release its deflater.
+ * <p/>
+ * This sink never closes the stream it writes to. Like the generators that use
+ * it, this class is not thread-safe.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class DeflaterSink extends AbstractByteBufferSink {
+	/**
+	 * The compressed data formats this sink can write.
+	 */
+	public static enum Format {
+		/**
+		 * The gzip file format (RFC 1952); what HTTP calls the
+		 * <code>gzip</code> content encoding.
+		 */
+		GZIP,
+		/**
+		 * Raw deflate data (RFC 1951) with no header or checksum.
+		 */
+		DEFLATE;
+	}
+
+	/**
+	 * Default size (in bytes) of the uncompressed and compressed chunks used
+	 * by a sink.
+	 * <p/>
+	 * Default value is: 8192
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	/**
+	 * Fixed gzip header: magic number, the deflate compression method, no
+	 * flags, no modification time, no extra flags and an unknown OS.
+	 */
+	private static final byte[] GZIP_HEADER = new byte[] { 0x1f, (byte) 0x8b,
+			Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private Format format;
+	private DeflaterPool pool;
+	private OutputStream out;
+
+	private ByteBuffer input;
+	private byte[] output;
+
+	private CRC32 crc;
+	private Deflater deflater;
+
+	public DeflaterSink(OutputStream out) throws IllegalArgumentException {
+		this(out, Format.GZIP);
+	}
+
+	public DeflaterSink(OutputStream out, Format format)
+			throws IllegalArgumentException {
+		this(out, format, DeflaterPool.INSTANCE, DEFAULT_CHUNK_SIZE);
+	}
+
+	public DeflaterSink(OutputStream out, Format format, DeflaterPool pool,
+			int chunkSize) throws IllegalArgumentException {
+		if (out == null)
+			throw new IllegalArgumentException("out cannot be null");
+		if (format == null)
+			throw new IllegalArgumentException("format cannot be null");
+		if (pool == null)
+			throw new IllegalArgumentException("pool cannot be null");
+		if (chunkSize < MAX_BYTES_PER_CHAR)
+			throw new IllegalArgumentException("chunkSize [" + chunkSize
+					+ "] must be >= " + MAX_BYTES_PER_CHAR);
+
+		this.out = out;
+		this.format = format;
+		this.pool = pool;
+
+		input = ByteBuffer.allocate(chunkSize);
+		output = new byte[chunkSize];
+
+		if (format == Format.GZIP)
+			crc = new CRC32();
+	}
+
+	public OutputStream getOutputStream() {
+		return out;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * Overridden to compress whatever is left of the current chunk and finish
+	 * the compressed stream, writing its remaining bytes (and the gzip
+	 * trailer) to the stream before flushing it.
+	 * <p/>
+	 * If nothing was written since the last flush, an empty compressed stream
+	 * (the gzip header and trailer around an empty deflate block) is written
+	 * so the output is still valid.
+	 */
+	@Override
+	public void flush() throws IOException {
+		super.flush();
+
+		if (deflater == null)
+			begin();
+
+		deflater.finish();
+
+		while (!deflater.finished())
+			deflate();
+
+		if (crc != null) {
+			writeInt((int) crc.getValue());
+			writeInt((int) deflater.getBytesRead());
+			crc.reset();
+		}
+
+		releaseDeflater();
+		out.flush();
+	}
+
+	/**
+	 * Used to abandon the compressed stream currently being written (if any),
+	 * returning its deflater to the pool. The next write to this sink starts
+	 * a new compressed stream.
+	 * <p/>
+	 * Anything of the abandoned stream already written to the output stream
+	 * is not undone.
+	 */
+	public void reset() {
+		resetBuffer();
+		input.clear();
+
+		if (crc != null)
+			crc.reset();
+
+		releaseDeflater();
+	}
+
+	@Override
+	protected ByteBuffer drain(ByteBuffer buffer, boolean flushing)
+			throws IOException {
+		if (buffer == null)
+			return input;
+
+		int length = buffer.position();
+
+		if (length > 0) {
+			if (deflater == null)
+				begin();
+
+			byte[] array = buffer.array();
+
+			if (crc != null)
+				crc.update(array, 0, length);
+
+			deflater.setInput(array, 0, length);
+
+			while (!deflater.needsInput())
+				deflate();
+		}
+
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Used to start a new compressed stream, acquiring a deflater for it and
+	 * writing the gzip header.
+	 */
+	private void begin() throws IOException {
+		deflater = pool.acquire();
+
+		if (crc != null)
+			out.write(GZIP_HEADER);
+	}
+
+	private void deflate() throws IOException {
+		int length = deflater.deflate(output, 0, output.length);
+
+		if (length > 0)
+			out.write(output, 0, length);
+	}
+
+	private void writeInt(int value) throws IOException {
+		// gzip stores its trailer values in little-endian order.
+		output[0] = (byte) value;
+		output[1] = (byte) (value >> 8);
+		output[2] = (byte) (value >> 16);
+		output[3] = (byte) (value >> 24);
+
+		out.write(output, 0, 4);
+	}
+
+	private void releaseDeflater() {
+		if (deflater != null) {
+			pool.release(deflater);
+			deflater = null;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2011 The Buzz Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.sink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class used to implement an {@link ISink} that encodes generated content as
+ * UTF-8 directly into off-heap (direct) {@link ByteBuffer}s taken from a
+ * {@link ByteBufferPool}.
+ * <p/>
+ * The result of a generation is available as a sequence of flipped, direct
+ * buffers ({@link #getBuffers()}) that can be handed straight to
+ * <code>SocketChannel.write</code> or <code>FileChannel.write</code> (see
+ * {@link #writeTo(WritableByteChannel)}) without the JVM first copying them
+ * from the heap into a temporary direct buffer.
+ * <p/>
+ * Buffers are held by this sink until {@link #release()} is called, at which
+ * point they go back to the pool; forgetting to call it just means the
+ * buffers are garbage collected instead of re-used. After releasing, the sink
+ * is empty and can be used for another generation.
+ * <p/>
+ * Like the generators that use it, this class is not thread-safe.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class DirectByteBufferSink extends AbstractByteBufferSink {
+	private static final ByteBuffer[] EMPTY_BUFFERS = new ByteBuffer[0];
+
+	private ByteBufferPool pool;
+	private List<ByteBuffer> buffers;
+
+	public DirectByteBufferSink() {
+		this(ByteBufferPool.INSTANCE);
+	}
+
+	public DirectByteBufferSink(ByteBufferPool pool)
+			throws IllegalArgumentException {
+		if (pool == null)
+			throw new IllegalArgumentException("pool cannot be null");
+
+		this.pool = pool;
+		buffers = new ArrayList<ByteBuffer>(4);
+	}
+
+	/**
+	 * Used to get the flipped (ready to be read or written to a channel)
+	 * buffers holding the generated content written to this sink so far, in
+	 * order.
+	 * <p/>
+	 * Content still sitting in the current buffer is only included once the
+	 * sink has been flushed, which generators do automatically at the end of
+	 * every generation.
+	 * <p/>
+	 * The returned buffers are owned by this sink and are only valid until
+	 * {@link #release()} is called.
+	 * 
+	 * @return the buffers holding the generated content.
+	 */
+	public ByteBuffer[] getBuffers() {
+		return (buffers.isEmpty() ? EMPTY_BUFFERS : buffers
+				.toArray(new ByteBuffer[buffers.size()]));
+	}
+
+	/**
+	 * Used to write all the generated content held by this sink to the given
+	 * channel. A {@link GatheringByteChannel} (e.g. a
+	 * <code>SocketChannel</code> or <code>FileChannel</code>) is written to
+	 * with gathering writes.
+	 * <p/>
+	 * This consumes the buffers (their positions are advanced to their
+	 * limits), but does not release them.
+	 * 
+	 * @param channel
+	 *            The channel to write the content to.
+	 * 
+	 * @return the number of bytes written.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>channel</code> is <code>null</code>.
+	 * @throws IOException
+	 *             if an error occurs while writing to the channel.
+	 */
+	public long writeTo(WritableByteChannel channel)
+			throws IllegalArgumentException, IOException {
+		if (channel == null)
+			throw new IllegalArgumentException("channel cannot be null");
+
+		long written = 0;
+
+		if (channel instanceof GatheringByteChannel) {
+			ByteBuffer[] array = getBuffers();
+			GatheringByteChannel gather = (GatheringByteChannel) channel;
+
+			for (int i = 0; i < array.length;) {
+				written += gather.write(array, i, array.length - i);
+
+				// Skip past any buffers that were fully written.
+				while (i < array.length && !array[i].hasRemaining())
+					i++;
+			}
+		} else {
+			for (int i = 0, size = buffers.size(); i < size; i++) {
+				ByteBuffer buffer = buffers.get(i);
+
+				while (buffer.hasRemaining())
+					written += channel.write(buffer);
+			}
+		}
+
+		return written;
+	}
+
+	/**
+	 * Used to return every buffer held by this sink to its pool, leaving the
+	 * sink empty and ready to be used for another generation.
+	 * <p/>
+	 * Any buffers previously returned by {@link #getBuffers()} must not be
+	 * touched after calling this.
+	 */
+	public void release() {
+		pool.release(resetBuffer());
+
+		for (int i = 0, size = buffers.size(); i < size; i++)
+			pool.release(buffers.get(i));
+
+		buffers.clear();
+	}
+
+	@Override
+	protected ByteBuffer drain(ByteBuffer buffer, boolean flushing) {
+		if (buffer != null && buffer.position() > 0) {
+			buffer.flip();
+			buffers.add(buffer);
+		} else if (buffer != null)
+			pool.release(buffer);
+
+		// When flushing, don't take another buffer until it is needed.
+		return (flushing ? null : pool.acquire());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2011 The Buzz Media, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.sink;
+
+import java.io.IOException;
+
+import com.thebuzzmedia.simple.generator.IGenerator;
+
+/**
+ * Interface used to describe a destination that generated content can be
+ * streamed into, chunk by chunk, as it is generated.
+ * <p/>
+ * When generating with {@link IGenerator#generate(Object, ISink)}, the
+ * generator only ever holds a small, fixed-size <code>char[]</code> buffer of
+ * output; every time that buffer fills up its contents are handed to
+ * {@link #write(char[], int, int)} and the buffer is re-used. This keeps the
+ * memory used by a generation constant regardless of how large the generated
+ * document is.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface ISink {
+	/**
+	 * Used to write the next chunk of generated content to this sink.
+	 * <p/>
+	 * The given <code>char[]</code> is re-used by the generator once this
+	 * method returns, so implementations must not hold a reference to it.
+	 * 
+	 * @param chars
+	 *            The buffer holding the generated content.
+	 * @param index
+	 *            The index in <code>chars</code> the content starts at.
+	 * @param length
+	 *            The number of <code>char</code>s of content to write.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs while writing the content.
+	 */
+	public void write(char[] chars, int index, int length) throws IOException;
+
+	/**
+	 * Used to indicate that the generation of a document has completed and
+	 * any content buffered by this sink should be pushed through to its
+	 * destination.
+	 * <p/>
+	 * This does not release or close the sink; the same sink can receive the
+	 * output of any number of subsequent generations.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs while flushing the content.
+	 */
+	public void flush() throws IOException;
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.writer;
+
+/**
+ * Class used to write {@link CharSequence}s (e.g. <code>StringBuilder</code>s
+ * or <code>CharBuffer</code>s) as text, copying their characters directly
+ * instead of calling <code>toString()</code> on them.
+ * <p/>
+ * <code>String</code>s are written directly by the generator (so the
+ * {@link com.thebuzzmedia.simple.generator.annotation.Encode} annotation still
+ * applies to them) and never reach this writer unless it is registered for
+ * <code>String</code> explicitly.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class CharSequenceWriter implements ITypeWriter<CharSequence> {
+	/**
+	 * Singleton reference to this writer.
+	 */
+	public static final ITypeWriter<CharSequence> INSTANCE = new CharSequenceWriter();
+
+	public boolean isText() {
+		return true;
+	}
+
+	public void write(CharSequence value, IValueOutput output) {
+		if (value instanceof String)
+			output.append((String) value);
+		else {
+			for (int i = 0, length = value.length(); i < length; i++)
+				output.append(value.charAt(i));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.writer;
+
+/**
+ * Class used to write {@link Character}s (and <code>char</code> fields) as a
+ * single character of text without creating a <code>String</code> for it.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class CharacterWriter implements ITypeWriter<Character> {
+	/**
+	 * Singleton reference to this writer.
+	 */
+	public static final ITypeWriter<Character> INSTANCE = new CharacterWriter();
+
+	public boolean isText() {
+		return true;
+	}
+
+	public void write(Character value, IValueOutput output) {
+		output.append(value.charValue());
+	}
+}
\ No newline at end of file
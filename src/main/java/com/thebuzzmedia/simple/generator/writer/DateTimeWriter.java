@@ -0,0 +1,327 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.writer;
+
+import java.lang.reflect.Method;
+import java.util.Calendar;
+import java.util.Date;
+
+import com.thebuzzmedia.simple.generator.ClassMetadataCache;
+
+/**
+ * Class used to write points in time as ISO-8601 date-times in UTC with
+ * millisecond precision, e.g. <code>2011-06-14T17:05:09.250Z</code>.
+ * <p/>
+ * Supported values are {@link Number}s (milliseconds since the epoch),
+ * {@link Date}s, {@link Calendar}s and the <code>java.time</code> types:
+ * <code>Instant</code>, <code>ZonedDateTime</code> and
+ * <code>OffsetDateTime</code> are written as the instant they represent,
+ * while the local and offset-time types (e.g. <code>LocalDate</code>), which
+ * aren't points in time, are written using their own ISO-8601
+ * <code>toString()</code> form. Simple Generator still runs on Java 5, so the
+ * <code>java.time</code> types are looked up reflectively when this class is
+ * loaded.
+ * <p/>
+ * The date-time is rendered straight into the generator's buffer. The
+ * <code>yyyy-MM-ddTHH:mm:ss</code> prefix of the last second written (and the
+ * <code>yyyy-MM-ddT</code> prefix of the last day) is cached, so consecutive
+ * timestamps within the same second only append the cached prefix and their
+ * milliseconds; rendering is only done, and a small prefix only allocated,
+ * when the second changes.
+ * <p/>
+ * Fields can be written with this writer individually with the
+ * {@link com.thebuzzmedia.simple.generator.annotation.Timestamp} annotation,
+ * or every date-time value can be with {@link #register(ClassMetadataCache)}.
+ * <p/>
+ * This class is thread-safe; the cached prefixes are immutable and swapped
+ * atomically.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class DateTimeWriter implements ITypeWriter<Object> {
+	/**
+	 * Singleton reference to this writer.
+	 */
+	public static final DateTimeWriter INSTANCE = new DateTimeWriter();
+
+	private static final long MILLIS_PER_SECOND = 1000;
+	private static final long SECONDS_PER_DAY = 86400;
+
+	private static final Class<?> INSTANT_CLASS;
+	private static final Method INSTANT_GET_EPOCH_SECOND;
+	private static final Method INSTANT_GET_NANO;
+
+	private static final Class<?> ZONED_CLASS;
+	private static final Method ZONED_TO_INSTANT;
+
+	private static final Class<?> OFFSET_DATE_TIME_CLASS;
+	private static final Method OFFSET_DATE_TIME_TO_INSTANT;
+
+	private static final Class<?>[] LOCAL_CLASSES;
+
+	static {
+		Class<?> instantClass = null;
+		Method getEpochSecond = null;
+		Method getNano = null;
+
+		Class<?> zonedClass = null;
+		Method zonedToInstant = null;
+
+		Class<?> offsetDateTimeClass = null;
+		Method offsetDateTimeToInstant = null;
+
+		Class<?>[] localClasses = new Class<?>[0];
+
+		try {
+			instantClass = Class.forName("java.time.Instant");
+			getEpochSecond = instantClass.getMethod("getEpochSecond");
+			getNano = instantClass.getMethod("getNano");
+
+			zonedClass = Class.forName("java.time.chrono.ChronoZonedDateTime");
+			zonedToInstant = zonedClass.getMethod("toInstant");
+
+			offsetDateTimeClass = Class.forName("java.time.OffsetDateTime");
+			offsetDateTimeToInstant = offsetDateTimeClass
+					.getMethod("toInstant");
+
+			localClasses = new Class<?>[] {
+					Class.forName("java.time.LocalDate"),
+					Class.forName("java.time.LocalDateTime"),
+					Class.forName("java.time.LocalTime"),
+					Class.forName("java.time.OffsetTime") };
+		} catch (Exception e) {
+			// Pre-Java 8 runtime, java.time values can't show up.
+			instantClass = null;
+			zonedClass = null;
+			offsetDateTimeClass = null;
+		}
+
+		INSTANT_CLASS = instantClass;
+		INSTANT_GET_EPOCH_SECOND = getEpochSecond;
+		INSTANT_GET_NANO = getNano;
+
+		ZONED_CLASS = zonedClass;
+		ZONED_TO_INSTANT = zonedToInstant;
+
+		OFFSET_DATE_TIME_CLASS = offsetDateTimeClass;
+		OFFSET_DATE_TIME_TO_INSTANT = offsetDateTimeToInstant;
+
+		LOCAL_CLASSES = localClasses;
+	}
+
+	private volatile Prefix dayPrefix;
+	private volatile Prefix secondPrefix;
+
+	/**
+	 * Used to register this writer with the given cache for {@link Date}s,
+	 * {@link Calendar}s and (when running on Java 8 or later) the
+	 * <code>java.time</code> types, so every value of those types is written as
+	 * ISO-8601 instead of just the fields annotated with
+	 * {@link com.thebuzzmedia.simple.generator.annotation.Timestamp}.
+	 * 
+	 * @param cache
+	 *            The cache to register the writer with.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>cache</code> is <code>null</code>.
+	 */
+	public static void register(ClassMetadataCache cache)
+			throws IllegalArgumentException {
+		if (cache == null)
+			throw new IllegalArgumentException("cache cannot be null");
+
+		cache.setTypeWriter(Date.class, INSTANCE);
+		cache.setTypeWriter(Calendar.class, INSTANCE);
+
+		if (INSTANT_CLASS != null) {
+			cache.setTypeWriter(INSTANT_CLASS, INSTANCE);
+			cache.setTypeWriter(ZONED_CLASS, INSTANCE);
+			cache.setTypeWriter(OFFSET_DATE_TIME_CLASS, INSTANCE);
+
+			for (Class<?> type : LOCAL_CLASSES)
+				cache.setTypeWriter(type, INSTANCE);
+		}
+	}
+
+	public boolean isText() {
+		return true;
+	}
+
+	public void write(Object value, IValueOutput output) {
+		if (value instanceof Number)
+			writeMillis(((Number) value).longValue(), output);
+		else if (value instanceof Date)
+			writeMillis(((Date) value).getTime(), output);
+		else if (value instanceof Calendar)
+			writeMillis(((Calendar) value).getTimeInMillis(), output);
+		else if (INSTANT_CLASS == null)
+			output.append(value.toString());
+		else {
+			try {
+				if (ZONED_CLASS.isInstance(value))
+					value = ZONED_TO_INSTANT.invoke(value);
+				else if (OFFSET_DATE_TIME_CLASS.isInstance(value))
+					value = OFFSET_DATE_TIME_TO_INSTANT.invoke(value);
+
+				if (INSTANT_CLASS.isInstance(value)) {
+					long second = ((Long) INSTANT_GET_EPOCH_SECOND.invoke(value))
+							.longValue();
+					int nano = ((Integer) INSTANT_GET_NANO.invoke(value))
+							.intValue();
+
+					writeMillis(second * MILLIS_PER_SECOND + nano / 1000000,
+							output);
+				} else
+					output.append(value.toString());
+			} catch (Exception e) {
+				throw new RuntimeException("Unable to write the java.time value ["
+						+ value + "]", e);
+			}
+		}
+	}
+
+	/**
+	 * Used to write the given milliseconds since the epoch as an ISO-8601
+	 * date-time in UTC.
+	 * 
+	 * @param millis
+	 *            The milliseconds since the epoch.
+	 * @param output
+	 *            The output to write the date-time to.
+	 */
+	public void writeMillis(long millis, IValueOutput output) {
+		long second = floorDiv(millis, MILLIS_PER_SECOND);
+		int milli = (int) (millis - second * MILLIS_PER_SECOND);
+
+		Prefix prefix = secondPrefix;
+
+		if (prefix == null || prefix.key != second)
+			secondPrefix = prefix = renderSecond(second);
+
+		output.append(prefix.chars).append('.')
+				.append((char) ('0' + milli / 100))
+				.append((char) ('0' + (milli / 10) % 10))
+				.append((char) ('0' + milli % 10)).append('Z');
+	}
+
+	/**
+	 * Used to render the <code>yyyy-MM-ddTHH:mm:ss</code> prefix of the given
+	 * second, re-using the cached prefix of its day if possible.
+	 */
+	private Prefix renderSecond(long second) {
+		long day = floorDiv(second, SECONDS_PER_DAY);
+		int secondOfDay = (int) (second - day * SECONDS_PER_DAY);
+
+		Prefix prefix = dayPrefix;
+
+		if (prefix == null || prefix.key != day)
+			dayPrefix = prefix = renderDay(day);
+
+		int length = prefix.chars.length;
+		char[] chars = new char[length + 8];
+		System.arraycopy(prefix.chars, 0, chars, 0, length);
+
+		put2(chars, length, secondOfDay / 3600);
+		chars[length + 2] = ':';
+		put2(chars, length + 3, (secondOfDay / 60) % 60);
+		chars[length + 5] = ':';
+		put2(chars, length + 6, secondOfDay % 60);
+
+		return new Prefix(second, chars);
+	}
+
+	/**
+	 * Used to render the <code>yyyy-MM-ddT</code> prefix of the given day
+	 * since the epoch (proleptic Gregorian calendar).
+	 */
+	private static Prefix renderDay(long day) {
+		// Civil-from-days, shifted so years start on March 1st.
+		long z = day + 719468;
+		long era = floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra
+				/ 146096) / 365;
+		long dayOfYear = dayOfEra
+				- (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+
+		int dayOfMonth = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		StringBuilder builder = new StringBuilder(16);
+
+		// ISO-8601 requires a sign on years outside of 0000-9999.
+		if (year > 9999)
+			builder.append('+');
+		else if (year < 0) {
+			builder.append('-');
+			year = -year;
+		}
+
+		String digits = Long.toString(year);
+
+		for (int i = digits.length(); i < 4; i++)
+			builder.append('0');
+
+		builder.append(digits).append('-');
+
+		if (month < 10)
+			builder.append('0');
+
+		builder.append(month).append('-');
+
+		if (dayOfMonth < 10)
+			builder.append('0');
+
+		builder.append(dayOfMonth).append('T');
+
+		char[] chars = new char[builder.length()];
+		builder.getChars(0, chars.length, chars, 0);
+
+		return new Prefix(day, chars);
+	}
+
+	private static void put2(char[] chars, int index, int value) {
+		chars[index] = (char) ('0' + value / 10);
+		chars[index + 1] = (char) ('0' + value % 10);
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+
+		// Round towards negative infinity instead of zero.
+		if ((x % y) != 0 && ((x ^ y) < 0))
+			q--;
+
+		return q;
+	}
+
+	/**
+	 * Class used to hold a rendered prefix and the day or second it was
+	 * rendered for.
+	 */
+	private static class Prefix {
+		private final long key;
+		private final char[] chars;
+
+		private Prefix(long key, char[] chars) {
+			this.key = key;
+			this.chars = chars;
+		}
+	}
+}
\ No newline at end of file
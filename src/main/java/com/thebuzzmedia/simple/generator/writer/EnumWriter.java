@@ -0,0 +1,65 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.writer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class used to write enum constants as their {@link Enum#name()}.
+ * <p/>
+ * The names of all the constants of an enum are encoded into
+ * <code>char[]</code>s the first time a constant of that enum is written and
+ * then looked up by ordinal, so writing a constant never allocates.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+@SuppressWarnings("rawtypes")
+public class EnumWriter implements ITypeWriter<Enum> {
+	/**
+	 * Singleton reference to this writer.
+	 */
+	public static final ITypeWriter<Enum> INSTANCE = new EnumWriter();
+
+	private Map<Class<?>, char[][]> nameCache;
+
+	public EnumWriter() {
+		nameCache = new ConcurrentHashMap<Class<?>, char[][]>(32);
+	}
+
+	public boolean isText() {
+		return true;
+	}
+
+	public void write(Enum value, IValueOutput output) {
+		// Constants with a body are sub-classes of their enum.
+		Class<?> type = value.getDeclaringClass();
+		char[][] names = nameCache.get(type);
+
+		if (names == null) {
+			Object[] constants = type.getEnumConstants();
+			names = new char[constants.length][];
+
+			for (int i = 0; i < constants.length; i++)
+				names[i] = ((Enum) constants[i]).name().toCharArray();
+
+			nameCache.put(type, names);
+		}
+
+		output.append(names[value.ordinal()]);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.writer;
+
+/**
+ * Interface used to describe a writer that knows how to represent values of a
+ * specific type, appending that representation directly to the generator's
+ * output instead of the generator writing the value's <code>toString()</code>
+ * value.
+ * <p/>
+ * Writers are registered for a type with
+ * {@link com.thebuzzmedia.simple.generator.ClassMetadataCache#setTypeWriter(Class, ITypeWriter)}
+ * and resolved once per class (the most specific registered superclass or
+ * interface wins), so there is no lookup cost while generating. Writers are
+ * only ever used for simple values; objects annotated with
+ * {@link com.thebuzzmedia.simple.generator.annotation.Recursable}, arrays and
+ * collections are always written as objects and lists.
+ * <p/>
+ * Writers may be shared by any number of generators running on different
+ * threads, so implementations must be thread-safe and should be stateless.
+ * 
+ * @param <T>
+ *            The type of value written.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface ITypeWriter<T> {
+	/**
+	 * Used to determine if the representation of values is text that the
+	 * format should write like a <code>String</code> (e.g. quoted in JSON) or
+	 * a literal that should be written as-is like a number or boolean.
+	 * 
+	 * @return <code>true</code> if the representation is text or
+	 *         <code>false</code> if it is a literal.
+	 */
+	public boolean isText();
+
+	/**
+	 * Used to append the representation of the given value to the output.
+	 * <p/>
+	 * The format's own delimiters (quotes, tags, etc.) are written around this
+	 * by the generator, so only the representation of the value itself should
+	 * be appended.
+	 * 
+	 * @param value
+	 *            The value to write; never <code>null</code>.
+	 * @param output
+	 *            The output to append the representation to.
+	 */
+	public void write(T value, IValueOutput output);
+}
\ No newline at end of file
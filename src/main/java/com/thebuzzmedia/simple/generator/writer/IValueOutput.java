@@ -0,0 +1,48 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.writer;
+
+/**
+ * Interface used to describe the output an {@link ITypeWriter} appends the
+ * representation of a value to.
+ * <p/>
+ * Generators hand their writers an output that appends straight into the
+ * generator's own buffer, so nothing written through this interface is
+ * copied into an intermediate <code>String</code> first.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public interface IValueOutput {
+	public IValueOutput append(char c);
+
+	public IValueOutput append(char[] chars);
+
+	public IValueOutput append(char[] chars, int index, int length);
+
+	public IValueOutput append(String text);
+
+	/**
+	 * Used to append the decimal digits (and sign) of the given value without
+	 * converting it to a <code>String</code> first.
+	 * 
+	 * @param value
+	 *            The value to append.
+	 * 
+	 * @return this output.
+	 */
+	public IValueOutput append(long value);
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.writer;
+
+import java.net.URI;
+
+/**
+ * Class used to write {@link URI}s as text.
+ * <p/>
+ * A {@link URI} builds its <code>String</code> form once and keeps it, so
+ * this writer appends that cached form directly and writing the same
+ * {@link URI} again never allocates.
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class URIWriter implements ITypeWriter<URI> {
+	/**
+	 * Singleton reference to this writer.
+	 */
+	public static final ITypeWriter<URI> INSTANCE = new URIWriter();
+
+	public boolean isText() {
+		return true;
+	}
+
+	public void write(URI value, IValueOutput output) {
+		output.append(value.toString());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+/**   
+ * Copyright 2011 The Buzz Media, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thebuzzmedia.simple.generator.writer;
+
+import java.util.UUID;
+
+/**
+ * Class used to write {@link UUID}s in their canonical, lowercase
+ * <code>8-4-4-4-12</code> hex form directly from their bits, the same
+ * representation {@link UUID#toString()} creates but without building any
+ * <code>String</code>s (older JREs build six for every call).
+ * 
+ * @author Riyad Kalla (software@thebuzzmedia.com)
+ * @since 2.1
+ */
+public class UUIDWriter implements ITypeWriter<UUID> {
+	/**
+	 * Singleton reference to this writer.
+	 */
+	public static final ITypeWriter<UUID> INSTANCE = new UUIDWriter();
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	public boolean isText() {
+		return true;
+	}
+
+	public void write(UUID value, IValueOutput output) {
+		long msb = value.getMostSignificantBits();
+		long lsb = value.getLeastSignificantBits();
+
+		appendHex(msb >>> 32, 8, output);
+		output.append('-');
+		appendHex(msb >>> 16, 4, output);
+		output.append('-');
+		appendHex(msb, 4, output);
+		output.append('-');
+		appendHex(lsb >>> 48, 4, output);
+		output.append('-');
+		appendHex(lsb, 12, output);
+	}
+
+	/**
+	 * Used to append the lowest <code>digits</code> hex digits of the given
+	 * bits, most significant first.
+	 */
+	private static void appendHex(long bits, int digits, IValueOutput output) {
+		for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4)
+			output.append(HEX[(int) (bits >>> shift) & 0xF]);
+	}
+}
\ No newline at end of file
@@ -1,18 +1,34 @@
 package com.thebuzzmedia.simple.generator;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.thebuzzmedia.common.io.IInput;
 import com.thebuzzmedia.simple.generator.Library.Book;
 import com.thebuzzmedia.simple.generator.Library.Book.Author;
+import com.thebuzzmedia.simple.generator.annotation.Recursable;
+import com.thebuzzmedia.simple.generator.digest.XXHash64Digest;
+import com.thebuzzmedia.simple.generator.sink.DeflaterSink;
 
 public class Benchmark {
 	private static final int ITERS = 50000;
+	private static final int EXPORT_BOOKS = 500000;
+	private static final int NUMBERS = 1000;
 	private static OutputStream NULL = new NoopOutputStream();
 
 	private static IGenerator json_simplegen = new JSONGenerator();
@@ -53,6 +69,37 @@ public class Benchmark {
 		System.out.println("\n[XML]");
 		xml_jaxb();
 		xml_simplegen();
+
+		System.out.println("\n[Export]");
+		export_simplegen();
+
+		System.out.println("\n[Numbers]");
+		numbers_simplegen();
+
+		System.out.println("\n[Field Access]");
+		access_simplegen();
+
+		System.out.println("\n[Compressed]");
+		compressed_simplegen();
+
+		System.out.println("\n[CSV]");
+		csv_simplegen();
+
+		System.out.println("\n[Batch]");
+		batch_simplegen();
+
+		System.out.println("\n[Parse]");
+		parse_gson();
+		parse_simplegen();
+
+		System.out.println("\n[Digest]");
+		digest_simplegen();
+
+		System.out.println("\n[Measure]");
+		measure_simplegen();
+
+		System.out.println("\n[Patch]");
+		patch_simplegen();
 	}
 
 	private static void setup() {
@@ -188,10 +235,450 @@ public class Benchmark {
 				+ (int) (ITERS / secs) + " ops/sec)");
 	}
 
+	private static void export_simplegen() {
+		// Re-use the same few books over and over to build a huge document.
+		Book[] books = new Book[EXPORT_BOOKS];
+
+		for (int i = 0; i < books.length; i++)
+			books[i] = library.books.get(i % library.books.size());
+
+		Library export = new Library(library.name, library.address, books);
+
+		try {
+			File file = File.createTempFile("sjg-export", ".json");
+			file.deleteOnExit();
+
+			System.out.print("\t Simple Gen, Compact, to File... ");
+			json_simplegen.setIndenter(CompactIndenter.INSTANCE);
+			long start = System.currentTimeMillis();
+
+			long bytes = json_simplegen.generateTo(export, file);
+
+			start = System.currentTimeMillis() - start;
+			double secs = (double) start / 1000;
+			double mb = (double) bytes / (1024 * 1024);
+			System.out.println(start + " ms (" + secs + " secs - " + (int) mb
+					+ " MB - " + (int) (mb / secs) + " MB/sec)");
+
+			file.delete();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void numbers_simplegen() {
+		Random random = new Random(0);
+
+		List<Number> ints = new ArrayList<Number>(NUMBERS);
+		List<Number> longs = new ArrayList<Number>(NUMBERS);
+		List<Number> doubles = new ArrayList<Number>(NUMBERS);
+		List<Number> atomics = new ArrayList<Number>(NUMBERS);
+		List<Number> decimals = new ArrayList<Number>(NUMBERS);
+		List<Number> bigIntegers = new ArrayList<Number>(NUMBERS);
+
+		for (int i = 0; i < NUMBERS; i++) {
+			ints.add(Integer.valueOf(random.nextInt()));
+			longs.add(Long.valueOf(random.nextLong()));
+			doubles.add(Double.valueOf(random.nextDouble() * 1000));
+			atomics.add(new AtomicLong(random.nextLong()));
+			decimals.add(BigDecimal.valueOf(random.nextInt(10000000), 2));
+			bigIntegers.add(new BigInteger(128, random));
+		}
+
+		json_simplegen.setIndenter(CompactIndenter.INSTANCE);
+
+		numbers_simplegen("Integer", ints);
+		numbers_simplegen("Long", longs);
+		numbers_simplegen("Double", doubles);
+		numbers_simplegen("AtomicLong", atomics);
+		numbers_simplegen("BigDecimal", decimals);
+		numbers_simplegen("BigInteger (128-bit)", bigIntegers);
+	}
+
+	private static void numbers_simplegen(String name, List<Number> numbers) {
+		int iters = ITERS / 10;
+
+		System.out.print("\t Simple Gen, " + NUMBERS + " x " + name + "... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < iters; i++)
+			json_simplegen.generate(numbers);
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (iters / secs) + " ops/sec)");
+	}
+
+	private static void access_simplegen() {
+		List<PublicPoint> publicPoints = new ArrayList<PublicPoint>(NUMBERS);
+		List<PrivatePoint> privatePoints = new ArrayList<PrivatePoint>(
+				NUMBERS);
+		List<FinalPoint> finalPoints = new ArrayList<FinalPoint>(NUMBERS);
+
+		for (int i = 0; i < NUMBERS; i++) {
+			publicPoints.add(new PublicPoint(i));
+			privatePoints.add(new PrivatePoint(i));
+			finalPoints.add(new FinalPoint(i));
+		}
+
+		json_simplegen.setIndenter(CompactIndenter.INSTANCE);
+		int iters = ITERS / 10;
+
+		System.out.print("\t Simple Gen, " + NUMBERS + " x Public Fields... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < iters; i++)
+			json_simplegen.generate(publicPoints);
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (iters / secs) + " ops/sec)");
+
+		System.out.print("\t Simple Gen, " + NUMBERS
+				+ " x Private Fields (includeNonPublic)... ");
+		start = System.currentTimeMillis();
+
+		for (int i = 0; i < iters; i++)
+			json_simplegen.generate(privatePoints);
+
+		start = System.currentTimeMillis() - start;
+		secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (iters / secs) + " ops/sec)");
+
+		// Record components are read the same way, from private final fields.
+		System.out.print("\t Simple Gen, " + NUMBERS
+				+ " x Private Final Fields (as records)... ");
+		start = System.currentTimeMillis();
+
+		for (int i = 0; i < iters; i++)
+			json_simplegen.generate(finalPoints);
+
+		start = System.currentTimeMillis() - start;
+		secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (iters / secs) + " ops/sec)");
+	}
+
+	private static void compressed_simplegen() {
+		json_simplegen.setIndenter(CompactIndenter.INSTANCE);
+		int iters = ITERS / 10;
+
+		try {
+			System.out.print("\t Simple Gen, generate + getBytes + GZIPOutputStream... ");
+			long start = System.currentTimeMillis();
+
+			for (int i = 0; i < iters; i++) {
+				IInput<char[], char[]> input = json_simplegen.generate(library);
+				byte[] bytes = new String(input.getSource(), 0,
+						input.getLength()).getBytes("UTF-8");
+
+				GZIPOutputStream out = new GZIPOutputStream(NULL);
+				out.write(bytes);
+				out.finish();
+			}
+
+			start = System.currentTimeMillis() - start;
+			double secs = (double) start / 1000;
+			System.out.println(start + " ms (" + secs + " secs - "
+					+ (int) (iters / secs) + " ops/sec)");
+
+			System.out.print("\t Simple Gen, DeflaterSink (gzip)... ");
+			DeflaterSink sink = new DeflaterSink(NULL);
+			start = System.currentTimeMillis();
+
+			for (int i = 0; i < iters; i++)
+				json_simplegen.generate(library, sink);
+
+			start = System.currentTimeMillis() - start;
+			secs = (double) start / 1000;
+			System.out.println(start + " ms (" + secs + " secs - "
+					+ (int) (iters / secs) + " ops/sec)");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void csv_simplegen() {
+		List<Author> authors = new ArrayList<Author>(NUMBERS);
+
+		for (int i = 0; i < NUMBERS; i++)
+			authors.add(library.books.get(i % library.books.size()).authors
+					.get(0));
+
+		IGenerator csv_simplegen = new CSVGenerator();
+		json_simplegen.setIndenter(CompactIndenter.INSTANCE);
+		int iters = ITERS / 10;
+
+		System.out.print("\t Simple Gen, JSON, " + NUMBERS + " rows ("
+				+ json_simplegen.generate(authors).getLength() + " chars)... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < iters; i++)
+			json_simplegen.generate(authors);
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (iters / secs) + " ops/sec)");
+
+		System.out.print("\t Simple Gen, CSV, " + NUMBERS + " rows ("
+				+ csv_simplegen.generate(authors).getLength() + " chars)... ");
+		start = System.currentTimeMillis();
+
+		for (int i = 0; i < iters; i++)
+			csv_simplegen.generate(authors);
+
+		start = System.currentTimeMillis() - start;
+		secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (iters / secs) + " ops/sec)");
+	}
+
+	private static void batch_simplegen() {
+		List<Library> libraries = new ArrayList<Library>(ITERS);
+
+		for (int i = 0; i < ITERS; i++)
+			libraries.add(library);
+
+		System.out.print("\t Simple Gen, generate loop (1 thread)... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++)
+			json_simplegen.generate(libraries.get(i));
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		BatchGenerator batch_simplegen = new BatchGenerator(
+				new IGeneratorFactory() {
+					public AbstractGenerator newGenerator() {
+						return new JSONGenerator();
+					}
+				});
+
+		// Warm up the pooled generators and the shared metadata cache.
+		batch_simplegen.generateAll(libraries, executor);
+
+		System.out.print("\t Simple Gen, generateAll (" + threads
+				+ " threads)... ");
+		start = System.currentTimeMillis();
+
+		batch_simplegen.generateAll(libraries, executor);
+
+		start = System.currentTimeMillis() - start;
+		secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+
+		executor.shutdown();
+	}
+
+	private static void parse_gson() {
+		json_simplegen.setIndenter(CompactIndenter.INSTANCE);
+		IInput<char[], char[]> input = json_simplegen.generate(library);
+		String json = new String(input.getSource(), 0, input.getLength());
+
+		System.out.print("\t Gson, fromJson(String)... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++)
+			gson_nofmt.fromJson(json, Library.class);
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+	}
+
+	private static void parse_simplegen() {
+		json_simplegen.setIndenter(CompactIndenter.INSTANCE);
+		IInput<char[], char[]> input = json_simplegen.generate(library);
+		char[] chars = new String(input.getSource(), 0, input.getLength())
+				.toCharArray();
+
+		// Share the metadata the generator has already cached.
+		JSONParser parser = new JSONParser(
+				((AbstractGenerator) json_simplegen).getMetadataCache());
+
+		System.out.print("\t Simple Gen, JSONParser (char[])... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++)
+			parser.parse(chars, Library.class);
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+
+		try {
+			byte[] bytes = new String(chars).getBytes("UTF-8");
+
+			System.out.print("\t Simple Gen, JSONParser (UTF-8 byte[])... ");
+			start = System.currentTimeMillis();
+
+			for (int i = 0; i < ITERS; i++)
+				parser.parse(bytes, Library.class);
+
+			start = System.currentTimeMillis() - start;
+			secs = (double) start / 1000;
+			System.out.println(start + " ms (" + secs + " secs - "
+					+ (int) (ITERS / secs) + " ops/sec)");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void digest_simplegen() {
+		AbstractGenerator generator = new JSONGenerator();
+		XXHash64Digest digest = new XXHash64Digest();
+
+		System.out.print("\t Simple Gen, generate then hash... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++) {
+			IInput<char[], char[]> input = generator.generate(library);
+
+			digest.reset();
+			digest.update(input.getSource(), 0, input.getLength());
+			digest.toETag();
+		}
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+
+		generator.setContentDigest(digest);
+
+		System.out.print("\t Simple Gen, hash while generating... ");
+		start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++) {
+			generator.generate(library);
+			digest.toETag();
+		}
+
+		start = System.currentTimeMillis() - start;
+		secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+	}
+
+	private static void measure_simplegen() {
+		System.out.print("\t Simple Gen, generate then count... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++)
+			json_simplegen.generate(library).getLength();
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+
+		System.out.print("\t Simple Gen, measure... ");
+		start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++)
+			json_simplegen.measure(library);
+
+		start = System.currentTimeMillis() - start;
+		secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+	}
+
+	private static void patch_simplegen() {
+		Book book = library.books.get(1);
+		Book checkedIn = new Book(Boolean.FALSE, book.title, book.isbn,
+				book.pageCount, book.printDate, book.replacementCost,
+				book.authors.toArray(new Author[book.authors.size()]));
+
+		// The next version of the library with one book checked back in.
+		Library next = new Library(library.name, library.address,
+				library.books.get(0), checkedIn, library.books.get(2));
+		JSONPatchGenerator patch_simplegen = new JSONPatchGenerator(
+				((AbstractGenerator) json_simplegen).getMetadataCache());
+
+		System.out.print("\t Simple Gen, generate next version... ");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++)
+			json_simplegen.generate(next);
+
+		start = System.currentTimeMillis() - start;
+		double secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+
+		System.out.print("\t Simple Gen, JSONPatchGenerator diff... ");
+		start = System.currentTimeMillis();
+
+		for (int i = 0; i < ITERS; i++)
+			patch_simplegen.diff(library, next);
+
+		start = System.currentTimeMillis() - start;
+		secs = (double) start / 1000;
+		System.out.println(start + " ms (" + secs + " secs - "
+				+ (int) (ITERS / secs) + " ops/sec)");
+	}
+
+	@Recursable
+	public static class PublicPoint {
+		public int x;
+		public int y;
+		public String label;
+
+		public PublicPoint(int i) {
+			x = i;
+			y = -i;
+			label = "p" + i;
+		}
+	}
+
+	@Recursable(includeNonPublic = true)
+	public static class PrivatePoint {
+		private int x;
+		private int y;
+		private String label;
+
+		public PrivatePoint(int i) {
+			x = i;
+			y = -i;
+			label = "p" + i;
+		}
+	}
+
+	@Recursable(includeNonPublic = true)
+	public static class FinalPoint {
+		private final int x;
+		private final int y;
+		private final String label;
+
+		public FinalPoint(int i) {
+			x = i;
+			y = -i;
+			label = "p" + i;
+		}
+	}
+
 	private static class NoopOutputStream extends OutputStream {
 		@Override
 		public void write(int b) throws IOException {
 			// no-op
 		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			// no-op
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,725 @@
+package com.thebuzzmedia.simple.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPInputStream;
+
+import com.thebuzzmedia.common.io.IInput;
+import com.thebuzzmedia.simple.generator.AbstractGenerator.BudgetPolicy;
+import com.thebuzzmedia.simple.generator.BudgetExceededException.Budget;
+import com.thebuzzmedia.simple.generator.annotation.Iterated;
+import com.thebuzzmedia.simple.generator.flow.GeneratorPublisher;
+import com.thebuzzmedia.simple.generator.flow.ISubscriber;
+import com.thebuzzmedia.simple.generator.flow.ISubscription;
+import com.thebuzzmedia.simple.generator.annotation.Recursable;
+import com.thebuzzmedia.simple.generator.sink.ChannelSink;
+import com.thebuzzmedia.simple.generator.sink.CountingSink;
+import com.thebuzzmedia.simple.generator.sink.DeflaterSink;
+import com.thebuzzmedia.simple.generator.sink.ISink;
+
+/**
+ * Checks for behavior that has regressed before. Run it like the other
+ * programs in this directory; it exits with a non-zero status if any check
+ * fails.
+ */
+public class Regressions {
+	private static int failures;
+
+	public static void main(String[] args) {
+		System.out.println("==== Regressions ====\n");
+
+		System.out.println("[Size Prediction]");
+		predictor_sharedAcrossThreads();
+
+		System.out.println("\n[JSON]");
+		json_escaping();
+		json_rootValues();
+
+		System.out.println("\n[Budgets]");
+		budget_failPresized();
+		budget_truncateFused();
+		budget_policies(new JSONGenerator(CompactIndenter.INSTANCE), "compact");
+		budget_policies(new JSONGenerator(JSONIndenter.INSTANCE), "indented");
+
+		System.out.println("\n[Projection]");
+		projection_renderPlansBounded();
+		projection_plansHeldByMetadata();
+
+		System.out.println("\n[Columnar]");
+		columnar_truncate();
+		columnar_cancel();
+		columnar_resume();
+
+		System.out.println("\n[Resumable]");
+		resumable_staleReader();
+		resumable_stalePublisher();
+
+		System.out.println("\n[Lazy]");
+		lazy_valueIterable();
+		lazy_iteratedIterable();
+
+		System.out.println("\n[Compressed]");
+		deflater_gzipRoundTrip();
+
+		System.out.println("\n[Channel]");
+		channel_bufferReleasedOnFailure();
+
+		System.out.println("\n[Measure]");
+		measure_trailingHighSurrogate();
+
+		System.out.println("\n[Parse]");
+		parse_constructorException();
+
+		System.out.println("\n" + (failures == 0 ? "All checks passed."
+				: failures + " check(s) FAILED."));
+
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	private static void predictor_sharedAcrossThreads() {
+		final OutputSizePredictor predictor = new OutputSizePredictor();
+		final int recordings = 100000;
+		Thread[] threads = new Thread[4];
+
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < recordings; j++)
+						predictor.record(Note.class, 100);
+				}
+			};
+			threads[i].start();
+		}
+
+		try {
+			for (int i = 0; i < threads.length; i++)
+				threads[i].join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		check("no recordings are lost when shared",
+				predictor.getSampleCount(Note.class) == threads.length
+						* recordings);
+		check("shared estimate stays consistent",
+				predictor.getMean(Note.class) == 100
+						&& predictor.predict(Note.class) == 100);
+	}
+
+	private static void json_escaping() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		Note note = new Note("say \"hi\"\\\n\u0001",
+				new StringBuilder("tab\there"));
+		String text = "\"say \\\"hi\\\"\\\\\\n\\u0001\"";
+		String builder = "\"tab\\there\"";
+
+		// Compact output renders the fields through the fused class plan.
+		String compact = toString(generator.generate(note));
+
+		check("compact string and text writer values are escaped",
+				compact.contains(text) && compact.contains(builder));
+
+		generator.setIndenter(JSONIndenter.INSTANCE);
+		String formatted = toString(generator.generate(note));
+
+		check("formatted string and text writer values are escaped",
+				formatted.contains(text) && formatted.contains(builder));
+	}
+
+	private static void json_rootValues() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+
+		check("root list has no name", "[\"a\",\"b\"]".equals(toString(generator
+				.generate(Arrays.asList("a", "b")))));
+		check("root string has no name",
+				"\"a\"".equals(toString(generator.generate("a"))));
+		check("root number has no name",
+				"42".equals(toString(generator.generate(Integer.valueOf(42)))));
+	}
+
+	private static void budget_failPresized() {
+		Wide wide = new Wide(40);
+
+		// The buffer is large enough that it never has to grow.
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE,
+				8192);
+		generator.setMaxLength(100);
+		check("FAIL throws with a presized buffer", fails(generator, wide));
+
+		// The size predictor presizes the buffer once it has warmed up.
+		generator = new JSONGenerator(CompactIndenter.INSTANCE);
+
+		for (int i = 0; i < 10; i++)
+			generator.generate(wide);
+
+		generator.setMaxLength(100);
+		check("FAIL throws with a predicted buffer", fails(generator, wide));
+
+		generator.setMaxLength(10);
+		check("FAIL throws for a root value", fails(generator, wide.a));
+
+		try {
+			generator.generate(wide, new CountingSink());
+			check("FAIL throws when generating into a sink", false);
+		} catch (BudgetExceededException e) {
+			check("FAIL throws when generating into a sink", true);
+		} catch (IOException e) {
+			e.printStackTrace();
+			check("FAIL throws when generating into a sink", false);
+		}
+	}
+
+	private static void budget_truncateFused() {
+		Wide wide = new Wide(100000);
+
+		JSONGenerator compact = new JSONGenerator(CompactIndenter.INSTANCE);
+		compact.setBudgetPolicy(BudgetPolicy.TRUNCATE);
+		compact.setMaxLength(1000);
+
+		String json = toString(compact.generate(wide));
+		check("TRUNCATE stops a run of fused values",
+				json.length() < 2 * 100000 && compact.isTruncated());
+
+		JSONGenerator indented = new JSONGenerator(JSONIndenter.INSTANCE);
+		indented.setBudgetPolicy(BudgetPolicy.TRUNCATE);
+		indented.setMaxLength(1000);
+
+		json = toString(indented.generate(wide));
+		check("TRUNCATE stops after one indented value",
+				json.length() < 2 * 100000 && indented.isTruncated());
+	}
+
+	private static void budget_policies(JSONGenerator generator, String mode) {
+		Node node = new Node(4);
+		List<Point> points = points(1000);
+
+		// Nothing is truncated while under every budget.
+		generator.setBudgetPolicy(BudgetPolicy.TRUNCATE);
+		String json = toString(generator.generate(node));
+		check(mode + " untouched under budget", json.contains("\"n0\"")
+				&& !generator.isTruncated());
+
+		// Objects nested past the level budget become the marker.
+		generator.setMaxLevel(2);
+		json = toString(generator.generate(node));
+		check(mode + " TRUNCATE maxLevel", json.contains("\"n3\"")
+				&& !json.contains("\"n2\"") && json.contains("\"...\"")
+				&& balanced(json) && generator.isTruncated());
+
+		generator.setBudgetPolicy(BudgetPolicy.FAIL);
+		check(mode + " FAIL maxLevel",
+				exceeded(generator, node) == Budget.LEVEL);
+		generator.setMaxLevel(Integer.MAX_VALUE);
+
+		// Lists end with the marker after maxListSize elements.
+		generator.setBudgetPolicy(BudgetPolicy.TRUNCATE);
+		generator.setMaxListSize(3);
+		json = toString(generator.generate(node));
+		check(mode + " TRUNCATE maxListSize", json.contains("\"t2\"")
+				&& !json.contains("\"t3\"") && json.contains("\"...\"")
+				&& balanced(json) && generator.isTruncated());
+
+		generator.setBudgetPolicy(BudgetPolicy.FAIL);
+		check(mode + " FAIL maxListSize",
+				exceeded(generator, node) == Budget.LIST_SIZE);
+		generator.setMaxListSize(Integer.MAX_VALUE);
+
+		/*
+		 * Output may only go past maxLength by the value that crossed it and
+		 * the closing of the open objects and lists.
+		 */
+		generator.setBudgetPolicy(BudgetPolicy.TRUNCATE);
+		generator.setMaxLength(500);
+		json = toString(generator.generate(points));
+		check(mode + " TRUNCATE maxLength", json.length() <= 500 + 100
+				&& balanced(json) && generator.isTruncated());
+
+		generator.setBudgetPolicy(BudgetPolicy.FAIL);
+		check(mode + " FAIL maxLength",
+				exceeded(generator, points) == Budget.LENGTH);
+		generator.setMaxLength(Long.MAX_VALUE);
+	}
+
+	private static void projection_renderPlansBounded() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		Note note = new Note("text", new StringBuilder("builder"));
+
+		// Every distinct field list compiles to new fields and a new plan.
+		for (int i = 0; i < 4 * Projection.MAX_CACHED; i++)
+			generator.generate(note, Projection.compile("text,missing" + i));
+
+		try {
+			Field field = AbstractGenerator.class
+					.getDeclaredField("renderPlanCache");
+			field.setAccessible(true);
+			Map<?, ?> plans = (Map<?, ?>) field.get(generator);
+
+			check("render plans for client field lists are bounded",
+					plans.size() <= Projection.MAX_CACHED);
+		} catch (Exception e) {
+			e.printStackTrace();
+			check("render plan cache can be inspected", false);
+		}
+	}
+
+	private static void projection_plansHeldByMetadata() {
+		Projection projection = Projection.compile("x");
+		Point point = new Point(1);
+
+		// Each generator with its own cache compiles its own plan.
+		ClassMetadataCache cache = null;
+
+		for (int i = 0; i < 100; i++) {
+			cache = new ClassMetadataCache();
+
+			JSONGenerator generator = new JSONGenerator(
+					CompactIndenter.INSTANCE);
+			generator.setMetadataCache(cache);
+			generator.generate(point, projection);
+		}
+
+		check("plans are held by the cache's metadata",
+				cache.get(Point.class).plans.size() == 1);
+
+		// Only so many projections keep a plan for the same class.
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		generator.setMetadataCache(cache);
+
+		for (int i = 0; i < 4 * Projection.MAX_CACHED; i++)
+			generator.generate(point, Projection.compile("x,missing" + i));
+
+		check("plans per class are bounded",
+				cache.get(Point.class).plans.size() <= Projection.MAX_CACHED);
+	}
+
+	private static void columnar_truncate() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		generator.setColumnar(true);
+		generator.setMaxLength(1000);
+		generator.setBudgetPolicy(AbstractGenerator.BudgetPolicy.TRUNCATE);
+
+		String json = toString(generator.generate(points(100000)));
+
+		// Allow for the chunk being written when the budget ran out.
+		check("TRUNCATE stops long columns", json.length() < 2000);
+		check("truncated columns are closed", json.endsWith("...\"]}"));
+	}
+
+	private static void columnar_cancel() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		generator.setColumnar(true);
+
+		final CancellationToken token = new CancellationToken();
+
+		// Cancel once the first chunk of output has been written.
+		ISink sink = new CountingSink() {
+			@Override
+			public void write(char[] chars, int index, int length)
+					throws IOException {
+				super.write(chars, index, length);
+				token.cancel();
+			}
+		};
+
+		try {
+			generator.generate(points(100000), sink, token);
+			check("cancellation stops long columns", false);
+		} catch (CancellationException e) {
+			check("cancellation stops long columns", true);
+		} catch (IOException e) {
+			e.printStackTrace();
+			check("cancellation stops long columns", false);
+		}
+	}
+
+	private static void columnar_resume() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		generator.setColumnar(true);
+		CountingSink sink = new CountingSink();
+
+		try {
+			generator.begin(points(100000), sink);
+			boolean more = generator.resume(1000);
+
+			check("resume suspends within long columns", more
+					&& sink.getCharCount() < 10000);
+
+			while (generator.resume(1000))
+				;
+
+			check("resumed columns are written in full",
+					sink.getCharCount() == generator.generate(points(100000))
+							.getLength());
+		} catch (IOException e) {
+			e.printStackTrace();
+			check("columns can be resumed", false);
+		}
+	}
+
+	private static List<Point> points(int count) {
+		List<Point> points = new ArrayList<Point>(count);
+
+		for (int i = 0; i < count; i++)
+			points.add(new Point(i));
+
+		return points;
+	}
+
+	private static void resumable_staleReader() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		List<Point> points = points(1000);
+		String expected = toString(generator.generate(points));
+
+		try {
+			char[] chars = new char[100];
+			GeneratorReader stale = new GeneratorReader(generator, points);
+			stale.read(chars);
+
+			// Starting another generation abandons the first one.
+			GeneratorReader reader = new GeneratorReader(generator, points);
+			StringBuilder json = new StringBuilder();
+			json.append(chars, 0, reader.read(chars));
+
+			stale.close();
+
+			for (int read; (read = reader.read(chars)) != -1;)
+				json.append(chars, 0, read);
+
+			check("closing a stale reader leaves the generator alone",
+					expected.equals(json.toString()));
+		} catch (IOException e) {
+			e.printStackTrace();
+			check("closing a stale reader leaves the generator alone", false);
+		}
+	}
+
+	private static void resumable_stalePublisher() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		List<Point> points = points(1000);
+		String expected = toString(generator.generate(points));
+
+		try {
+			// Take a single chunk and hold on to the subscription.
+			FirstChunk subscriber = new FirstChunk();
+			new GeneratorPublisher(generator, points, 64).subscribe(subscriber);
+
+			// Starting another generation abandons the published one.
+			char[] chars = new char[100];
+			GeneratorReader reader = new GeneratorReader(generator, points);
+			StringBuilder json = new StringBuilder();
+			json.append(chars, 0, reader.read(chars));
+
+			subscriber.subscription.cancel();
+
+			for (int read; (read = reader.read(chars)) != -1;)
+				json.append(chars, 0, read);
+
+			check("cancelling a stale subscription leaves the generator alone",
+					subscriber.received && expected.equals(json.toString()));
+		} catch (IOException e) {
+			e.printStackTrace();
+			check("cancelling a stale subscription leaves the generator alone",
+					false);
+		}
+	}
+
+	private static void channel_bufferReleasedOnFailure() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		generator.setMaxLength(100000);
+
+		// Empty the shared pool so the generation gets a new buffer.
+		List<ByteBuffer> held = new ArrayList<ByteBuffer>();
+
+		for (int i = 0; i < ChannelSink.DEFAULT_POOL.getMaxPooled(); i++)
+			held.add(ChannelSink.DEFAULT_POOL.acquire());
+
+		try {
+			File file = File.createTempFile("regressions", ".json");
+			file.deleteOnExit();
+
+			generator.generateTo(points(10000), file);
+			check("generation fails past its budget", false);
+		} catch (BudgetExceededException e) {
+			// A new buffer is all zeroes, the released one holds the output.
+			ByteBuffer buffer = ChannelSink.DEFAULT_POOL.acquire();
+			check("failed generateTo returns its buffer to the pool",
+					buffer.get(0) == '[');
+			held.add(buffer);
+		} catch (IOException e) {
+			e.printStackTrace();
+			check("failed generateTo returns its buffer to the pool", false);
+		}
+
+		for (ByteBuffer buffer : held)
+			ChannelSink.DEFAULT_POOL.release(buffer);
+	}
+
+	private static void lazy_valueIterable() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		Path path = Paths.get("docs", "README");
+
+		// Path is an Iterable<Path> but is still written as its toString().
+		check("Path value is written as a value", ("\"" + path + "\"")
+				.equals(toString(generator.generate(path))));
+		check("Path field is written as a value",
+				toString(generator.generate(new Location(path))).contains(
+						"\"" + path + "\""));
+	}
+
+	private static void lazy_iteratedIterable() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		List<String> names = Arrays.asList("a", "b");
+
+		check("@Iterated Iterable is written as a list", "[\"a\",\"b\"]"
+				.equals(toString(generator.generate(new Names(names)))));
+		check("Iterator is written as a list", "[\"a\",\"b\"]"
+				.equals(toString(generator.generate(names.iterator()))));
+	}
+
+	private static void deflater_gzipRoundTrip() {
+		JSONGenerator generator = new JSONGenerator(CompactIndenter.INSTANCE);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DeflaterSink sink = new DeflaterSink(bytes);
+		Note note = new Note("gzip me", new StringBuilder("and me"));
+
+		try {
+			sink.flush();
+			check("empty output is a valid gzip member",
+					"".equals(gunzip(bytes.toByteArray())));
+
+			bytes.reset();
+			generator.generate(note, sink);
+			check("output round-trips through GZIPInputStream",
+					toString(generator.generate(note)).equals(
+							gunzip(bytes.toByteArray())));
+		} catch (IOException e) {
+			e.printStackTrace();
+			check("gzip output can be read", false);
+		}
+	}
+
+	private static void measure_trailingHighSurrogate() {
+		char[] chars = new char[] { 'a', '\uD800' };
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CountingSink counter = new CountingSink();
+
+		try {
+			write(counter, chars);
+			write(new ChannelSink(Channels.newChannel(bytes)), chars);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		check("trailing high surrogate is encoded as '?'",
+				"a?".equals(new String(bytes.toByteArray())));
+		check("trailing high surrogate is counted", counter.getCharCount() == 2
+				&& counter.getByteCount() == 2
+				&& counter.getByteCount() == bytes.size());
+	}
+
+	private static void parse_constructorException() {
+		JSONParser parser = new JSONParser();
+
+		try {
+			parser.parse("{\"items\":[1]}", Shelf.class);
+			check("collection constructor exception is reported", false);
+		} catch (JSONParseException e) {
+			check("collection constructor exception is reported",
+					e.getCause() instanceof IOException);
+		}
+	}
+
+	private static boolean fails(IGenerator generator, Object object) {
+		return exceeded(generator, object) != null;
+	}
+
+	private static Budget exceeded(IGenerator generator, Object object) {
+		try {
+			generator.generate(object);
+			return null;
+		} catch (BudgetExceededException e) {
+			return e.getBudget();
+		}
+	}
+
+	// Enough to tell truncation closed every object and list it opened.
+	private static boolean balanced(String json) {
+		int objects = 0;
+		int lists = 0;
+
+		for (int i = 0; i < json.length(); i++) {
+			switch (json.charAt(i)) {
+			case '{':
+				objects++;
+				break;
+			case '}':
+				objects--;
+				break;
+			case '[':
+				lists++;
+				break;
+			case ']':
+				lists--;
+				break;
+			}
+
+			if (objects < 0 || lists < 0)
+				return false;
+		}
+
+		return objects == 0 && lists == 0;
+	}
+
+	private static void check(String name, boolean passed) {
+		System.out.println("\t " + name + "... " + (passed ? "ok" : "FAILED"));
+
+		if (!passed)
+			failures++;
+	}
+
+	private static void write(ISink sink, char[] chars) throws IOException {
+		sink.write(chars, 0, chars.length);
+		sink.flush();
+	}
+
+	private static String gunzip(byte[] bytes) throws IOException {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] chunk = new byte[1024];
+
+		for (int read; (read = in.read(chunk)) != -1;)
+			out.write(chunk, 0, read);
+
+		return out.toString("UTF-8");
+	}
+
+	private static String toString(IInput<char[], char[]> input) {
+		return new String(input.getSource(), input.getIndex(),
+				input.getLength());
+	}
+
+	@Recursable
+	public static class Note {
+		public String text;
+		public StringBuilder builder;
+
+		public Note(String text, StringBuilder builder) {
+			this.text = text;
+			this.builder = builder;
+		}
+	}
+
+	public static class FirstChunk implements ISubscriber<ByteBuffer> {
+		private ISubscription subscription;
+		private boolean received;
+
+		public void onSubscribe(ISubscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		public void onNext(ByteBuffer item) {
+			received = true;
+		}
+
+		public void onError(Throwable throwable) {
+			throwable.printStackTrace();
+		}
+
+		public void onComplete() {
+			// no-op
+		}
+	}
+
+	@Recursable
+	public static class Wide {
+		public String a, b, c, d, e, f, g, h;
+
+		public Wide(int length) {
+			char[] chars = new char[length];
+			Arrays.fill(chars, 'x');
+
+			a = b = c = d = e = f = g = h = new String(chars);
+		}
+	}
+
+	@Recursable
+	public static class Node {
+		public String name;
+		public List<String> tags;
+		public Node child;
+
+		public Node(int depth) {
+			name = "n" + depth;
+			tags = new ArrayList<String>();
+
+			for (int i = 0; i < 10; i++)
+				tags.add("t" + i);
+
+			if (depth > 0)
+				child = new Node(depth - 1);
+		}
+	}
+
+	@Recursable
+	public static class Point {
+		public int x;
+		public String label;
+
+		public Point(int i) {
+			x = i;
+			label = "p" + i;
+		}
+	}
+
+	@Recursable
+	public static class Location {
+		public Path path;
+
+		public Location(Path path) {
+			this.path = path;
+		}
+	}
+
+	@Iterated
+	public static class Names implements Iterable<String> {
+		private List<String> names;
+
+		public Names(List<String> names) {
+			this.names = names;
+		}
+
+		public Iterator<String> iterator() {
+			return names.iterator();
+		}
+	}
+
+	@Recursable
+	public static class Shelf {
+		public FullList items;
+	}
+
+	public static class FullList extends ArrayList<Object> {
+		private static final long serialVersionUID = 1L;
+
+		public FullList() throws IOException {
+			throw new IOException("no room left on the shelf");
+		}
+	}
+}